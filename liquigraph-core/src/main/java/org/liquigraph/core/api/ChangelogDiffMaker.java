@@ -17,9 +17,9 @@ package org.liquigraph.core.api;
 
 import org.liquigraph.core.configuration.ExecutionContexts;
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetIndex;
 import org.liquigraph.core.model.predicates.ChangesetChecksumHasChanged;
 import org.liquigraph.core.model.predicates.ChangesetRunOnChange;
-import org.liquigraph.core.model.predicates.Predicates;
 
 import java.util.Collection;
 import java.util.function.Predicate;
@@ -34,15 +34,22 @@ class ChangelogDiffMaker {
                                                            Collection<Changeset> declaredChangesets,
                                                            Collection<Changeset> persistedChangesets) {
 
+        return computeChangesetsToInsert(executionContexts, declaredChangesets, ChangesetIndex.of(persistedChangesets));
+    }
+
+    public Collection<Changeset> computeChangesetsToInsert(ExecutionContexts executionContexts,
+                                                           Collection<Changeset> declaredChangesets,
+                                                           ChangesetIndex persistedChangesets) {
+
         return declaredChangesets.stream()
             .filter(BY_ANY_EXECUTION_CONTEXT(executionContexts))
             .filter(executionFilter(persistedChangesets))
             .collect(toList());
     }
 
-    @SuppressWarnings("unchecked")
-    private static Predicate<Changeset> executionFilter(Collection<Changeset> persistedChangesets) {
-        return Predicates.in(persistedChangesets).negate()
+    private static Predicate<Changeset> executionFilter(ChangesetIndex persistedChangesets) {
+        Predicate<Changeset> persisted = persistedChangesets::contains;
+        return persisted.negate()
             .or(ChangesetRunOnChange.RUN_ON_CHANGE
                 .and(ChangesetChecksumHasChanged.CHECKSUM_HAS_CHANGED(persistedChangesets)))
             .or(RUN_ALWAYS);
@@ -17,7 +17,9 @@ package org.liquigraph.core.api;
 
 import org.liquigraph.core.configuration.Configuration;
 import org.liquigraph.core.configuration.ConnectionConfiguration;
+import org.liquigraph.core.io.ChangelogFingerprintStore;
 import org.liquigraph.core.io.ChangelogGraphReader;
+import org.liquigraph.core.io.ChangelogHistoryUpgrader;
 import org.liquigraph.core.io.ConditionExecutor;
 import org.liquigraph.core.io.ConditionPrinter;
 import org.liquigraph.core.io.LiquibaseMigrator;
@@ -34,6 +36,9 @@ import java.util.Collection;
 
 /**
  * Liquigraph facade in charge of migration execution.
+ * <p>
+ * This facade is thread-safe, and meant to be shared: concurrent {@link #runMigrations(Configuration)} calls do not
+ * share any mutable state.
  */
 public final class Liquigraph implements LiquigraphApi {
 
@@ -43,20 +48,25 @@ public final class Liquigraph implements LiquigraphApi {
 
     public Liquigraph() {
         ChangelogParser parser = changelogParser(xmlSchemaValidator(), changelogPreprocessor(importResolver()));
+        ChangelogHistoryUpgrader historyUpgrader = changelogHistoryUpgrader();
         ChangelogGraphReader graphReader = changelogGraphReader();
         migrationRunner = migrationRunner(
             parser,
+            historyUpgrader,
+            changelogFingerprintStore(),
             graphReader,
             changelogDiffMaker(),
             conditionExecutor(),
             conditionPrinter()
         );
-        liquibaseMigrator = new LiquibaseMigrator(parser, graphReader);
+        liquibaseMigrator = new LiquibaseMigrator(parser, historyUpgrader, graphReader);
     }
 
-    private static MigrationRunner migrationRunner(ChangelogParser changelogParser, ChangelogGraphReader changelogGraphReader, ChangelogDiffMaker changelogDiffMaker, ConditionExecutor conditionExecutor, ConditionPrinter conditionPrinter) {
+    private static MigrationRunner migrationRunner(ChangelogParser changelogParser, ChangelogHistoryUpgrader changelogHistoryUpgrader, ChangelogFingerprintStore changelogFingerprintStore, ChangelogGraphReader changelogGraphReader, ChangelogDiffMaker changelogDiffMaker, ConditionExecutor conditionExecutor, ConditionPrinter conditionPrinter) {
         return new MigrationRunner(
             changelogParser,
+            changelogHistoryUpgrader,
+            changelogFingerprintStore,
             changelogGraphReader,
             changelogDiffMaker,
             conditionExecutor,
@@ -81,6 +91,14 @@ public final class Liquigraph implements LiquigraphApi {
         return new ChangelogDiffMaker();
     }
 
+    private static ChangelogHistoryUpgrader changelogHistoryUpgrader() {
+        return new ChangelogHistoryUpgrader();
+    }
+
+    private static ChangelogFingerprintStore changelogFingerprintStore() {
+        return new ChangelogFingerprintStore();
+    }
+
     private static ChangelogGraphReader changelogGraphReader() {
         return new ChangelogGraphReader();
     }
@@ -22,6 +22,12 @@ import org.liquigraph.core.io.ChangelogLoader;
 import java.io.File;
 import java.util.Collection;
 
+/**
+ * Liquigraph entry point.
+ * <p>
+ * Implementations are thread-safe: a single instance can run the migrations of several databases concurrently.
+ * Migrations to Liquibase are serialized.
+ */
 public interface LiquigraphApi {
 
     /**
@@ -16,14 +16,22 @@
 package org.liquigraph.core.api;
 
 import org.liquigraph.core.configuration.Configuration;
+import org.liquigraph.core.configuration.DryRunMode;
+import org.liquigraph.core.io.ChangelogDelta;
+import org.liquigraph.core.io.ChangelogFingerprintStore;
 import org.liquigraph.core.io.ChangelogGraphReader;
+import org.liquigraph.core.io.ChangelogHistoryUpgrader;
 import org.liquigraph.core.io.ChangelogParser;
 import org.liquigraph.core.io.ChangelogWriter;
+import org.liquigraph.core.io.ChangesetDependencyGraph;
 import org.liquigraph.core.io.ConditionExecutor;
 import org.liquigraph.core.io.ConditionPrinter;
 import org.liquigraph.core.io.GraphJdbcConnector;
-import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.MigrationSession;
+import org.liquigraph.core.model.ChangelogFingerprint;
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetIndex;
+import org.liquigraph.core.model.ChecksumAlgorithm;
 import org.liquigraph.core.validation.PersistedChangesetValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,13 +40,18 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static java.util.Collections.emptyList;
 
 class MigrationRunner {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MigrationRunner.class);
+    // below this size, hashing in parallel costs more than it saves
+    private static final int PARALLEL_CHECKSUM_THRESHOLD = 1000;
     private final ChangelogParser changelogParser;
+    private final ChangelogHistoryUpgrader changelogHistoryUpgrader;
+    private final ChangelogFingerprintStore changelogFingerprintStore;
     private final ChangelogGraphReader changelogReader;
     private final ChangelogDiffMaker changelogDiffMaker;
     private final ConditionExecutor conditionExecutor;
@@ -46,6 +59,8 @@ class MigrationRunner {
     private final PersistedChangesetValidator persistedChangesetValidator;
 
     public MigrationRunner(ChangelogParser changelogParser,
+                           ChangelogHistoryUpgrader changelogHistoryUpgrader,
+                           ChangelogFingerprintStore changelogFingerprintStore,
                            ChangelogGraphReader changelogGraphReader,
                            ChangelogDiffMaker changelogDiffMaker,
                            ConditionExecutor conditionExecutor,
@@ -53,6 +68,8 @@ class MigrationRunner {
                            PersistedChangesetValidator persistedChangesetValidator) {
 
         this.changelogParser = changelogParser;
+        this.changelogHistoryUpgrader = changelogHistoryUpgrader;
+        this.changelogFingerprintStore = changelogFingerprintStore;
         this.changelogReader = changelogGraphReader;
         this.changelogDiffMaker = changelogDiffMaker;
         this.conditionExecutor = conditionExecutor;
@@ -62,21 +79,39 @@ class MigrationRunner {
 
 
     public void runMigrations(Configuration configuration) {
-        Collection<Changeset> declaredChangesets = parseChangesets(configuration.changelogLoader(), configuration.masterChangelog());
-        Supplier<Connection> connectionSupplier = new ConnectionSupplier(new GraphJdbcConnector(configuration));
-        Collection<Changeset> applicableChangeSets = getChangelog(configuration, connectionSupplier, declaredChangesets);
-        writeApplicableChangesets(configuration, connectionSupplier, applicableChangeSets);
+        Collection<Changeset> declaredChangesets = parseChangesets(configuration);
+        // the lock is taken by the first session connection and held until both resources are closed
+        try (GraphJdbcConnector connector = new GraphJdbcConnector(configuration);
+             MigrationSession session = new MigrationSession(connector::connect)) {
+            Collection<Changeset> applicableChangeSets = getChangelog(configuration, session, declaredChangesets);
+            writeApplicableChangesets(configuration, session, applicableChangeSets);
+        }
     }
 
     private Collection<Changeset> getChangelog(Configuration configuration, Supplier<Connection> connectionSupplier,
                                                Collection<Changeset> declaredChangesets) {
         try (Connection connection = connectionSupplier.get()) {
-            Collection<Changeset> persistedChangesets = readPersistedChangesets(declaredChangesets, connection);
-
-            return changelogDiffMaker.computeChangesetsToInsert(
-                configuration.executionContexts(), declaredChangesets,
+            changelogHistoryUpgrader.upgrade(connection);
+            ChangelogFingerprint fingerprint = ChangelogFingerprint.of(declaredChangesets, configuration.executionContexts());
+            Collection<Changeset> divergingChangesets = changelogFingerprintStore.divergingChangesets(connection, fingerprint);
+            if (divergingChangesets.isEmpty()) {
+                LOGGER.info("History is up to date with changelog, nothing to execute");
+                return emptyList();
+            }
+
+            ChangelogDelta delta = changelogReader.reconcile(connection, divergingChangesets);
+            ChangesetIndex persistedChangesets = ChangesetIndex.of(delta.getPersistedChangesets());
+            validatePersistedChangesets(delta.getPendingChangesets(), persistedChangesets);
+
+            Collection<Changeset> changesetsToInsert = changelogDiffMaker.computeChangesetsToInsert(
+                configuration.executionContexts(), delta.getPendingChangesets(),
                 persistedChangesets
             );
+            if (changesetsToInsert.isEmpty() && !(configuration.executionMode() instanceof DryRunMode)) {
+                // the history is now known to be in sync: next runs can skip reading it
+                changelogFingerprintStore.store(connection, fingerprint);
+            }
+            return changesetsToInsert;
 
         } catch (SQLException e) {
             LOGGER.error(e.getMessage(), e);
@@ -84,17 +119,32 @@ class MigrationRunner {
         return emptyList();
     }
 
-    private Collection<Changeset> parseChangesets(ChangelogLoader changelogLoader, String masterChangelog) {
-        return changelogParser.parse(changelogLoader, masterChangelog);
+    private Collection<Changeset> parseChangesets(Configuration configuration) {
+        Collection<Changeset> changesets = configuration.resolveParser(changelogParser)
+            .parse(configuration.changelogLoader(), configuration.masterChangelog());
+        ChangesetDependencyGraph.checkDependencies(changesets);
+        computeChecksums(changesets, configuration.checksumAlgorithm());
+        return changesets;
+    }
+
+    /**
+     * Checksums are lazily computed by changesets, they are computed upfront here, in parallel for large changelogs,
+     * rather than one by one while the changelog is fingerprinted.
+     */
+    private static void computeChecksums(Collection<Changeset> changesets, ChecksumAlgorithm checksumAlgorithm) {
+        Stream<Changeset> stream = changesets.size() < PARALLEL_CHECKSUM_THRESHOLD ? changesets.stream() : changesets.parallelStream();
+        stream.forEach(changeset -> {
+            changeset.setChecksumAlgorithm(checksumAlgorithm.getName());
+            changeset.getChecksum();
+        });
     }
 
-    private Collection<Changeset> readPersistedChangesets(Collection<Changeset> declaredChangesets, Connection writeConnection) {
-        Collection<Changeset> persistedChangesets = changelogReader.read(writeConnection);
-        Collection<String> errors = persistedChangesetValidator.validate(declaredChangesets, persistedChangesets);
+    private void validatePersistedChangesets(Collection<Changeset> pendingChangesets, ChangesetIndex persistedChangesets) {
+        // up-to-date changesets are neither executed nor in conflict, only the delta needs validating
+        Collection<String> errors = persistedChangesetValidator.validate(pendingChangesets, persistedChangesets);
         if (!errors.isEmpty()) {
             throw new IllegalArgumentException(formatErrorMessage(errors));
         }
-        return persistedChangesets;
     }
 
     private void writeApplicableChangesets(Configuration configuration,
@@ -112,18 +162,4 @@ class MigrationRunner {
         String separator = "\n\t";
         return separator + String.join(separator, errors);
     }
-
-    private static class ConnectionSupplier implements Supplier<Connection> {
-
-        private final GraphJdbcConnector connector;
-
-        public ConnectionSupplier(GraphJdbcConnector connector) {
-            this.connector = connector;
-        }
-
-        @Override
-        public Connection get() {
-            return connector.connect();
-        }
-    }
 }
@@ -18,12 +18,24 @@ package org.liquigraph.core.configuration;
 import org.liquigraph.core.io.ChangelogFileWriter;
 import org.liquigraph.core.io.ChangelogGraphWriter;
 import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ChangelogParser;
 import org.liquigraph.core.io.ChangelogWriter;
 import org.liquigraph.core.io.ConditionExecutor;
 import org.liquigraph.core.io.ConditionPrinter;
 import org.liquigraph.core.io.ClassLoaderChangelogLoader;
+import org.liquigraph.core.io.bundle.ChangelogBundleParser;
+import org.liquigraph.core.io.xml.CachingChangelogParser;
+import org.liquigraph.core.io.xml.ChangelogPreprocessor;
+import org.liquigraph.core.io.xml.ChangelogXmlParser;
+import org.liquigraph.core.io.xml.ImportResolver;
+import org.liquigraph.core.io.xml.RemoteSchemaResolver;
+import org.liquigraph.core.io.xml.StreamingChangelogXmlParser;
+import org.liquigraph.core.io.xml.XmlSchemaValidator;
+import org.liquigraph.core.model.ChecksumAlgorithm;
 
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.function.Supplier;
 
 /**
@@ -42,13 +54,31 @@ public final class Configuration {
     private final ExecutionContexts executionContexts;
     private final ExecutionMode executionMode;
     private final String database;
+    private final boolean atomicChangesets;
+    private final int parallelism;
+    private final boolean streamingChangelogParser;
+    private final Path changelogSnapshotDirectory;
+    private final boolean changelogBundle;
+    private final ChecksumAlgorithm checksumAlgorithm;
+    private final Collection<Path> schemaCatalogs;
+    private final Path schemaCacheDirectory;
+    private final boolean offlineSchemaResolution;
 
     Configuration(ChangelogLoader changelogLoader,
                   String masterChangelog,
                   ConnectionConfiguration connectionConfiguration,
                   ExecutionContexts executionContexts,
                   ExecutionMode executionMode,
-                  String database) {
+                  String database,
+                  boolean atomicChangesets,
+                  int parallelism,
+                  boolean streamingChangelogParser,
+                  Path changelogSnapshotDirectory,
+                  boolean changelogBundle,
+                  ChecksumAlgorithm checksumAlgorithm,
+                  Collection<Path> schemaCatalogs,
+                  Path schemaCacheDirectory,
+                  boolean offlineSchemaResolution) {
 
         this.changelogLoader = changelogLoader;
         this.masterChangelog = masterChangelog;
@@ -56,6 +86,15 @@ public final class Configuration {
         this.executionContexts = executionContexts;
         this.executionMode = executionMode;
         this.database = database;
+        this.atomicChangesets = atomicChangesets;
+        this.parallelism = parallelism;
+        this.streamingChangelogParser = streamingChangelogParser;
+        this.changelogSnapshotDirectory = changelogSnapshotDirectory;
+        this.changelogBundle = changelogBundle;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.schemaCatalogs = schemaCatalogs;
+        this.schemaCacheDirectory = schemaCacheDirectory;
+        this.offlineSchemaResolution = offlineSchemaResolution;
     }
 
     /**
@@ -91,13 +130,76 @@ public final class Configuration {
         return executionMode;
     }
 
+    public boolean atomicChangesets() {
+        return atomicChangesets;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    public boolean streamingChangelogParser() {
+        return streamingChangelogParser;
+    }
+
+    public Path changelogSnapshotDirectory() {
+        return changelogSnapshotDirectory;
+    }
+
+    public boolean changelogBundle() {
+        return changelogBundle;
+    }
+
+    public ChecksumAlgorithm checksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public Collection<Path> schemaCatalogs() {
+        return schemaCatalogs;
+    }
+
+    public Path schemaCacheDirectory() {
+        return schemaCacheDirectory;
+    }
+
+    public boolean offlineSchemaResolution() {
+        return offlineSchemaResolution;
+    }
+
+    public RemoteSchemaResolver remoteSchemaResolver() {
+        return RemoteSchemaResolver.of(schemaCatalogs, schemaCacheDirectory, offlineSchemaResolution);
+    }
+
+    public ChangelogParser resolveParser(ChangelogParser defaultParser) {
+        if (changelogBundle) {
+            return new ChangelogBundleParser();
+        }
+        if (changelogSnapshotDirectory != null) {
+            return new CachingChangelogParser(changelogSnapshotDirectory, remoteSchemaResolver());
+        }
+        if (streamingChangelogParser) {
+            return new StreamingChangelogXmlParser(remoteSchemaResolver());
+        }
+        if (hasCustomSchemaResolution()) {
+            return new ChangelogXmlParser(
+                new XmlSchemaValidator(remoteSchemaResolver()),
+                new ChangelogPreprocessor(new ImportResolver())
+            );
+        }
+        return defaultParser;
+    }
+
+    private boolean hasCustomSchemaResolution() {
+        return !schemaCatalogs.isEmpty() || schemaCacheDirectory != null || offlineSchemaResolution;
+    }
+
     public ChangelogWriter resolveWriter(Supplier<Connection> connectionSupplier,
                                          ConditionExecutor conditionExecutor,
                                          ConditionPrinter conditionPrinter) {
 
         ExecutionMode executionMode = executionMode();
         if (executionMode == RunMode.RUN_MODE) {
-            return new ChangelogGraphWriter(connectionSupplier, conditionExecutor);
+            return new ChangelogGraphWriter(connectionSupplier, conditionExecutor, atomicChangesets, parallelism, changelogLoader);
         }
         if (executionMode instanceof DryRunMode) {
             DryRunMode dryRunMode = (DryRunMode) executionMode;
@@ -22,14 +22,19 @@ import org.liquigraph.core.configuration.validators.MandatoryOptionValidator;
 import org.liquigraph.core.configuration.validators.UserCredentialsOptionValidator;
 import org.liquigraph.core.io.ChangelogLoader;
 import org.liquigraph.core.io.ClassLoaderChangelogLoader;
+import org.liquigraph.core.model.ChecksumAlgorithm;
+import org.liquigraph.core.model.ChecksumAlgorithms;
 
 import javax.sql.DataSource;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 
+import static org.liquigraph.core.exception.Preconditions.checkArgument;
+
 /**
  * Fluent {@link Configuration} builder.
  * It also validates configuration parameters.
@@ -44,6 +49,15 @@ public final class ConfigurationBuilder {
     private Optional<String> password = Optional.empty();
     private ExecutionContexts executionContexts = ExecutionContexts.DEFAULT_CONTEXT;
     private ExecutionMode executionMode;
+    private boolean atomicChangesets;
+    private int parallelism = 1;
+    private boolean streamingChangelogParser;
+    private Path changelogSnapshotDirectory;
+    private boolean changelogBundle;
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithms.DEFAULT;
+    private Collection<Path> schemaCatalogs = Collections.emptyList();
+    private Path schemaCacheDirectory;
+    private boolean offlineSchemaResolution;
 
     private MandatoryOptionValidator mandatoryOptionValidator = new MandatoryOptionValidator();
     private DatasourceConfigurationValidator datasourceConnectionValidator = new DatasourceConfigurationValidator();
@@ -169,6 +183,141 @@ public final class ConfigurationBuilder {
         return this;
     }
 
+    /**
+     * Sets whether changesets run atomically by default, i.e. whether their queries and their
+     * history entry are committed in a single transaction.
+     * Changesets can override this default with their <code>atomic</code> attribute.
+     * Schema changesets and changesets with a postcondition always use separate transactions.
+     * Default is <code>false</code>.
+     *
+     * @param atomicChangesets whether changesets run atomically by default
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withAtomicChangesets(boolean atomicChangesets) {
+        this.atomicChangesets = atomicChangesets;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of changesets executed concurrently.
+     * Changesets declaring a <code>depends-on</code> attribute only wait for the listed changesets,
+     * the others wait for all the changesets declared before them.
+     * History is still recorded in declaration order.
+     * Default is <code>1</code>, i.e. changesets are executed one after the other.
+     *
+     * @param parallelism maximum number of concurrently executed changesets, at least 1
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withParallelism(int parallelism) {
+        checkArgument(parallelism > 0, "Parallelism must be strictly positive, got: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets whether changelogs are parsed in a streaming fashion, one changeset at a time, instead of being
+     * loaded in memory as a single document, imports included.
+     * Both parsers produce the same changesets, the streaming one trades a few extra reads of every changelog
+     * file for a much lower memory footprint on large changelogs.
+     * Default is <code>false</code>.
+     *
+     * @param streamingChangelogParser whether to use the streaming changelog parser
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withStreamingChangelogParser(boolean streamingChangelogParser) {
+        this.streamingChangelogParser = streamingChangelogParser;
+        return this;
+    }
+
+    /**
+     * Sets the directory where parsed changelogs are cached.
+     * Changelog files, imports included, are only parsed and validated again when their contents or the contents of
+     * their parameter files change, the other ones are read back from a binary snapshot.
+     * Changelogs are then parsed with the streaming changelog parser.
+     * Default is <code>null</code>, i.e. changelogs are parsed on every run.
+     *
+     * @param changelogSnapshotDirectory writable directory where changelog snapshots are stored
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withChangelogSnapshotDirectory(Path changelogSnapshotDirectory) {
+        this.changelogSnapshotDirectory = changelogSnapshotDirectory;
+        return this;
+    }
+
+    /**
+     * Sets whether the main changelog location designates a changelog bundle, as produced by the <code>bundle</code>
+     * goal of the Liquigraph Maven plugin, instead of an XML changelog.
+     * Bundled changelogs are already resolved and validated, they are loaded without any XML parsing.
+     * Default is <code>false</code>.
+     *
+     * @param changelogBundle whether the main changelog is a changelog bundle
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withChangelogBundle(boolean changelogBundle) {
+        this.changelogBundle = changelogBundle;
+        return this;
+    }
+
+    /**
+     * Sets the algorithm changeset checksums are computed with.
+     * Changesets executed with a previously configured algorithm are compared with that algorithm, and recorded with
+     * the new one the next time they are executed.
+     * Default is {@link ChecksumAlgorithms#SHA_1}.
+     *
+     * @param checksumAlgorithm the checksum algorithm, see {@link ChecksumAlgorithms}
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        if (checksumAlgorithm != null) {
+            this.checksumAlgorithm = checksumAlgorithm;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the OASIS XML catalog files declaring local copies of the schemas referenced by changelogs.
+     * These catalogs are consulted after the ones registered as {@link java.util.ServiceLoader} services of
+     * {@link org.liquigraph.core.io.xml.SchemaCatalog}, and before any download.
+     * Schemas embedded in Liquigraph never need to be declared.
+     * Default is no catalog file.
+     *
+     * @param schemaCatalogs readable XML catalog files
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withSchemaCatalogs(Collection<Path> schemaCatalogs) {
+        if (schemaCatalogs != null) {
+            this.schemaCatalogs = new ArrayList<>(schemaCatalogs);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the directory where downloaded schemas are cached, so that subsequent runs do not need any network access.
+     * Cached schemas are never downloaded again: they are pinned until the cache directory is cleared.
+     * Default is <code>null</code>, i.e. downloaded schemas are not written to disk.
+     *
+     * @param schemaCacheDirectory writable directory where downloaded schemas are stored
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withSchemaCacheDirectory(Path schemaCacheDirectory) {
+        this.schemaCacheDirectory = schemaCacheDirectory;
+        return this;
+    }
+
+    /**
+     * Sets whether schemas may be downloaded.
+     * In offline mode, changelogs referencing a schema which is neither embedded, declared in a catalog nor cached
+     * fail validation.
+     * Default is <code>false</code>.
+     *
+     * @param offlineSchemaResolution whether schemas must not be downloaded
+     * @return itself for chaining purposes
+     */
+    public ConfigurationBuilder withOfflineSchemaResolution(boolean offlineSchemaResolution) {
+        this.offlineSchemaResolution = offlineSchemaResolution;
+        return this;
+    }
+
     /**
      * @param classLoader class loader
      * @return itself for chaining purposes
@@ -224,7 +373,16 @@ public final class ConfigurationBuilder {
             dataSourceConfiguration(),
             executionContexts,
             executionMode,
-            database.orElse(null)
+            database.orElse(null),
+            atomicChangesets,
+            parallelism,
+            streamingChangelogParser,
+            changelogSnapshotDirectory,
+            changelogBundle,
+            checksumAlgorithm,
+            schemaCatalogs,
+            schemaCacheDirectory,
+            offlineSchemaResolution
         );
     }
 
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.liquigraph.core.io.queries.CypherParameter;
+import org.liquigraph.core.model.Batch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Executes the queries of batched changesets.
+ * <p>
+ * The JDBC driver only supports positional parameters, so <code>$batchSize</code>
+ * references are rewritten to the first positional parameter before the query is prepared
+ * (see {@link CypherParameter}).
+ * <p>
+ * Repeated queries must return the number of rows they processed as <code>affected</code>,
+ * e.g. <code>RETURN count(*) AS affected</code>: the update count reported by the driver leaves
+ * out property updates, so it cannot tell whether a backfill batch still found anything to do.
+ *
+ * @see Batch
+ */
+final class BatchedQueryExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchedQueryExecutor.class);
+
+    private static final CypherParameter BATCH_SIZE_PARAMETER = CypherParameter.named("batchSize");
+
+    /**
+     * Neo4j status codes of the errors raised when a transaction exceeds the memory available to it.
+     */
+    private static final Set<String> MEMORY_LIMIT_STATUS_CODES = new HashSet<>(asList(
+        "Neo.TransientError.General.MemoryPoolOutOfMemoryError",
+        "Neo.TransientError.General.TransactionMemoryLimit",
+        "Neo.TransientError.General.OutOfMemoryError"
+    ));
+
+    private static final String NEO4J_STATUS_CODE_PREFIX = "Neo.";
+
+    private static final String AFFECTED_COLUMN = "affected";
+
+    private final LongSupplier nanoClock;
+
+    public BatchedQueryExecutor() {
+        this(System::nanoTime);
+    }
+
+    BatchedQueryExecutor(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Executes the given query in successive transactions, each of them committed,
+     * until the query returns 0 as <code>affected</code>.
+     *
+     * @return the total number of affected rows, as returned by the query
+     */
+    public long executeUntilExhausted(Connection connection, String query, Batch batch) throws SQLException {
+        boolean parameterized = BATCH_SIZE_PARAMETER.isReferencedBy(query);
+        int batchSize = batch.getSize();
+        long total = 0;
+        int iteration = 0;
+        try (PreparedStatement statement = connection.prepareStatement(positional(query))) {
+            while (true) {
+                if (parameterized) {
+                    statement.setLong(1, batchSize);
+                }
+                long start = nanoClock.getAsLong();
+                long affected;
+                try {
+                    affected = executeBatch(statement, query);
+                    connection.commit();
+                } catch (RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    if (!isMemoryLimitError(e) || batchSize <= batch.getMinSize()) {
+                        throw e;
+                    }
+                    int previousBatchSize = batchSize;
+                    batchSize = Math.max(batch.getMinSize(), batchSize / 2);
+                    LOGGER.warn("Batch of size {} exceeded the server memory limit, retrying with size {}", previousBatchSize, batchSize);
+                    continue;
+                }
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(nanoClock.getAsLong() - start);
+                if (affected == 0) {
+                    break;
+                }
+                total += affected;
+                iteration++;
+                LOGGER.info("Batch #{} of size {} affected {} rows in {} ms ({} so far)", iteration, batchSize, affected, elapsedMillis, total);
+                batchSize = adaptBatchSize(batchSize, elapsedMillis, batch);
+            }
+        }
+        LOGGER.info("Batched query completed after {} batches, affecting {} rows", iteration, total);
+        return total;
+    }
+
+    /**
+     * Executes the given query once, in an auto-commit transaction, which is required by
+     * <code>CALL { ... } IN TRANSACTIONS</code>. Auto-commit is restored afterwards.
+     */
+    public void executeInTransactions(Connection connection, String query, Batch batch) throws SQLException {
+        boolean parameterized = BATCH_SIZE_PARAMETER.isReferencedBy(query);
+        boolean previousAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(true);
+        try (PreparedStatement statement = connection.prepareStatement(positional(query))) {
+            if (parameterized) {
+                statement.setLong(1, batch.getSize());
+            }
+            statement.execute();
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+    }
+
+    private static long executeBatch(PreparedStatement statement, String query) throws SQLException {
+        try (ResultSet results = statement.executeQuery()) {
+            if (!results.next() || !hasAffectedColumn(results.getMetaData())) {
+                throw new IllegalArgumentException(String.format(
+                    "Batched query must return the number of processed rows as affected, e.g. RETURN count(*) AS affected: %s", query));
+            }
+            return results.getLong(AFFECTED_COLUMN);
+        }
+    }
+
+    private static boolean hasAffectedColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (AFFECTED_COLUMN.equals(metaData.getColumnLabel(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String positional(String query) {
+        return BATCH_SIZE_PARAMETER.toPositional(query);
+    }
+
+    private static int adaptBatchSize(int batchSize, long elapsedMillis, Batch batch) {
+        Long targetDuration = batch.getTargetDuration();
+        if (targetDuration == null) {
+            return batchSize;
+        }
+        if (elapsedMillis > targetDuration) {
+            return Math.max(batch.getMinSize(), batchSize / 2);
+        }
+        if (elapsedMillis < targetDuration / 2) {
+            return (int) Math.min(batch.getMaxSize(), 2L * batchSize);
+        }
+        return batchSize;
+    }
+
+    /**
+     * Memory errors are recognized by their Neo4j status code, exposed by the <code>code()</code> method of the
+     * driver exceptions wrapped by the JDBC driver, or as the SQL state by drivers that map it.
+     * Only when no status code is available at all, the error message is searched as a fallback. Its wording is not
+     * a stable contract, so this only matches the messages of the server versions Liquigraph is tested with.
+     */
+    private static boolean isMemoryLimitError(Throwable error) {
+        boolean statusCodeFound = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            String statusCode = statusCode(cause);
+            if (statusCode != null) {
+                if (MEMORY_LIMIT_STATUS_CODES.contains(statusCode)) {
+                    return true;
+                }
+                statusCodeFound = true;
+            }
+        }
+        return !statusCodeFound && hasMemoryLimitMessage(error);
+    }
+
+    private static String statusCode(Throwable error) {
+        if (error instanceof SQLException) {
+            String state = ((SQLException) error).getSQLState();
+            if (state != null && state.startsWith(NEO4J_STATUS_CODE_PREFIX)) {
+                return state;
+            }
+        }
+        // the Neo4j Java driver is a runtime dependency, its exceptions are therefore inspected reflectively
+        try {
+            Method code = error.getClass().getMethod("code");
+            if (code.getReturnType() != String.class) {
+                return null;
+            }
+            Object result = code.invoke(error);
+            return result instanceof String && ((String) result).startsWith(NEO4J_STATUS_CODE_PREFIX) ? (String) result : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasMemoryLimitMessage(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message == null) {
+                continue;
+            }
+            if (message.contains("dbms.memory.transaction")
+                || message.contains("MemoryPoolOutOfMemoryError")
+                || message.contains("TransactionMemoryLimit")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
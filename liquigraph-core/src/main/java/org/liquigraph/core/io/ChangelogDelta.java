@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.liquigraph.core.model.Changeset;
+
+import java.util.Collection;
+
+import static java.util.Collections.unmodifiableCollection;
+
+/**
+ * Result of the reconciliation of the declared changesets with the persisted history.
+ * <p>
+ * Only the declared changesets that are not up to date in the history are retained, i.e. the new ones, the ones whose
+ * checksum differs from the persisted one and the ones that run always. The persisted counterparts of the latter two
+ * are retained as well, without their queries.
+ * <p>
+ * These are sufficient to compute the changesets to execute and to validate the persisted checksums.
+ */
+public final class ChangelogDelta {
+
+    private final Collection<Changeset> pendingChangesets;
+    private final Collection<Changeset> persistedChangesets;
+
+    ChangelogDelta(Collection<Changeset> pendingChangesets, Collection<Changeset> persistedChangesets) {
+        this.pendingChangesets = unmodifiableCollection(pendingChangesets);
+        this.persistedChangesets = unmodifiableCollection(persistedChangesets);
+    }
+
+    /**
+     * @return the declared changesets that are new, changed or run always, in declaration order
+     */
+    public Collection<Changeset> getPendingChangesets() {
+        return pendingChangesets;
+    }
+
+    /**
+     * @return the persisted counterparts of the pending changesets, when they have already been executed
+     */
+    public Collection<Changeset> getPersistedChangesets() {
+        return persistedChangesets;
+    }
+}
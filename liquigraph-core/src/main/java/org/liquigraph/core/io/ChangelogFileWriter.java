@@ -15,7 +15,10 @@
  */
 package org.liquigraph.core.io;
 
+import org.liquigraph.core.model.Batch;
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+import org.liquigraph.core.model.Parameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -99,7 +102,17 @@ public class ChangelogFileWriter implements ChangelogWriter {
         Collection<String> lines = new ArrayList<>();
         lines.add(format("//Liquigraph changeset[author: %s, id: %s]", changeset.getAuthor(), changeset.getId()));
         lines.add(format("//Liquigraph changeset[executionContexts: %s]", flatten(changeset.getExecutionsContexts())));
-        lines.addAll(changeset.getQueries());
+        Batch batch = changeset.getBatch();
+        if (batch != null) {
+            lines.add(format("//Liquigraph changeset[batch: size %d, %s]", batch.getSize(), batch.isInTransactions() ? "in transactions" : "repeated until no more changes"));
+        }
+        Parameters parameters = changeset.getParameters();
+        if (parameters != null) {
+            lines.add(format("//Liquigraph changeset[parameters: %s, batches of %d rows]", parameters.getFile() == null ? "inline" : parameters.getFile(), parameters.getBatchSize()));
+        }
+        for (ChangesetQuery query : changeset.getDeclaredQueries()) {
+            lines.add(query.getFile() == null ? query.getQuery() : format("//Liquigraph changeset[query file: %s]", query.getFile()));
+        }
         return lines;
     }
 
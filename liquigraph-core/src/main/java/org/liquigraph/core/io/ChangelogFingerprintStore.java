@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.liquigraph.core.model.ChangelogFingerprint;
+import org.liquigraph.core.model.Changeset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static org.liquigraph.core.exception.Throwables.propagate;
+
+/**
+ * Persists the {@link ChangelogFingerprint} of the declared changesets on the <code>__LiquigraphChangelog</code> node,
+ * once the history is known to be in sync with them.
+ */
+public class ChangelogFingerprintStore {
+
+    private static final String MATCH_FINGERPRINT =
+        "MATCH (changelog:__LiquigraphChangelog) " +
+        "RETURN coalesce(changelog.fingerprint = $1, false) AS upToDate, " +
+        "       CASE WHEN changelog.fingerprint = $1 THEN [] ELSE coalesce(changelog.fingerprintChunks, []) END AS chunks";
+
+    private static final String SET_FINGERPRINT =
+        "MATCH (changelog:__LiquigraphChangelog) " +
+        "SET changelog.fingerprint = $1, changelog.fingerprintChunks = $2";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangelogFingerprintStore.class);
+
+    /**
+     * Compares the given fingerprint with the persisted one.
+     * Only the persisted root is read when both match, the persisted chunk hashes are read otherwise.
+     *
+     * @return the declared changesets that may not be in sync with the history, none if the fingerprints match
+     */
+    public Collection<Changeset> divergingChangesets(Connection connection, ChangelogFingerprint fingerprint) {
+        try (PreparedStatement statement = connection.prepareStatement(MATCH_FINGERPRINT)) {
+            statement.setString(1, fingerprint.getRoot());
+            Collection<Changeset> changesets = divergingChangesets(statement, fingerprint);
+            connection.commit();
+            return changesets;
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+    }
+
+    public void store(Connection connection, ChangelogFingerprint fingerprint) {
+        try (PreparedStatement statement = connection.prepareStatement(SET_FINGERPRINT)) {
+            statement.setString(1, fingerprint.getRoot());
+            statement.setObject(2, fingerprint.getChunks());
+            statement.execute();
+            connection.commit();
+            LOGGER.debug("Stored changelog fingerprint {}", fingerprint.getRoot());
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+    }
+
+    private static Collection<Changeset> divergingChangesets(PreparedStatement statement,
+                                                             ChangelogFingerprint fingerprint) throws SQLException {
+        try (ResultSet result = statement.executeQuery()) {
+            if (!result.next()) {
+                return fingerprint.divergingChangesets(emptyList());
+            }
+            if (result.getBoolean("upToDate")) {
+                LOGGER.debug("Changelog fingerprint {} matches history", fingerprint.getRoot());
+                return emptyList();
+            }
+            return fingerprint.divergingChangesets(persistedChunks(result.getObject("chunks")));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> persistedChunks(Object chunks) {
+        return chunks == null ? emptyList() : (List<String>) chunks;
+    }
+}
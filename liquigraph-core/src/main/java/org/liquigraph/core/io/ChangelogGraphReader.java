@@ -16,69 +16,166 @@
 package org.liquigraph.core.io;
 
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+import org.liquigraph.core.model.ChecksumAlgorithms;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static java.lang.String.format;
-import static java.util.Collections.unmodifiableCollection;
 import static org.liquigraph.core.exception.Throwables.propagate;
 
+/**
+ * Reads the persisted history graph.
+ * <p>
+ * Reads are done in a read-only transaction and never modify the history graph, which therefore needs
+ * to be brought up to date beforehand by {@link ChangelogHistoryUpgrader}.
+ * <p>
+ * {@link #read(Connection)} loads the full history, including the text of every executed query.
+ * Callers that only compare the history with the declared changesets should rely on
+ * {@link #reconcile(Connection, Collection)} instead, which only fetches the changesets that differ from the declared ones.
+ */
 public class ChangelogGraphReader {
 
-    private static final String MIGRATE_PRE_1_0_RC3_CHANGELOG =
-        "MATCH (:__LiquigraphChangelog)<-[exec:EXECUTED_WITHIN_CHANGELOG]-(changeset:__LiquigraphChangeset) " +
-            "WHERE EXISTS(exec.`order`) AND EXISTS(changeset.query) " +
-            "SET exec.time = exec.`order` " +
-            "WITH exec, changeset " +
-            "REMOVE exec.`order` " +
-            "WITH changeset " +
-            "CREATE (changeset)<-[:EXECUTED_WITHIN_CHANGESET {`order`: 0}]-(query:__LiquigraphQuery) " +
-            "SET query.query = changeset.query " +
-            "WITH changeset " +
-            "REMOVE changeset.query";
-
     private static final String MATCH_CHANGESETS =
         "MATCH (:__LiquigraphChangelog)<-[changelog_execution:EXECUTED_WITHIN_CHANGELOG]-(changeset:__LiquigraphChangeset), " +
         "      (changeset)<-[changeset_execution:EXECUTED_WITHIN_CHANGESET]-(query:__LiquigraphQuery) " +
         "WITH changelog_execution.`time` AS changeset_position, changeset, query " +
         "ORDER BY changeset_position ASC, changeset_execution.`order` ASC " +
-        "WITH changeset_position, changeset, COLLECT(query.query) AS queries " +
+        "WITH changeset_position, changeset, COLLECT(query {.query, .file}) AS queries " +
         "RETURN {" +
         "   id: changeset.id, " +
         "   author:changeset.author, " +
         "   checksum:changeset.checksum, " +
+        "   checksumAlgorithm:changeset.checksumAlgorithm, " +
         "   query:queries" +
         "} AS changeset " +
         "ORDER BY changeset_position ASC";
 
+    // changesets are looked up with the (id, author) index created by ChangelogHistoryUpgrader
+    private static final String RECONCILE_CHANGESETS =
+        "UNWIND $1 AS declared " +
+        "OPTIONAL MATCH (:__LiquigraphChangelog)<-[:EXECUTED_WITHIN_CHANGELOG]-(changeset:__LiquigraphChangeset {id: declared.id, author: declared.author}) " +
+        "WITH declared, changeset " +
+        "WHERE changeset IS NULL OR changeset.checksum <> declared.checksum OR declared.runAlways " +
+        "RETURN declared.index AS index, changeset.checksum AS checksum, changeset.checksumAlgorithm AS checksumAlgorithm " +
+        "ORDER BY index ASC";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(ChangelogFileWriter.class);
 
+    /**
+     * Reads the executed changesets, along with their queries, in execution order.
+     */
     public final Collection<Changeset> read(Connection connection) {
-        Collection<Changeset> changesets = new ArrayList<>();
-        try (Statement statement = connection.createStatement()) {
-            LOGGER.debug("Migrating pre 1.0-RC3 history graph");
-            statement.execute(MIGRATE_PRE_1_0_RC3_CHANGELOG);
-            try (ResultSet result = statement.executeQuery(MATCH_CHANGESETS)) {
+        return readOnly(connection, () -> {
+            Collection<Changeset> changesets = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery(MATCH_CHANGESETS)) {
                 while (result.next()) {
                     changesets.add(mapRow(result.getObject("changeset")));
                 }
             }
-            connection.commit();
-            LOGGER.debug("Retrieved {} changesets", changesets.size());
             return changesets;
+        });
+    }
+
+    /**
+     * Compares the declared changesets with the persisted ones, on the server side.
+     * Only the declared changesets that are not up to date in the history are transferred back, along with
+     * the summaries of their persisted counterparts.
+     * <p>
+     * Persisted changesets hashed with another algorithm than the declared ones are compared again on the client
+     * side, with the persisted algorithm. If their content did not change, the persisted summary is given the declared
+     * checksum, so that switching algorithms is not mistaken for a changeset modification.
+     */
+    public final ChangelogDelta reconcile(Connection connection, Collection<Changeset> declaredChangesets) {
+        List<Changeset> declared = new ArrayList<>(declaredChangesets);
+        Collection<Changeset> pending = new ArrayList<>();
+        Collection<Changeset> persisted = readOnly(connection, () -> {
+            Collection<Changeset> changesets = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(RECONCILE_CHANGESETS)) {
+                statement.setObject(1, fingerprints(declared));
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        Changeset declaredChangeset = declared.get(result.getInt("index"));
+                        String checksum = result.getString("checksum");
+                        if (checksum != null && unchangedWithAlgorithm(declaredChangeset, checksum, result.getString("checksumAlgorithm"))) {
+                            if (!declaredChangeset.isRunAlways()) {
+                                continue;
+                            }
+                            checksum = declaredChangeset.getChecksum();
+                        }
+                        pending.add(declaredChangeset);
+                        if (checksum != null) {
+                            changesets.add(summary(declaredChangeset, checksum));
+                        }
+                    }
+                }
+            }
+            return changesets;
+        });
+        LOGGER.debug("{} declared changesets out of {} differ from history", pending.size(), declared.size());
+        return new ChangelogDelta(pending, persisted);
+    }
+
+    private static boolean unchangedWithAlgorithm(Changeset declaredChangeset, String persistedChecksum, String persistedAlgorithm) {
+        String algorithm = checksumAlgorithm(persistedAlgorithm);
+        if (algorithm.equals(declaredChangeset.getChecksumAlgorithm())) {
+            return false;
+        }
+        return persistedChecksum.equals(declaredChangeset.computeChecksum(ChecksumAlgorithms.forName(algorithm)));
+    }
+
+    private static List<Map<String, Object>> fingerprints(List<Changeset> changesets) {
+        List<Map<String, Object>> result = new ArrayList<>(changesets.size());
+        for (int i = 0; i < changesets.size(); i++) {
+            Changeset changeset = changesets.get(i);
+            Map<String, Object> fingerprint = new HashMap<>();
+            fingerprint.put("index", i);
+            fingerprint.put("id", changeset.getId());
+            fingerprint.put("author", changeset.getAuthor());
+            fingerprint.put("checksum", changeset.getChecksum());
+            fingerprint.put("runAlways", changeset.isRunAlways());
+            result.add(fingerprint);
+        }
+        return result;
+    }
+
+    private Collection<Changeset> readOnly(Connection connection, HistoryRead read) {
+        try {
+            boolean readOnly = connection.isReadOnly();
+            connection.setReadOnly(true);
+            try {
+                Collection<Changeset> changesets = read.execute();
+                connection.commit();
+                LOGGER.debug("Retrieved {} changesets", changesets.size());
+                return changesets;
+            } finally {
+                connection.setReadOnly(readOnly);
+            }
         } catch (SQLException e) {
             throw propagate(e);
         }
     }
 
+    private Changeset summary(Changeset declaredChangeset, String persistedChecksum) {
+        Changeset changeset = new Changeset();
+        changeset.setAuthor(declaredChangeset.getAuthor());
+        changeset.setId(declaredChangeset.getId());
+        changeset.setChecksum(persistedChecksum);
+        return changeset;
+    }
+
     @SuppressWarnings("unchecked")
     private Changeset mapRow(Object line) throws SQLException {
         if (line instanceof Map) {
@@ -93,12 +190,29 @@ public class ChangelogGraphReader {
         Changeset changeset = new Changeset();
         changeset.setAuthor(String.valueOf(node.get("author")));
         changeset.setId(String.valueOf(node.get("id")));
-        changeset.setQueries(adaptQueries(node.get("query")));
+        changeset.setChecksumAlgorithm(checksumAlgorithm((String) node.get("checksumAlgorithm")));
+        changeset.setDeclaredQueries(adaptQueries(node.get("query")));
         changeset.setChecksum(String.valueOf(node.get("checksum")));
         return changeset;
     }
 
-    private Collection<String> adaptQueries(Object rawQuery) {
-        return unmodifiableCollection((Collection<String>) rawQuery);
+    private static String checksumAlgorithm(String persistedAlgorithm) {
+        return persistedAlgorithm == null ? ChecksumAlgorithms.SHA_1.getName() : persistedAlgorithm;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ChangesetQuery> adaptQueries(Object rawQueries) {
+        List<ChangesetQuery> result = new ArrayList<>();
+        for (Map<String, Object> rawQuery : (Collection<Map<String, Object>>) rawQueries) {
+            ChangesetQuery query = new ChangesetQuery((String) rawQuery.get("query"));
+            query.setFile((String) rawQuery.get("file"));
+            result.add(query);
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface HistoryRead {
+        Collection<Changeset> execute() throws SQLException;
     }
 }
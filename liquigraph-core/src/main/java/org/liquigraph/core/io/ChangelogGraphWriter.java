@@ -16,52 +16,117 @@
 package org.liquigraph.core.io;
 
 import org.liquigraph.core.exception.PreconditionNotMetException;
+import org.liquigraph.core.io.parameters.ParameterRows;
+import org.liquigraph.core.io.queries.ChangesetStatements;
+import org.liquigraph.core.io.queries.CypherParameter;
+import org.liquigraph.core.model.Batch;
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
 import org.liquigraph.core.model.Condition;
+import org.liquigraph.core.model.Parameters;
 import org.liquigraph.core.model.Postcondition;
 import org.liquigraph.core.model.Precondition;
+import org.liquigraph.core.model.predicates.ChangesetRunsAtomically;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import static java.lang.String.format;
+import static java.util.Collections.singletonMap;
 import static org.liquigraph.core.exception.Throwables.propagate;
+import static org.liquigraph.core.model.predicates.ChangesetRunsAtomically.RUNS_ATOMICALLY;
 
 public class ChangelogGraphWriter implements ChangelogWriter {
 
     private static final String CHANGESET_UPSERT =
         "MERGE (changelog:__LiquigraphChangelog) " +
+            "ON CREATE SET changelog.formatVersion = " + ChangelogHistoryUpgrader.CURRENT_FORMAT_VERSION + " " +
             "MERGE (changelog)<-[ewc:EXECUTED_WITHIN_CHANGELOG]-(changeset:__LiquigraphChangeset {id: ?, author: ?}) " +
-            "ON MATCH SET  changeset.checksum = ? " +
-            "ON CREATE SET changeset.checksum = ?, " +
+            "ON MATCH SET  changeset.checksum = ?, changeset.checksumAlgorithm = ? " +
+            "ON CREATE SET changeset.checksum = ?, changeset.checksumAlgorithm = ?, " +
             "              ewc.time = timestamp() " +
             "WITH changeset " +
             // deletes previous stored queries, if any
             "OPTIONAL MATCH (changeset)<-[eq:EXECUTED_WITHIN_CHANGESET]-(query:__LiquigraphQuery) " +
             "DELETE eq, query " +
-            "RETURN changeset ";
+            // stores the possibly updated queries, all at once
+            // query files are stored as references, their contents may be too large for the history
+            "WITH DISTINCT changeset, ? AS queries " +
+            "UNWIND range(0, size(queries) - 1) AS query_order " +
+            "CREATE (changeset)<-[:EXECUTED_WITHIN_CHANGESET {`order`: query_order}]-(query:__LiquigraphQuery) " +
+            "SET query = queries[query_order]";
 
-    private static final String QUERY_UPSERT =
-        // stores the possibly updated queries
-        "MATCH (changeset:__LiquigraphChangeset {id: ?, author: ?}) " +
-            "CREATE (changeset)<-[:EXECUTED_WITHIN_CHANGESET {`order`:?}]-(:__LiquigraphQuery {query: ?})";
+    private static final String CHANGELOG_UPSERT =
+        "MERGE (changelog:__LiquigraphChangelog) " +
+            "ON CREATE SET changelog.formatVersion = " + ChangelogHistoryUpgrader.CURRENT_FORMAT_VERSION;
+
+    private static final CypherParameter ROWS_PARAMETER = CypherParameter.named("rows");
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ChangelogGraphWriter.class);
 
     private final Supplier<Connection> connectionSupplier;
     private final ConditionExecutor conditionExecutor;
+    private final Predicate<Changeset> runsAtomically;
+    private final int parallelism;
+    private final ChangelogLoader changelogLoader;
+    private final BatchedQueryExecutor batchedQueryExecutor = new BatchedQueryExecutor();
 
     public ChangelogGraphWriter(Supplier<Connection> connectionSupplier,
                                 ConditionExecutor conditionExecutor) {
+        this(connectionSupplier, conditionExecutor, false);
+    }
+
+    public ChangelogGraphWriter(Supplier<Connection> connectionSupplier,
+                                ConditionExecutor conditionExecutor,
+                                boolean atomicChangesets) {
+        this(connectionSupplier, conditionExecutor, atomicChangesets, 1);
+    }
+
+    public ChangelogGraphWriter(Supplier<Connection> connectionSupplier,
+                                ConditionExecutor conditionExecutor,
+                                boolean atomicChangesets,
+                                int parallelism) {
+        this(connectionSupplier, conditionExecutor, atomicChangesets, parallelism,
+            ClassLoaderChangelogLoader.currentThreadContextClassLoader());
+    }
+
+    /**
+     * @param connectionSupplier connection supplier, called from worker threads when <code>parallelism</code>
+     *                           is greater than 1
+     * @param conditionExecutor pre- and postcondition executor
+     * @param atomicChangesets whether changesets run atomically by default
+     * @param parallelism maximum number of changesets executed concurrently
+     * @param changelogLoader loader of the parameter files and query files of changesets
+     */
+    public ChangelogGraphWriter(Supplier<Connection> connectionSupplier,
+                                ConditionExecutor conditionExecutor,
+                                boolean atomicChangesets,
+                                int parallelism,
+                                ChangelogLoader changelogLoader) {
         this.connectionSupplier = connectionSupplier;
         this.conditionExecutor = conditionExecutor;
+        this.runsAtomically = RUNS_ATOMICALLY(atomicChangesets);
+        this.parallelism = parallelism;
+        this.changelogLoader = changelogLoader;
     }
 
     /**
@@ -71,18 +136,92 @@ public class ChangelogGraphWriter implements ChangelogWriter {
      * Please note that these two operations are performed in two separate transactions,
      * as user-defined migrations may operate on indices and those need be run apart
      * from data changes.
+     * The only exception is atomic changesets, whose queries and history entry are
+     * committed together.
+     * <p>
+     * When the configured parallelism is greater than 1, changesets are executed on
+     * a bounded worker pool as soon as the changesets they depend on are executed
+     * (see {@link ChangesetDependencyGraph}). History entries are still written
+     * in declaration order by the calling thread, except for atomic changesets
+     * which record their own entry as part of their transaction.
+     * If a changeset fails, no further changeset is started, running ones complete
+     * and all the executed changesets are recorded before the failure is rethrown.
+     *
+     * @see ChangesetRunsAtomically
      */
     @Override
     public void write(Collection<Changeset> changelog) {
+        if (parallelism > 1 && changelog.size() > 1) {
+            writeConcurrently(new ArrayList<>(changelog));
+            return;
+        }
         for (Changeset changeset : changelog) {
             StatementExecution statementExecution = executeStatement(changeset);
-            if (statementExecution == StatementExecution.IGNORE_FAILURE) {
-                continue;
+            if (statementExecution == StatementExecution.SUCCESS) {
+                insertChangeset(changeset);
             }
-            insertChangeset(changeset);
         }
     }
 
+    private void writeConcurrently(List<Changeset> changesets) {
+        ChangesetDependencyGraph graph = ChangesetDependencyGraph.of(changesets);
+        // atomic changesets upsert the changelog node from worker threads: create it beforehand to avoid duplicates
+        upsertChangelog();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, workerThreadFactory());
+        try {
+            List<CompletableFuture<StatementExecution>> executions = scheduleExecutions(changesets, graph, workers);
+            RuntimeException failure = null;
+            for (int i = 0; i < changesets.size(); i++) {
+                StatementExecution execution;
+                try {
+                    execution = executions.get(i).join();
+                } catch (CancellationException e) {
+                    continue;
+                } catch (CompletionException e) {
+                    if (failure == null && !(e.getCause() instanceof CancellationException)) {
+                        failure = propagate(e.getCause());
+                    }
+                    continue;
+                }
+                if (execution == StatementExecution.SUCCESS) {
+                    insertChangeset(changesets.get(i));
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private List<CompletableFuture<StatementExecution>> scheduleExecutions(List<Changeset> changesets,
+                                                                           ChangesetDependencyGraph graph,
+                                                                           ExecutorService workers) {
+        AtomicBoolean failed = new AtomicBoolean(false);
+        List<CompletableFuture<StatementExecution>> executions = new ArrayList<>(changesets.size());
+        for (int i = 0; i < changesets.size(); i++) {
+            Changeset changeset = changesets.get(i);
+            CompletableFuture<?>[] predecessors = graph.predecessorsOf(i).stream()
+                .map(executions::get)
+                .toArray(CompletableFuture<?>[]::new);
+            executions.add(CompletableFuture.allOf(predecessors)
+                .thenApplyAsync(ignored -> {
+                    if (failed.get()) {
+                        LOGGER.warn("Skipping changeset ID {} by {} after previous failure", changeset.getId(), changeset.getAuthor());
+                        throw new CancellationException();
+                    }
+                    return executeStatement(changeset);
+                }, workers)
+                .whenComplete((execution, error) -> {
+                    if (error != null) {
+                        failed.set(true);
+                    }
+                }));
+        }
+        return executions;
+    }
+
     private StatementExecution executeStatement(Changeset changeset) {
         try {
             Precondition precondition = changeset.getPrecondition();
@@ -91,10 +230,17 @@ public class ChangelogGraphWriter implements ChangelogWriter {
                 return handleFailedPrecondition(precondition, changeset);
             }
 
+            if (runsAtomically.test(changeset)) {
+                LOGGER.info("Executing changeset ID {} by {} atomically", changeset.getId(), changeset.getAuthor());
+                executeAtomically(changeset);
+                LOGGER.info("Changeset ID {} by {} was just executed", changeset.getId(), changeset.getAuthor());
+                return StatementExecution.RECORDED;
+            }
+
             boolean postConditionApplies;
             do {
                 LOGGER.info("Executing postcondition of changeset ID {} by {}", changeset.getId(), changeset.getAuthor());
-                executeChangesetQueries(changeset.getQueries());
+                executeChangesetQueries(changeset);
 
                 Postcondition postcondition = changeset.getPostcondition();
                 postConditionApplies = postcondition != null && executeCondition(postcondition);
@@ -107,14 +253,115 @@ public class ChangelogGraphWriter implements ChangelogWriter {
         return StatementExecution.SUCCESS;
     }
 
-    private void executeChangesetQueries(Collection<String> queries) throws SQLException {
-        try (Connection connection = connectionSupplier.get(); Statement statement = connection.createStatement()) {
+    private void executeChangesetQueries(Changeset changeset) throws SQLException {
+        try (Connection connection = connectionSupplier.get()) {
+            Batch batch = changeset.getBatch();
+            if (batch != null) {
+                executeBatchedQueries(connection, changeset, batch);
+                return;
+            }
+            executeQueries(connection, changeset);
+            connection.commit();
+            LOGGER.debug("Committing transaction");
+        }
+    }
+
+    /**
+     * Batches are committed as they go, query files are therefore checked before any of their statements is executed.
+     */
+    private void executeBatchedQueries(Connection connection, Changeset changeset, Batch batch) throws SQLException {
+        try (ChangesetStatements statements = ChangesetStatements.open(changeset, changelogLoader)) {
+            ChangesetStatements.checkDigests(changeset, changelogLoader);
+            String query;
+            while ((query = statements.next()) != null) {
+                LOGGER.debug("Executing batched query: {}", query);
+                if (batch.isInTransactions()) {
+                    batchedQueryExecutor.executeInTransactions(connection, query, batch);
+                } else {
+                    batchedQueryExecutor.executeUntilExhausted(connection, query, batch);
+                }
+            }
+        } catch (IOException e) {
+            throw propagate(e);
+        }
+    }
+
+    private void executeAtomically(Changeset changeset) throws SQLException {
+        try (Connection connection = connectionSupplier.get()) {
+            executeQueries(connection, changeset);
+            upsertChangeset(connection, changeset);
+            connection.commit();
+            LOGGER.debug("Committing transaction");
+        }
+    }
+
+    private void executeQueries(Connection connection, Changeset changeset) throws SQLException {
+        Parameters parameters = changeset.getParameters();
+        try {
+            if (parameters != null) {
+                executeParameterizedQueries(connection, ChangesetStatements.readAll(changeset, changelogLoader), parameters);
+            } else if (changeset.hasQueryFiles()) {
+                executeStatements(connection, changeset);
+            } else {
+                executeQueries(connection, changeset.getQueries());
+            }
+        } catch (IOException e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Statements of query files are read and executed one at a time, so that only the statement being executed
+     * is held in memory. They are committed together, like any other changeset.
+     */
+    private void executeStatements(Connection connection, Changeset changeset) throws SQLException, IOException {
+        try (ChangesetStatements statements = ChangesetStatements.open(changeset, changelogLoader);
+             Statement statement = connection.createStatement()) {
+            long count = 0;
+            String query;
+            while ((query = statements.next()) != null) {
+                statement.execute(query);
+                count++;
+            }
+            LOGGER.debug("Executed {} statements", count);
+        }
+    }
+
+    /**
+     * Parameter rows are streamed in batches, each batch being bound to the <code>$rows</code>
+     * parameter of every query. All batches are committed together, like any other changeset.
+     */
+    private void executeParameterizedQueries(Connection connection,
+                                             Collection<String> queries,
+                                             Parameters parameters) throws SQLException, IOException {
+        List<PreparedStatement> statements = new ArrayList<>(queries.size());
+        try (ParameterRows rows = ParameterRows.open(parameters, changelogLoader)) {
+            for (String query : queries) {
+                statements.add(connection.prepareStatement(ROWS_PARAMETER.toPositional(query)));
+            }
+            long total = 0;
+            List<Map<String, Object>> batch;
+            while (!(batch = rows.nextBatch(parameters.getBatchSize())).isEmpty()) {
+                for (PreparedStatement statement : statements) {
+                    statement.setObject(1, batch);
+                    statement.execute();
+                }
+                total += batch.size();
+                LOGGER.debug("Executed parameterized queries with {} rows ({} so far)", batch.size(), total);
+            }
+        } finally {
+            for (PreparedStatement statement : statements) {
+                statement.close();
+            }
+        }
+    }
+
+    private static void executeQueries(Connection connection, Collection<String> queries) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
             for (String query : queries) {
                 statement.execute(query);
                 LOGGER.debug("Executing query: {}", query);
             }
-            connection.commit();
-            LOGGER.debug("Committing transaction");
         }
     }
 
@@ -160,45 +407,72 @@ public class ChangelogGraphWriter implements ChangelogWriter {
         }
     }
 
+    private void upsertChangelog() {
+        try (Connection connection = connectionSupplier.get();
+             Statement statement = connection.createStatement()) {
+            statement.execute(CHANGELOG_UPSERT);
+            connection.commit();
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+    }
+
     private void insertChangeset(Changeset changeset) {
-        try (Connection connection = connectionSupplier.get(); PreparedStatement changesetUpsertStatement = connection.prepareStatement(CHANGESET_UPSERT);
-             PreparedStatement queryUpsertStatement = connection.prepareStatement(QUERY_UPSERT)) {
+        try (Connection connection = connectionSupplier.get()) {
+            upsertChangeset(connection, changeset);
+            connection.commit();
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+    }
 
-            String id = changeset.getId();
-            String author = changeset.getAuthor();
+    private static void upsertChangeset(Connection connection, Changeset changeset) throws SQLException {
+        try (PreparedStatement changesetUpsertStatement = connection.prepareStatement(CHANGESET_UPSERT)) {
             String checksum = changeset.getChecksum();
-            changesetUpsertStatement.setString(1, id);
-            changesetUpsertStatement.setString(2, author);
+            String checksumAlgorithm = changeset.getChecksumAlgorithm();
+            changesetUpsertStatement.setString(1, changeset.getId());
+            changesetUpsertStatement.setString(2, changeset.getAuthor());
             changesetUpsertStatement.setString(3, checksum);
-            changesetUpsertStatement.setString(4, checksum);
+            changesetUpsertStatement.setString(4, checksumAlgorithm);
+            changesetUpsertStatement.setString(5, checksum);
+            changesetUpsertStatement.setString(6, checksumAlgorithm);
+            changesetUpsertStatement.setObject(7, historyQueries(changeset));
             changesetUpsertStatement.execute();
+        }
+    }
 
-            queryUpsertStatement.setString(1, id);
-            queryUpsertStatement.setString(2, author);
-            Collection<String> queries = changeset.getQueries();
-            for (int order = 0; order < queries.size(); order++) {
-                queryUpsertStatement.setInt(3, order);
-                queryUpsertStatement.setString(4, getNth(queries, order));
-                queryUpsertStatement.execute();
-            }
-
-            connection.commit();
-        } catch (SQLException e) {
-            throw propagate(e);
+    private static List<Map<String, Object>> historyQueries(Changeset changeset) {
+        List<Map<String, Object>> result = new ArrayList<>(changeset.getDeclaredQueries().size());
+        for (ChangesetQuery query : changeset.getDeclaredQueries()) {
+            result.add(query.getFile() == null
+                ? singletonMap("query", query.getQuery())
+                : singletonMap("file", query.getFile()));
         }
+        return result;
     }
 
-    private <T> T getNth(Collection<T> items, int index) {
-        int i = 0;
-        for (T item : items) {
-            if (i++ == index) {
-                return item;
-            }
+    /**
+     * Worker threads are virtual when the runtime supports them (JDK 21+), platform daemon threads otherwise.
+     * In both cases, the fixed-size pool bounds the number of concurrently executed changesets.
+     */
+    private static ThreadFactory workerThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "liquigraph-changeset-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.debug("Virtual threads are not available, falling back to platform threads");
         }
-        throw new NoSuchElementException(String.format("element %d not found", index));
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "liquigraph-changeset-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     private enum StatementExecution {
-        SUCCESS, IGNORE_FAILURE;
+        SUCCESS, IGNORE_FAILURE, RECORDED;
     }
 }
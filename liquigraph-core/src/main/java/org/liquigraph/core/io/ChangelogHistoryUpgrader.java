@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.liquigraph.core.model.ChecksumAlgorithms;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static org.liquigraph.core.exception.Throwables.propagate;
+
+/**
+ * Brings the persisted history graph up to the format expected by {@link ChangelogGraphReader}
+ * and {@link ChangelogGraphWriter}.
+ * <p>
+ * The history format version is stored in the <code>formatVersion</code> property of the
+ * <code>__LiquigraphChangelog</code> node. Histories created before the version marker existed
+ * are considered to be at version 0.
+ * Every upgrade step is run once, in version order, and the marker is bumped in the same
+ * transaction, so that an up-to-date history only costs a single lookup of the changelog node.
+ * Schema changes cannot share a transaction with data changes, the marker of schema steps is
+ * therefore bumped in a transaction of its own.
+ * <p>
+ * Databases without any history yet only get the history schema, the writer stamps the changelog
+ * node with the current format version when it creates it.
+ */
+public class ChangelogHistoryUpgrader {
+
+    /**
+     * Format version of the histories written by this version of Liquigraph.
+     */
+    public static final long CURRENT_FORMAT_VERSION = 3;
+
+    /**
+     * Oldest format version {@link ChangelogGraphReader#read(Connection)} can read, for tools that only read the
+     * history, such as the Liquibase migration, and should not leave any schema of their own behind.
+     */
+    public static final long READABLE_FORMAT_VERSION = 1;
+
+    private static final String MATCH_FORMAT_VERSION =
+        "MATCH (changelog:__LiquigraphChangelog) " +
+        "RETURN coalesce(changelog.formatVersion, 0) AS version";
+
+    private static final String SET_FORMAT_VERSION =
+        "MATCH (changelog:__LiquigraphChangelog) " +
+        "SET changelog.formatVersion = %d";
+
+    private static final String MATCH_CHANGESET_INDEX =
+        "CALL db.indexes() YIELD labelsOrTypes, properties " +
+        "WHERE labelsOrTypes = ['__LiquigraphChangeset'] AND properties = ['id', 'author'] " +
+        "RETURN count(*) > 0 AS indexed";
+
+    // changesets are looked up by id and author when the changelog is reconciled with the history
+    private static final String CREATE_CHANGESET_INDEX =
+        "CREATE INDEX ON :__LiquigraphChangeset(id, author)";
+
+    private static final List<HistoryUpgrade> UPGRADES = asList(
+        new HistoryUpgrade(1, "Migrating pre 1.0-RC3 history graph", dataUpgrade(
+            "MATCH (:__LiquigraphChangelog)<-[exec:EXECUTED_WITHIN_CHANGELOG]-(changeset:__LiquigraphChangeset) " +
+                "WHERE EXISTS(exec.`order`) AND EXISTS(changeset.query) " +
+                "SET exec.time = exec.`order` " +
+                "WITH exec, changeset " +
+                "REMOVE exec.`order` " +
+                "WITH changeset " +
+                "CREATE (changeset)<-[:EXECUTED_WITHIN_CHANGESET {`order`: 0}]-(query:__LiquigraphQuery) " +
+                "SET query.query = changeset.query " +
+                "WITH changeset " +
+                "REMOVE changeset.query")),
+        new HistoryUpgrade(2, "Recording the checksum algorithm of executed changesets", dataUpgrade(
+            "MATCH (changeset:__LiquigraphChangeset) " +
+                "WHERE changeset.checksumAlgorithm IS NULL " +
+                "SET changeset.checksumAlgorithm = '" + ChecksumAlgorithms.SHA_1.getName() + "'")),
+        new HistoryUpgrade(3, "Indexing executed changesets by id and author", ChangelogHistoryUpgrader::createChangesetIndex)
+    );
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangelogHistoryUpgrader.class);
+
+    public void upgrade(Connection connection) {
+        upgrade(connection, CURRENT_FORMAT_VERSION);
+    }
+
+    /**
+     * Only runs the upgrade steps up to the given format version, histories already past it are left untouched.
+     * The history schema is only created by {@link #upgrade(Connection)}.
+     */
+    public void upgrade(Connection connection, long targetVersion) {
+        try (Statement statement = connection.createStatement()) {
+            Long version = readFormatVersion(statement);
+            connection.commit();
+            if (version == null) {
+                if (targetVersion >= CURRENT_FORMAT_VERSION) {
+                    LOGGER.debug("No history graph yet, creating its schema");
+                    createChangesetIndex(connection, statement);
+                }
+                return;
+            }
+            if (version >= targetVersion) {
+                LOGGER.debug("History graph is up to date (format version {})", version);
+                return;
+            }
+            for (HistoryUpgrade upgrade : UPGRADES) {
+                if (upgrade.version <= version || upgrade.version > targetVersion) {
+                    continue;
+                }
+                LOGGER.debug("{} (format version {})", upgrade.description, upgrade.version);
+                upgrade.step.apply(connection, statement);
+                statement.execute(format(SET_FORMAT_VERSION, upgrade.version));
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            throw propagate(e);
+        }
+    }
+
+    private static Long readFormatVersion(Statement statement) throws SQLException {
+        try (ResultSet result = statement.executeQuery(MATCH_FORMAT_VERSION)) {
+            if (!result.next()) {
+                return null;
+            }
+            return result.getLong("version");
+        }
+    }
+
+    private static void createChangesetIndex(Connection connection, Statement statement) throws SQLException {
+        boolean indexed;
+        try (ResultSet result = statement.executeQuery(MATCH_CHANGESET_INDEX)) {
+            indexed = result.next() && result.getBoolean("indexed");
+        }
+        connection.commit();
+        if (!indexed) {
+            statement.execute(CREATE_CHANGESET_INDEX);
+            connection.commit();
+        }
+    }
+
+    private static UpgradeStep dataUpgrade(String query) {
+        return (connection, statement) -> statement.execute(query);
+    }
+
+    @FunctionalInterface
+    private interface UpgradeStep {
+        void apply(Connection connection, Statement statement) throws SQLException;
+    }
+
+    private static final class HistoryUpgrade {
+
+        private final long version;
+        private final String description;
+        private final UpgradeStep step;
+
+        HistoryUpgrade(long version, String description, UpgradeStep step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.liquigraph.core.model.Changeset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Dependency graph of the changesets to execute, indexed by declaration order.
+ * <p>
+ * A changeset declaring <code>depends-on</code> only depends on the listed changesets
+ * (identifiers not part of the graph belong to already executed changesets and are ignored,
+ * identifiers are checked against the whole changelog by {@link #checkDependencies(Collection)}).
+ * A changeset without any declared dependency depends on every changeset declared before it,
+ * which is the sequential behaviour of changelogs that do not declare dependencies at all.
+ * <p>
+ * The latter case is encoded by only depending on the current sinks of the graph, so that
+ * the number of edges stays linear in the number of changesets.
+ */
+public final class ChangesetDependencyGraph {
+
+    private final List<List<Integer>> predecessors;
+
+    private ChangesetDependencyGraph(List<List<Integer>> predecessors) {
+        this.predecessors = predecessors;
+    }
+
+    public static ChangesetDependencyGraph of(List<Changeset> changesets) {
+        Collection<String> identifiers = identifiers(changesets);
+        Map<String, List<Integer>> indicesById = new HashMap<>();
+        Set<Integer> sinks = new LinkedHashSet<>();
+        List<List<Integer>> predecessors = new ArrayList<>(changesets.size());
+        for (int i = 0; i < changesets.size(); i++) {
+            Changeset changeset = changesets.get(i);
+            Collection<String> dependencies = changeset.getDependencies();
+            List<Integer> changesetPredecessors;
+            if (dependencies == null) {
+                changesetPredecessors = new ArrayList<>(sinks);
+                sinks.clear();
+            } else {
+                changesetPredecessors = new ArrayList<>();
+                for (String dependency : dependencies) {
+                    List<Integer> dependencyIndices = indicesById.get(dependency);
+                    if (dependencyIndices == null) {
+                        if (identifiers.contains(dependency)) {
+                            throw new IllegalArgumentException(format(
+                                "Changeset id=<%s>, author=<%s> depends on changeset id=<%s>, which must be declared first",
+                                changeset.getId(), changeset.getAuthor(), dependency
+                            ));
+                        }
+                        continue;
+                    }
+                    changesetPredecessors.addAll(dependencyIndices);
+                    sinks.removeAll(dependencyIndices);
+                }
+            }
+            predecessors.add(changesetPredecessors);
+            sinks.add(i);
+            indicesById.computeIfAbsent(changeset.getId(), id -> new ArrayList<>()).add(i);
+        }
+        return new ChangesetDependencyGraph(predecessors);
+    }
+
+    /**
+     * Checks that the dependencies of the declared changesets are declared changesets, declared before their dependent.
+     * This is done on the whole parsed changelog, since the graph itself only knows about pending changesets.
+     */
+    public static void checkDependencies(Collection<Changeset> declaredChangesets) {
+        Collection<String> identifiers = identifiers(declaredChangesets);
+        Set<String> declared = new HashSet<>(identifiers.size());
+        for (Changeset changeset : declaredChangesets) {
+            Collection<String> dependencies = changeset.getDependencies();
+            if (dependencies != null) {
+                for (String dependency : dependencies) {
+                    if (!identifiers.contains(dependency)) {
+                        throw new IllegalArgumentException(format(
+                            "Changeset id=<%s>, author=<%s> depends on unknown changeset id=<%s>",
+                            changeset.getId(), changeset.getAuthor(), dependency
+                        ));
+                    }
+                    if (!declared.contains(dependency)) {
+                        throw new IllegalArgumentException(format(
+                            "Changeset id=<%s>, author=<%s> depends on changeset id=<%s>, which must be declared first",
+                            changeset.getId(), changeset.getAuthor(), dependency
+                        ));
+                    }
+                }
+            }
+            declared.add(changeset.getId());
+        }
+    }
+
+    public List<Integer> predecessorsOf(int index) {
+        return predecessors.get(index);
+    }
+
+    public int size() {
+        return predecessors.size();
+    }
+
+    private static Collection<String> identifiers(Collection<Changeset> changesets) {
+        Collection<String> result = new LinkedHashSet<>(changesets.size());
+        for (Changeset changeset : changesets) {
+            result.add(changeset.getId());
+        }
+        return result;
+    }
+}
@@ -22,6 +22,9 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import org.liquigraph.core.exception.ConditionExecutionException;
 import org.liquigraph.core.model.CompoundQuery;
 import org.liquigraph.core.model.Condition;
@@ -30,13 +33,94 @@ import org.liquigraph.core.model.SimpleQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Evaluates pre- and postconditions.
+ * <p>
+ * Compound conditions are compiled into a single Cypher statement, each leaf query being
+ * run as a <code>CALL {}</code> subquery, so that the whole condition costs one round trip.
+ * If the compiled statement cannot be executed (for instance because a leaf query is not
+ * allowed in a subquery), the transaction is rolled back and the condition is evaluated
+ * leaf by leaf, skipping leaves whose result cannot change the outcome.
+ */
 public class ConditionExecutor {
 
+    private static final String RESULT_VARIABLE_PREFIX = "__liquigraph_condition_";
+
     private final Logger logger = LoggerFactory.getLogger(ConditionExecutor.class);
 
     public final boolean executeCondition(Connection connection, Condition condition) {
         checkArgument(connection != null, "Connection should not be null");
-        return applyPrecondition(connection, condition.getQuery());
+        Query query = condition.getQuery();
+        if (query instanceof CompoundQuery) {
+            Optional<Boolean> result = executeCompiled(connection, compile(query));
+            if (result.isPresent()) {
+                return result.get();
+            }
+        }
+        return applyPrecondition(connection, query);
+    }
+
+    /**
+     * Compiles the given condition query into a single statement yielding a single <code>result</code> column.
+     * Only the first row of each leaf query is considered, as it is when leaves are evaluated one by one.
+     */
+    static String compile(Query query) {
+        List<String> leaves = new ArrayList<>();
+        String expression = compileExpression(query, leaves);
+        StringBuilder statement = new StringBuilder();
+        for (int i = 0; i < leaves.size(); i++) {
+            statement.append("CALL { ").append(leaves.get(i)).append(" } ");
+            statement.append("WITH ");
+            for (int j = 0; j < i; j++) {
+                statement.append(RESULT_VARIABLE_PREFIX).append(j).append(", ");
+            }
+            statement.append("result AS ").append(RESULT_VARIABLE_PREFIX).append(i).append(" LIMIT 1 ");
+        }
+        return statement.append("RETURN ").append(expression).append(" AS result").toString();
+    }
+
+    private static String compileExpression(Query query, List<String> leaves) {
+        if (query instanceof SimpleQuery) {
+            leaves.add(stripTrailingSemicolon(((SimpleQuery) query).getQuery()));
+            return RESULT_VARIABLE_PREFIX + (leaves.size() - 1);
+        }
+        if (query instanceof CompoundQuery) {
+            CompoundQuery compoundQuery = (CompoundQuery) query;
+            String firstExpression = compileExpression(compoundQuery.getFirstQuery(), leaves);
+            String secondExpression = compileExpression(compoundQuery.getSecondQuery(), leaves);
+            return compoundQuery.compose(firstExpression, secondExpression);
+        }
+        throw new IllegalArgumentException(format("Unsupported query type <%s>", query.getClass().getName()));
+    }
+
+    private static String stripTrailingSemicolon(String query) {
+        String result = query.trim();
+        while (result.endsWith(";")) {
+            result = result.substring(0, result.length() - 1).trim();
+        }
+        return result;
+    }
+
+    private Optional<Boolean> executeCompiled(Connection connection, String query) {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            logger.debug("Executed compiled condition: {}", query);
+            if (resultSet.next()) {
+                return Optional.of(resultSet.getBoolean("result"));
+            }
+            logger.debug("Compiled condition yielded no row, evaluating each query separately");
+        }
+        catch (SQLException e) {
+            logger.debug("Compiled condition failed, evaluating each query separately", e);
+        }
+        try {
+            connection.rollback();
+        }
+        catch (SQLException e) {
+            throw new ConditionExecutionException(e, "\nError rolling back compiled condition:\n" +
+                "\tActual cause: %s", e.getMessage());
+        }
+        return Optional.empty();
     }
 
     private boolean applyPrecondition(Connection connection, Query query) {
@@ -46,8 +130,13 @@ public class ConditionExecutor {
         }
         if (query instanceof CompoundQuery) {
             CompoundQuery compoundQuery = (CompoundQuery) query;
+            boolean firstResult = applyPrecondition(connection, compoundQuery.getFirstQuery());
+            if (compoundQuery.compose(firstResult, false) == compoundQuery.compose(firstResult, true)) {
+                logger.debug("Skipping second query of {}: the first query determines the result", compoundQuery);
+                return compoundQuery.compose(firstResult, false);
+            }
             return compoundQuery.compose(
-                applyPrecondition(connection, compoundQuery.getFirstQuery()),
+                firstResult,
                 applyPrecondition(connection, compoundQuery.getSecondQuery())
             );
         }
@@ -22,7 +22,7 @@ import org.liquigraph.core.io.lock.LockableConnection;
 import java.sql.Connection;
 import java.util.function.Supplier;
 
-public class GraphJdbcConnector {
+public class GraphJdbcConnector implements AutoCloseable {
 
     private final LiquigraphLock lock;
     private final Configuration configuration;
@@ -44,4 +44,15 @@ public class GraphJdbcConnector {
         return LockableConnection.acquire(connection, lock);
     }
 
+    /**
+     * Releases the lock taken by the connections handed out so far.
+     * This must only be called once these connections are closed.
+     *
+     * @see LiquigraphLock#release()
+     */
+    @Override
+    public void close() {
+        lock.release();
+    }
+
 }
@@ -16,6 +16,7 @@
 package org.liquigraph.core.io;
 
 import liquibase.change.core.RawSQLChange;
+import liquibase.change.core.SQLFileChange;
 import liquibase.changelog.ChangeSet;
 import liquibase.database.jvm.JdbcConnection;
 import liquibase.exception.DatabaseException;
@@ -33,6 +34,7 @@ import org.liquigraph.core.configuration.ConnectionConfiguration;
 import org.liquigraph.core.configuration.ExecutionContexts;
 import org.liquigraph.core.model.AndQuery;
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
 import org.liquigraph.core.model.OrQuery;
 import org.liquigraph.core.model.Precondition;
 import org.liquigraph.core.model.Query;
@@ -58,6 +60,8 @@ public class LiquibaseMigrator {
 
     private final ChangelogParser parser;
 
+    private final ChangelogHistoryUpgrader upgrader;
+
     private final ChangelogGraphReader reader;
 
     private final ChangeLogSerializer liquibaseFileSerializer;
@@ -66,8 +70,9 @@ public class LiquibaseMigrator {
 
     private final Map<ChangeSetId, Collection<String>> contextsPerChangeSet = new HashMap<>();
 
-    public LiquibaseMigrator(ChangelogParser parser, ChangelogGraphReader reader) {
+    public LiquibaseMigrator(ChangelogParser parser, ChangelogHistoryUpgrader upgrader, ChangelogGraphReader reader) {
         this(parser,
+            upgrader,
             reader,
             ChangeLogSerializerFactory.getInstance().getSerializer("xml"),
             getNeo4jHistoryService());
@@ -75,16 +80,19 @@ public class LiquibaseMigrator {
 
     // visible for testing
     LiquibaseMigrator(ChangelogParser parser,
+                      ChangelogHistoryUpgrader upgrader,
                       ChangelogGraphReader reader,
                       ChangeLogSerializer fileSerializer,
                       Neo4jChangelogHistoryService graphWriter) {
         this.parser = parser;
+        this.upgrader = upgrader;
         this.reader = reader;
         this.liquibaseFileSerializer = fileSerializer;
         this.graphWriter = graphWriter;
     }
 
-    public void migrateDeclaredChangeSets(String mainChangeLog, Collection<String> executionContexts, File targetFile, ChangelogLoader changelogLoader) {
+    // Liquibase serializer and history service are stateful, migrations are therefore serialized
+    public synchronized void migrateDeclaredChangeSets(String mainChangeLog, Collection<String> executionContexts, File targetFile, ChangelogLoader changelogLoader) {
         String targetFileName = targetFile.getName();
         List<Changeset> liquigraphChangeSets = parseLiquigraphChangeSets(mainChangeLog, executionContexts, changelogLoader);
         List<ChangeSet> liquibaseChangeSets = convertDeclaredChangeSets(liquigraphChangeSets, targetFileName);
@@ -95,7 +103,7 @@ public class LiquibaseMigrator {
         writeLiquibaseChangeSets(targetFile, liquibaseChangeSets);
     }
 
-    public void migratePersistedChangeSets(ConnectionConfiguration connectionSupplier, String changelog, boolean deleteMigratedGraph) {
+    public synchronized void migratePersistedChangeSets(ConnectionConfiguration connectionSupplier, String changelog, boolean deleteMigratedGraph) {
         try (Connection connection = connectionSupplier.get()) {
             migrateHistory(connection, changelog);
             if (deleteMigratedGraph) {
@@ -107,6 +115,8 @@ public class LiquibaseMigrator {
     }
 
     private void migrateHistory(Connection connection, String changelog) throws DatabaseException {
+        // the history is on its way out: only rewrite what the reader cannot read, without creating any schema
+        upgrader.upgrade(connection, ChangelogHistoryUpgrader.READABLE_FORMAT_VERSION);
         Collection<Changeset> liquigraphChangeSets = reader.read(connection);
         List<ChangeSet> liquibaseChangeSets = convertPersistedChangeSets(liquigraphChangeSets, changelog);
         graphWriter.getDatabase().setConnection(new JdbcConnection(connection));
@@ -262,10 +272,15 @@ public class LiquibaseMigrator {
     }
 
     private static void addQueries(Changeset liquigraphChangeSet, ChangeSet result) {
-        liquigraphChangeSet.getQueries()
-            .stream()
-            .map(RawSQLChange::new)
-            .forEach(result::addChange);
+        for (ChangesetQuery query : liquigraphChangeSet.getDeclaredQueries()) {
+            if (query.getFile() == null) {
+                result.addChange(new RawSQLChange(query.getQuery()));
+            } else {
+                SQLFileChange change = new SQLFileChange();
+                change.setPath(query.getFile());
+                result.addChange(change);
+            }
+        }
     }
 
     private static Neo4jChangelogHistoryService getNeo4jHistoryService() {
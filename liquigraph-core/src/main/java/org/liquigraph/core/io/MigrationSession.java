@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.liquigraph.core.exception.Throwables.propagate;
+
+/**
+ * Run-scoped connection holder.
+ * <p>
+ * The first call to {@link #get()} from a given thread opens a connection from the
+ * underlying supplier (usually a locked one, see {@link GraphJdbcConnector}).
+ * Every subsequent call from that thread hands out that same connection, so that
+ * a sequential migration run goes through one physical connection, while concurrent
+ * changeset executions each get their own connection.
+ * <p>
+ * Connections handed out by the session can (and should) be closed by callers:
+ * this only rolls back pending transactions. The underlying connections are released
+ * by {@link #close()}, which must only be called once no other thread uses the session
+ * anymore. The lock outlives the session, see {@link GraphJdbcConnector#close()}.
+ */
+public final class MigrationSession implements Supplier<Connection>, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrationSession.class);
+
+    private final Supplier<Connection> connectionSupplier;
+    private final Map<Thread, Connection> connections = new ConcurrentHashMap<>();
+
+    public MigrationSession(Supplier<Connection> connectionSupplier) {
+        this.connectionSupplier = connectionSupplier;
+    }
+
+    @Override
+    public Connection get() {
+        Thread thread = Thread.currentThread();
+        Connection connection = connections.get(thread);
+        if (connection == null) {
+            LOGGER.debug("Opening migration session connection for thread {}", thread.getName());
+            connection = connectionSupplier.get();
+            connections.put(thread, connection);
+        }
+        return new SessionConnection(connection);
+    }
+
+    @Override
+    public void close() {
+        SQLException failure = null;
+        for (Connection connection : connections.values()) {
+            try {
+                LOGGER.debug("Closing migration session connection");
+                connection.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        connections.clear();
+        if (failure != null) {
+            throw propagate(failure);
+        }
+    }
+}
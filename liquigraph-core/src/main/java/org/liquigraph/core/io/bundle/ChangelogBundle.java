@@ -0,0 +1,400 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.bundle;
+
+import org.liquigraph.core.model.AndQuery;
+import org.liquigraph.core.model.Batch;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+import org.liquigraph.core.model.OrQuery;
+import org.liquigraph.core.model.Parameters;
+import org.liquigraph.core.model.Postcondition;
+import org.liquigraph.core.model.Precondition;
+import org.liquigraph.core.model.PreconditionErrorPolicy;
+import org.liquigraph.core.model.Query;
+import org.liquigraph.core.model.SimpleQuery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binary encoding of parsed changesets, produced at build time so that applications do not need to parse, resolve
+ * and validate XML changelogs at startup.
+ * <p>
+ * A bundle starts with a magic number and a format version, followed by a table of all the distinct strings of the
+ * changelog (identifiers, authors, contexts, queries, checksums...) and by the changesets, in declaration order.
+ * Changesets refer to strings by their index in the table, so that repeated strings are only stored once.
+ * Integers are variable-length encoded.
+ * <p>
+ * Changesets are bundled along with their checksum and checksum algorithm, as well as with the digests of their
+ * parameter and query files. These files are not bundled, they are still loaded when their changeset runs.
+ */
+public final class ChangelogBundle {
+
+    static final int MAGIC = 0x4C514742; // "LQGB"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int RUN_ON_CHANGE = 1;
+    private static final int RUN_ALWAYS = 1 << 1;
+    private static final int ATOMIC_DECLARED = 1 << 2;
+    private static final int ATOMIC = 1 << 3;
+    private static final int DEPENDENCIES = 1 << 4;
+    private static final int BATCH = 1 << 5;
+    private static final int PARAMETERS = 1 << 6;
+    private static final int PRECONDITION = 1 << 7;
+    private static final int POSTCONDITION = 1 << 8;
+
+    private static final int SIMPLE_QUERY = 0;
+    private static final int AND_QUERY = 1;
+    private static final int OR_QUERY = 2;
+
+    private ChangelogBundle() {
+        throw new RuntimeException("static");
+    }
+
+    /**
+     * Writes the given changesets, whose checksums are computed if they are not yet.
+     */
+    public static void write(Collection<Changeset> changesets, OutputStream output) throws IOException {
+        BundleWriter writer = new BundleWriter();
+        writer.writeVarInt(changesets.size());
+        for (Changeset changeset : changesets) {
+            writer.writeChangeset(changeset);
+        }
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        writer.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the input is not a changelog bundle supported by this version of Liquigraph
+     */
+    public static List<Changeset> read(InputStream input) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+        if (data.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a changelog bundle");
+        }
+        int version = data.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException(format(
+                "Unsupported changelog bundle format version <%d>, expected <%d>: please bundle the changelog again",
+                version, FORMAT_VERSION));
+        }
+        BundleReader reader = new BundleReader(data);
+        int count = reader.readVarInt();
+        List<Changeset> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(reader.readChangeset());
+        }
+        return result;
+    }
+
+    private static final class BundleWriter {
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> table = new ArrayList<>();
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        private final DataOutput output = new DataOutputStream(records);
+
+        void writeChangeset(Changeset changeset) throws IOException {
+            writeString(changeset.getId());
+            writeString(changeset.getAuthor());
+            writeString(changeset.getChecksumAlgorithm());
+            writeString(changeset.getChecksum());
+            writeVarInt(flags(changeset));
+            writeStrings(changeset.getExecutionsContexts());
+            if (changeset.getDependencies() != null) {
+                writeStrings(changeset.getDependencies());
+            }
+            writeVarInt(changeset.getDeclaredQueries().size());
+            for (ChangesetQuery query : changeset.getDeclaredQueries()) {
+                writeString(query.getQuery());
+                writeString(query.getFile());
+                writeString(query.getDigest());
+            }
+            Batch batch = changeset.getBatch();
+            if (batch != null) {
+                writeVarInt(batch.getSize());
+                writeVarInt(batch.getMinSize());
+                writeVarInt(batch.getMaxSize());
+                output.writeLong(batch.getTargetDuration() == null ? -1 : batch.getTargetDuration());
+                output.writeBoolean(batch.isInTransactions());
+            }
+            Parameters parameters = changeset.getParameters();
+            if (parameters != null) {
+                writeString(parameters.getFile());
+                writeString(parameters.getFormat());
+                writeVarInt(parameters.getBatchSize());
+                writeString(parameters.getContent());
+                writeString(parameters.getDigest());
+            }
+            Precondition precondition = changeset.getPrecondition();
+            if (precondition != null) {
+                writeVarInt(precondition.getPolicy().ordinal());
+                writeQuery(precondition.getQuery());
+            }
+            Postcondition postcondition = changeset.getPostcondition();
+            if (postcondition != null) {
+                writeQuery(postcondition.getQuery());
+            }
+        }
+
+        void writeTo(DataOutputStream data) throws IOException {
+            writeVarInt(data, table.size());
+            for (String string : table) {
+                byte[] bytes = string.getBytes(UTF_8);
+                writeVarInt(data, bytes.length);
+                data.write(bytes);
+            }
+            records.writeTo(data);
+        }
+
+        void writeVarInt(int value) throws IOException {
+            writeVarInt(output, value);
+        }
+
+        private static int flags(Changeset changeset) {
+            int flags = 0;
+            if (changeset.isRunOnChange()) {
+                flags |= RUN_ON_CHANGE;
+            }
+            if (changeset.isRunAlways()) {
+                flags |= RUN_ALWAYS;
+            }
+            if (changeset.getAtomic() != null) {
+                flags |= changeset.getAtomic() ? ATOMIC_DECLARED | ATOMIC : ATOMIC_DECLARED;
+            }
+            if (changeset.getDependencies() != null) {
+                flags |= DEPENDENCIES;
+            }
+            if (changeset.getBatch() != null) {
+                flags |= BATCH;
+            }
+            if (changeset.getParameters() != null) {
+                flags |= PARAMETERS;
+            }
+            if (changeset.getPrecondition() != null) {
+                flags |= PRECONDITION;
+            }
+            if (changeset.getPostcondition() != null) {
+                flags |= POSTCONDITION;
+            }
+            return flags;
+        }
+
+        private void writeQuery(Query query) throws IOException {
+            if (query instanceof SimpleQuery) {
+                writeVarInt(SIMPLE_QUERY);
+                writeString(((SimpleQuery) query).getQuery());
+                return;
+            }
+            List<Query> queries;
+            if (query instanceof AndQuery) {
+                writeVarInt(AND_QUERY);
+                queries = ((AndQuery) query).getQueries();
+            } else if (query instanceof OrQuery) {
+                writeVarInt(OR_QUERY);
+                queries = ((OrQuery) query).getQueries();
+            } else {
+                throw new IllegalArgumentException(format("Unsupported query type: %s", query.getClass().getName()));
+            }
+            writeVarInt(queries.size());
+            for (Query child : queries) {
+                writeQuery(child);
+            }
+        }
+
+        private void writeStrings(Collection<String> values) throws IOException {
+            writeVarInt(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        /*
+         * 0 stands for null, other strings are referred to by their table index plus one
+         */
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = table.size();
+                strings.put(value, index);
+                table.add(value);
+            }
+            writeVarInt(index + 1);
+        }
+
+        private static void writeVarInt(DataOutput output, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                output.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            output.writeByte(value);
+        }
+    }
+
+    private static final class BundleReader {
+
+        private final DataInput input;
+        private final String[] table;
+
+        BundleReader(DataInput input) throws IOException {
+            this.input = input;
+            this.table = new String[readVarInt()];
+            for (int i = 0; i < table.length; i++) {
+                byte[] bytes = new byte[readVarInt()];
+                input.readFully(bytes);
+                table[i] = new String(bytes, UTF_8);
+            }
+        }
+
+        /*
+         * The checksum algorithm and the queries are set before the checksum, which they would otherwise discard
+         */
+        Changeset readChangeset() throws IOException {
+            Changeset changeset = new Changeset();
+            changeset.setId(readString());
+            changeset.setAuthor(readString());
+            changeset.setChecksumAlgorithm(readString());
+            String checksum = readString();
+            int flags = readVarInt();
+            changeset.setRunOnChange((flags & RUN_ON_CHANGE) != 0);
+            changeset.setRunAlways((flags & RUN_ALWAYS) != 0);
+            if ((flags & ATOMIC_DECLARED) != 0) {
+                changeset.setAtomic((flags & ATOMIC) != 0);
+            }
+            changeset.setContexts(String.join(",", readStrings()));
+            if ((flags & DEPENDENCIES) != 0) {
+                changeset.setDependsOn(String.join(",", readStrings()));
+            }
+            int queryCount = readVarInt();
+            List<ChangesetQuery> queries = new ArrayList<>(queryCount);
+            for (int i = 0; i < queryCount; i++) {
+                ChangesetQuery query = new ChangesetQuery(readString());
+                query.setFile(readString());
+                query.setDigest(readString());
+                queries.add(query);
+            }
+            changeset.setDeclaredQueries(queries);
+            if ((flags & BATCH) != 0) {
+                Batch batch = new Batch();
+                batch.setSize(readVarInt());
+                batch.setMinSize(readVarInt());
+                batch.setMaxSize(readVarInt());
+                long targetDuration = input.readLong();
+                batch.setTargetDuration(targetDuration < 0 ? null : targetDuration);
+                batch.setInTransactions(input.readBoolean());
+                changeset.setBatch(batch);
+            }
+            if ((flags & PARAMETERS) != 0) {
+                Parameters parameters = new Parameters();
+                parameters.setFile(readString());
+                parameters.setFormat(readString());
+                parameters.setBatchSize(readVarInt());
+                parameters.setContent(readString());
+                parameters.setDigest(readString());
+                changeset.setParameters(parameters);
+            }
+            if ((flags & PRECONDITION) != 0) {
+                Precondition precondition = new Precondition();
+                precondition.setPolicy(PreconditionErrorPolicy.values()[readVarInt()]);
+                precondition.setQuery(readQuery());
+                changeset.setPrecondition(precondition);
+            }
+            if ((flags & POSTCONDITION) != 0) {
+                Postcondition postcondition = new Postcondition();
+                postcondition.setQuery(readQuery());
+                changeset.setPostcondition(postcondition);
+            }
+            changeset.setChecksum(checksum);
+            return changeset;
+        }
+
+        int readVarInt() throws IOException {
+            int result = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = input.readByte();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Corrupted changelog bundle: malformed integer");
+        }
+
+        private Query readQuery() throws IOException {
+            int type = readVarInt();
+            if (type == SIMPLE_QUERY) {
+                SimpleQuery query = new SimpleQuery();
+                query.setQuery(readString());
+                return query;
+            }
+            int count = readVarInt();
+            List<Query> queries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                queries.add(readQuery());
+            }
+            switch (type) {
+                case AND_QUERY:
+                    AndQuery andQuery = new AndQuery();
+                    andQuery.setQueries(queries);
+                    return andQuery;
+                case OR_QUERY:
+                    OrQuery orQuery = new OrQuery();
+                    orQuery.setQueries(queries);
+                    return orQuery;
+                default:
+                    throw new IllegalArgumentException(format("Corrupted changelog bundle: unknown query type <%d>", type));
+            }
+        }
+
+        private List<String> readStrings() throws IOException {
+            int count = readVarInt();
+            List<String> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(readString());
+            }
+            return result;
+        }
+
+        private String readString() throws IOException {
+            int reference = readVarInt();
+            return reference == 0 ? null : table[reference - 1];
+        }
+    }
+}
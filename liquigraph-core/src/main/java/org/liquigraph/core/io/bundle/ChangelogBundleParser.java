@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.bundle;
+
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ChangelogParser;
+import org.liquigraph.core.model.Changeset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+import static org.liquigraph.core.exception.Throwables.propagate;
+
+/**
+ * Loads the changesets of a {@link ChangelogBundle}, typically produced at build time by the <code>bundle</code> goal
+ * of the Liquigraph Maven plugin.
+ * Bundled changelogs have already been resolved and validated, no XML parsing happens here.
+ */
+public final class ChangelogBundleParser implements ChangelogParser {
+
+    @Override
+    public Collection<Changeset> parse(ChangelogLoader changelogLoader, String mainChangelogPath) {
+        try (InputStream stream = changelogLoader.load(mainChangelogPath)) {
+            if (stream == null) {
+                throw new IllegalArgumentException("Changelog bundle cannot be resolved: " + mainChangelogPath);
+            }
+            return ChangelogBundle.read(stream);
+        } catch (IOException e) {
+            throw propagate(e);
+        }
+    }
+}
@@ -24,23 +24,26 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.HashSet;
-import java.util.IdentityHashMap;
-import java.util.Map;
 import java.util.UUID;
 import java.util.function.Supplier;
 
 /**
- * Shared lock proxy using references on the connections to create and remove the lock node, more or less like
- * performing garbage collection by reference counting. It keeps references instead of simply counting to be able to
- * remove the lock using the shutdown hook.
+ * Run-scoped lock, materialized by a single (:__LiquigraphLock) node.
+ * <p>
+ * The lock node is created by the first connection handed out during a migration run, every later acquisition is a
+ * no-op not involving any database round trip. It is only deleted once the run is over, by {@link #release()}, so
+ * that no other Liquigraph execution can take over in between the successive steps of the migration. A shutdown hook
+ * removes the lock node if the run does not get to release it.
+ * <p>
+ * Acquisitions and releases are serialized, so that connections used by concurrent changeset
+ * executions share the same lock node.
  */
 public class LiquigraphLock {
     private static final Logger LOGGER = LoggerFactory.getLogger(LiquigraphLock.class);
 
     private final UUID uuid = UUID.randomUUID();
-    private final Map<Connection, Boolean> connections = new IdentityHashMap<>();
     private final Thread task = new Thread(new ShutdownTask(this));
+    private volatile boolean held;
 
     private final Supplier<Connection> connectionSupplier;
 
@@ -49,40 +52,40 @@ public class LiquigraphLock {
     }
 
     void acquire(Connection connection) {
-        if (addConnection(connection)) {
+        if (held) {
+            return;
+        }
+        synchronized (this) {
+            if (held) {
+                return;
+            }
             LOGGER.debug("Acquiring lock {} on database", uuid);
-            addShutdownHook();
             ensureLockUniqueness(connection);
             tryWriteLock(connection);
+            addShutdownHook();
+            held = true;
         }
     }
 
-    void release(Connection connection) {
-        if (removeConnection(connection)) {
-            LOGGER.debug("Releasing lock {} from database", uuid);
-            removeShutdownHook();
-            releaseLock(connection);
-        }
-    }
-
-    void cleanup() {
-        for (Connection connection : new HashSet<>(this.connections.keySet())) {
-            release(connection);
+    /**
+     * Deletes the lock node, if it has been created, with a dedicated connection.
+     * This must only be called once the connections handed out during the run are not used anymore.
+     */
+    public synchronized void release() {
+        if (!held) {
+            return;
         }
+        LOGGER.debug("Releasing lock {} from database", uuid);
+        held = false;
+        removeShutdownHook();
+        releaseLock();
     }
 
-    private boolean addConnection(Connection connection) {
-        boolean wasEmpty = connections.isEmpty();
-        connections.put(connection, Boolean.TRUE);
-        return wasEmpty;
-    }
-
-    private boolean removeConnection(Connection connection) {
-        if (connections.isEmpty()) {
-            return false;
+    synchronized void cleanup() {
+        if (held) {
+            held = false;
+            releaseLock();
         }
-        connections.remove(connection);
-        return connections.isEmpty();
     }
 
     private void addShutdownHook() {
@@ -90,7 +93,11 @@ public class LiquigraphLock {
     }
 
     private void removeShutdownHook() {
-        Runtime.getRuntime().removeShutdownHook(task);
+        try {
+            Runtime.getRuntime().removeShutdownHook(task);
+        } catch (IllegalStateException e) {
+            LOGGER.debug("JVM shutdown in progress, lock {} is released by the shutdown hook", uuid);
+        }
     }
 
     private void ensureLockUniqueness(Connection connection) {
@@ -144,24 +151,18 @@ public class LiquigraphLock {
         }
     }
 
-    private void releaseLock(Connection connection) {
-        String deleteLockQuery = "MATCH (lock:__LiquigraphLock {uuid:?}) DELETE lock";
-        try (PreparedStatement statement = connection.prepareStatement(deleteLockQuery)) {
+    private void releaseLock() {
+        try (Connection connection = connectionSupplier.get();
+             PreparedStatement statement = connection.prepareStatement(
+                 "MATCH (lock:__LiquigraphLock {uuid:?}) DELETE lock")) {
+
             statement.setString(1, uuid.toString());
             statement.execute();
-            connection.commit();
-        } catch (SQLException firstAttemptException) {
-            LOGGER.info("Failed to remove __LiquigraphLock. Trying again with new connection", firstAttemptException);
-            // the connection used above probably points to a failed transaction and new statements cannot be committed
-            // a new connection is open so that the cleanup can actually happem
-            try (PreparedStatement statement = this.connectionSupplier.get().prepareStatement(deleteLockQuery)) {
-                statement.setString(1, uuid.toString());
-                statement.execute();
+            if (!connection.getAutoCommit()) {
                 connection.commit();
             }
-            catch (SQLException secondAttemptException) {
-                LOGGER.error("Cannot remove __LiquigraphLock during cleanup.", secondAttemptException);
-            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.error("Cannot remove __LiquigraphLock during cleanup.", e);
         }
     }
 }
@@ -37,13 +37,12 @@ import java.util.concurrent.Executor;
 import static org.liquigraph.core.exception.Throwables.propagate;
 
 /**
- * This JDBC connection decorator writes a (:__LiquigraphLock)
- * Neo4j node in order to prevent concurrent executions.
+ * This JDBC connection decorator makes sure the (:__LiquigraphLock)
+ * Neo4j node is written before the connection is used, in order to
+ * prevent concurrent executions.
  * <p>
- * Closing this connection will delete the created "Lock" node.
- * <p>
- * A shutdown hook is executed to remove the lock node if and
- * only if the connection has not been properly closed.
+ * Closing this connection does not delete the "Lock" node, which
+ * lives as long as the migration run, see {@link LiquigraphLock}.
  * <p>
  * Please note that any {@link Connection} passed to this decorator
  * will be set to auto-commit: false`. The auto-commit property
@@ -86,20 +85,18 @@ public final class LockableConnection implements Connection {
     }
 
     /**
-     * Removes lock node and removes the related cleanup
-     * task shutdown hook before closing the underlying
-     * connection.
+     * Closes the underlying connection, the lock node is
+     * left as is until the migration run releases it.
      * <p>
      * Pending transactions are explicitly rolled back
      * before resetting auto-commit. They could otherwise
      * end up being committed in delegate#close()
      * if auto-commit was reset to true.
      *
-     * @see ShutdownTask
+     * @see LiquigraphLock#release()
      */
     @Override
     public void close() throws SQLException {
-        lock.release(this);
         rollback();
         delegate.setAutoCommit(previousAutoCommit);
         delegate.close();
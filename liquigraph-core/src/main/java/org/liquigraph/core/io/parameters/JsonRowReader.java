@@ -0,0 +1,265 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.parameters;
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * Streams the objects of a top-level JSON array, one at a time.
+ * The whole content must be that array: empty content and content after the array are rejected.
+ * Numbers are read as {@link Long} when integral and within its range, {@link Double} otherwise.
+ */
+final class JsonRowReader implements RowReader {
+
+    private static final Pattern INTEGER = Pattern.compile("-?(0|[1-9][0-9]*)");
+
+    private final PushbackReader reader;
+    private boolean started;
+    private boolean finished;
+
+    JsonRowReader(Reader reader) {
+        this.reader = new PushbackReader(reader, 1);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        int c = readSignificant();
+        if (!started) {
+            started = true;
+            expect('[', c);
+            c = readSignificant();
+            if (c == ']') {
+                return finish();
+            }
+            reader.unread(c);
+        } else if (c == ']') {
+            return finish();
+        } else {
+            expect(',', c);
+        }
+        Object value = readValue();
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException(format("Invalid JSON parameters: expected object rows, got <%s>", value));
+        }
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Content after the closing bracket denotes a concatenated or otherwise corrupted file, whose rows cannot be trusted.
+     */
+    private Map<String, Object> finish() throws IOException {
+        int c = readSignificant();
+        if (c != -1) {
+            throw new IllegalArgumentException(format("Invalid JSON parameters: expected end of input after the rows array, got %s", describe(c)));
+        }
+        finished = true;
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Object readValue() throws IOException {
+        int c = readSignificant();
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expectLiteral("rue");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("alse");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("ull");
+                return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber(c);
+                }
+                throw unexpected(c);
+        }
+    }
+
+    private Map<String, Object> readObject() throws IOException {
+        Map<String, Object> result = new LinkedHashMap<>();
+        int c = readSignificant();
+        if (c == '}') {
+            return result;
+        }
+        while (true) {
+            expect('"', c);
+            String key = readString();
+            expect(':', readSignificant());
+            result.put(key, readValue());
+            c = readSignificant();
+            if (c == '}') {
+                return result;
+            }
+            expect(',', c);
+            c = readSignificant();
+        }
+    }
+
+    private List<Object> readArray() throws IOException {
+        List<Object> result = new ArrayList<>();
+        int c = readSignificant();
+        if (c == ']') {
+            return result;
+        }
+        reader.unread(c);
+        while (true) {
+            result.add(readValue());
+            c = readSignificant();
+            if (c == ']') {
+                return result;
+            }
+            expect(',', c);
+        }
+    }
+
+    private String readString() throws IOException {
+        StringBuilder result = new StringBuilder();
+        while (true) {
+            int c = reader.read();
+            if (c == -1) {
+                throw unexpected(c);
+            }
+            if (c == '"') {
+                return result.toString();
+            }
+            if (c != '\\') {
+                result.append((char) c);
+                continue;
+            }
+            int escaped = reader.read();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    result.append((char) escaped);
+                    break;
+                case 'b':
+                    result.append('\b');
+                    break;
+                case 'f':
+                    result.append('\f');
+                    break;
+                case 'n':
+                    result.append('\n');
+                    break;
+                case 'r':
+                    result.append('\r');
+                    break;
+                case 't':
+                    result.append('\t');
+                    break;
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < hex.length; i++) {
+                        int digit = reader.read();
+                        if (Character.digit(digit, 16) == -1) {
+                            throw unexpected(digit);
+                        }
+                        hex[i] = (char) digit;
+                    }
+                    result.append((char) Integer.parseInt(new String(hex), 16));
+                    break;
+                default:
+                    throw unexpected(escaped);
+            }
+        }
+    }
+
+    private Number readNumber(int first) throws IOException {
+        StringBuilder result = new StringBuilder().append((char) first);
+        boolean integral = true;
+        int c = reader.read();
+        while (c != -1 && "0123456789+-.eE".indexOf(c) != -1) {
+            integral &= c >= '0' && c <= '9';
+            result.append((char) c);
+            c = reader.read();
+        }
+        if (c != -1) {
+            reader.unread(c);
+        }
+        try {
+            if (integral) {
+                try {
+                    return Long.parseLong(result.toString());
+                } catch (NumberFormatException e) {
+                    if (!INTEGER.matcher(result).matches()) {
+                        throw e;
+                    }
+                    // beyond the range of long, the closest value Neo4j can store is a double
+                }
+            }
+            return Double.parseDouble(result.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(format("Invalid JSON parameters: malformed number <%s>", result), e);
+        }
+    }
+
+    private void expectLiteral(String remainder) throws IOException {
+        for (int i = 0; i < remainder.length(); i++) {
+            int c = reader.read();
+            if (c != remainder.charAt(i)) {
+                throw unexpected(c);
+            }
+        }
+    }
+
+    private int readSignificant() throws IOException {
+        int c;
+        do {
+            c = reader.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    private static void expect(char expected, int actual) {
+        if (actual != expected) {
+            throw new IllegalArgumentException(format("Invalid JSON parameters: expected <%s>, got %s", expected, describe(actual)));
+        }
+    }
+
+    private static IllegalArgumentException unexpected(int c) {
+        return new IllegalArgumentException(format("Invalid JSON parameters: unexpected %s", describe(c)));
+    }
+
+    private static String describe(int c) {
+        return c == -1 ? "end of input" : format("<%s>", (char) c);
+    }
+}
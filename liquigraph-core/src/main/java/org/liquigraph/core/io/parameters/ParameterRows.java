@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.parameters;
+
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.model.Parameters;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.liquigraph.core.model.Checksums.checksum;
+
+/**
+ * Streams the rows of {@link Parameters} in batches, without loading the whole file in memory.
+ */
+public final class ParameterRows implements Closeable {
+
+    private final RowReader reader;
+
+    private ParameterRows(RowReader reader) {
+        this.reader = reader;
+    }
+
+    public static ParameterRows open(Parameters parameters, ChangelogLoader changelogLoader) throws IOException {
+        String format = resolveFormat(parameters);
+        Reader source = parameters.getFile() == null
+            ? new StringReader(parameters.getContent() == null ? "" : parameters.getContent())
+            : new InputStreamReader(load(parameters.getFile(), changelogLoader), UTF_8);
+        switch (format) {
+            case "json":
+                return new ParameterRows(new JsonRowReader(source));
+            case "csv":
+                return new ParameterRows(new CsvRowReader(source));
+            default:
+                source.close();
+                throw new IllegalArgumentException(format("Unsupported parameters format <%s>, expected json or csv", format));
+        }
+    }
+
+    /**
+     * @return the digest of the raw rows, i.e. of the inline content or of the referenced file bytes
+     */
+    public static String digest(Parameters parameters, ChangelogLoader changelogLoader) throws IOException {
+        try (InputStream content = parameters.getFile() == null
+            ? new ByteArrayInputStream((parameters.getContent() == null ? "" : parameters.getContent()).getBytes(UTF_8))
+            : load(parameters.getFile(), changelogLoader)) {
+            return checksum(content);
+        }
+    }
+
+    /**
+     * @param size maximum number of rows to read
+     * @return the next rows, empty once all rows have been read
+     */
+    public List<Map<String, Object>> nextBatch(int size) throws IOException {
+        List<Map<String, Object>> result = new ArrayList<>(Math.min(size, 1024));
+        Map<String, Object> row;
+        while (result.size() < size && (row = reader.next()) != null) {
+            result.add(row);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static String resolveFormat(Parameters parameters) {
+        String format = parameters.getFormat();
+        if (format != null) {
+            return format.toLowerCase(Locale.ENGLISH);
+        }
+        String file = parameters.getFile();
+        if (file != null && file.toLowerCase(Locale.ENGLISH).endsWith(".csv")) {
+            return "csv";
+        }
+        return "json";
+    }
+
+    private static InputStream load(String file, ChangelogLoader changelogLoader) throws IOException {
+        InputStream stream = changelogLoader.load(file);
+        if (stream == null) {
+            throw new IllegalArgumentException("Parameters file cannot be resolved: " + file);
+        }
+        return stream;
+    }
+}
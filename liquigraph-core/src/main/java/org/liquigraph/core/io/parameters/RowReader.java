@@ -13,30 +13,17 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.liquigraph.core.io.xml;
+package org.liquigraph.core.io.parameters;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
 
-import java.util.Iterator;
+interface RowReader extends Closeable {
 
-import static org.liquigraph.core.exception.Preconditions.checkState;
-
-final class IterableNodeList implements Iterable<Node> {
-
-    private final NodeList nodes;
-
-    private IterableNodeList(NodeList nodeList) {
-        checkState(nodeList != null);
-        this.nodes = nodeList;
-    }
-
-    public static IterableNodeList of(NodeList list) {
-        return new IterableNodeList(list);
-    }
-
-    @Override
-    public Iterator<Node> iterator() {
-        return new NodeListIterator(nodes);
-    }
+    /**
+     * @return the next row or <code>null</code> if there are no more rows
+     * @throws IOException if the underlying source cannot be read
+     */
+    Map<String, Object> next() throws IOException;
 }
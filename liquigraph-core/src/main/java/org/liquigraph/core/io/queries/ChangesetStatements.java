@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.queries;
+
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+import org.liquigraph.core.model.ChecksumAlgorithm;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.liquigraph.core.model.Checksums.DIGEST_ALGORITHM;
+import static org.liquigraph.core.model.Checksums.checksum;
+
+/**
+ * Streams the statements of a changeset, in declaration order, without loading its query files in memory.
+ * Inline queries are single statements, query files are Cypher scripts read with {@link CypherStatementReader}.
+ * <p>
+ * Query files are digested while they are read: once a file is exhausted, its digest must still be the one computed
+ * when the changelog was parsed, which is part of the checksum recorded in the history. Otherwise, reading fails
+ * before the changeset can be committed, rather than recording content that was never executed.
+ */
+public final class ChangesetStatements implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Iterator<ChangesetQuery> queries;
+    private final ChangelogLoader changelogLoader;
+    private CypherStatementReader fileStatements;
+    private ChangesetQuery fileQuery;
+    private DigestingInputStream fileContent;
+
+    private ChangesetStatements(Iterator<ChangesetQuery> queries, ChangelogLoader changelogLoader) {
+        this.queries = queries;
+        this.changelogLoader = changelogLoader;
+    }
+
+    public static ChangesetStatements open(Changeset changeset, ChangelogLoader changelogLoader) {
+        return new ChangesetStatements(changeset.getDeclaredQueries().iterator(), changelogLoader);
+    }
+
+    /**
+     * Reads all the statements of the changeset at once, for the few executions that need all of them upfront.
+     */
+    public static List<String> readAll(Changeset changeset, ChangelogLoader changelogLoader) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (ChangesetStatements statements = open(changeset, changelogLoader)) {
+            String statement;
+            while ((statement = statements.next()) != null) {
+                result.add(statement);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the digest of the raw bytes of the query file, always computed with
+     * {@link org.liquigraph.core.model.Checksums#DIGEST_ALGORITHM}, see there why
+     */
+    public static String digest(String file, ChangelogLoader changelogLoader) throws IOException {
+        try (InputStream content = load(file, changelogLoader)) {
+            return checksum(content);
+        }
+    }
+
+    /**
+     * @return the next statement or <code>null</code> if there are no more statements
+     */
+    public String next() throws IOException {
+        while (true) {
+            if (fileStatements != null) {
+                String statement = fileStatements.next();
+                if (statement != null) {
+                    return statement;
+                }
+                checkDigest(fileQuery, fileContent);
+                close();
+            }
+            if (!queries.hasNext()) {
+                return null;
+            }
+            ChangesetQuery query = queries.next();
+            if (query.getFile() == null) {
+                return query.getQuery();
+            }
+            fileQuery = query;
+            fileContent = new DigestingInputStream(load(query.getFile(), changelogLoader));
+            fileStatements = new CypherStatementReader(new InputStreamReader(fileContent, UTF_8));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileStatements != null) {
+            fileStatements.close();
+            fileStatements = null;
+            fileQuery = null;
+            fileContent = null;
+        }
+    }
+
+    /**
+     * Checks that the query files of the changeset still have the digest computed when the changelog was parsed,
+     * without executing anything, for executions that commit before all statements are read.
+     */
+    public static void checkDigests(Changeset changeset, ChangelogLoader changelogLoader) throws IOException {
+        for (ChangesetQuery query : changeset.getDeclaredQueries()) {
+            if (query.getFile() != null) {
+                try (DigestingInputStream content = new DigestingInputStream(load(query.getFile(), changelogLoader))) {
+                    checkDigest(query, content);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queries built without parsing a changelog have no digest to compare to.
+     */
+    private static void checkDigest(ChangesetQuery query, DigestingInputStream content) throws IOException {
+        String digest = content.digest();
+        if (query.getDigest() != null && !query.getDigest().equals(digest)) {
+            throw new IllegalStateException(format(
+                "Query file <%s> changed since its changelog was parsed: expected digest <%s>, got <%s>",
+                query.getFile(), query.getDigest(), digest
+            ));
+        }
+    }
+
+    private static InputStream load(String file, ChangelogLoader changelogLoader) throws IOException {
+        InputStream stream = changelogLoader.load(file);
+        if (stream == null) {
+            throw new IllegalArgumentException("Query file cannot be resolved: " + file);
+        }
+        return stream;
+    }
+
+    private static final class DigestingInputStream extends FilterInputStream {
+
+        private final ChecksumAlgorithm.Hasher hasher = DIGEST_ALGORITHM.newHasher();
+
+        DigestingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                hasher.update(ByteBuffer.wrap(new byte[]{(byte) b}));
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                hasher.update(ByteBuffer.wrap(bytes, offset, read));
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Reads the rest of the stream, if any, and digests all its bytes.
+         */
+        String digest() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // digested by read
+            }
+            return hasher.hash();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.queries;
+
+/**
+ * Named Cypher parameter bound by Liquigraph itself, such as <code>$batchSize</code> or <code>$rows</code>.
+ * <p>
+ * The JDBC driver only supports positional parameters, references are therefore rewritten to the first positional
+ * parameter before the query is prepared. Like {@link CypherStatementReader}, string literals, quoted identifiers
+ * and comments are left untouched, so that they can mention the parameter as is.
+ */
+public final class CypherParameter {
+
+    private static final String POSITIONAL_REFERENCE = "$1";
+
+    private final String reference;
+
+    private CypherParameter(String name) {
+        this.reference = "$" + name;
+    }
+
+    public static CypherParameter named(String name) {
+        return new CypherParameter(name);
+    }
+
+    /**
+     * @return whether the query references the parameter outside of literals, quoted identifiers and comments
+     */
+    public boolean isReferencedBy(String query) {
+        return !query.equals(toPositional(query));
+    }
+
+    /**
+     * @return the query where references to the parameter, outside of literals, quoted identifiers and comments,
+     * are replaced with a reference to the first positional parameter
+     */
+    public String toPositional(String query) {
+        if (!query.contains(reference)) {
+            return query;
+        }
+        StringBuilder result = new StringBuilder(query.length());
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            int end;
+            switch (c) {
+                case '\'':
+                case '"':
+                case '`':
+                    end = quotedEnd(query, i);
+                    break;
+                case '/':
+                    end = commentEnd(query, i);
+                    break;
+                case '$':
+                    if (isReference(query, i)) {
+                        result.append(POSITIONAL_REFERENCE);
+                        i += reference.length();
+                        continue;
+                    }
+                    end = i + 1;
+                    break;
+                default:
+                    end = i + 1;
+            }
+            result.append(query, i, end);
+            i = end;
+        }
+        return result.toString();
+    }
+
+    private boolean isReference(String query, int start) {
+        if (!query.startsWith(reference, start)) {
+            return false;
+        }
+        int end = start + reference.length();
+        return end == query.length() || !isWordCharacter(query.charAt(end));
+    }
+
+    /*
+     * String literals escape characters with backslashes, quoted identifiers escape backticks by doubling them
+     */
+    private static int quotedEnd(String query, int start) {
+        char quote = query.charAt(start);
+        int i = start + 1;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+                continue;
+            }
+            i++;
+            if (c == quote) {
+                if (quote != '`' || i >= query.length() || query.charAt(i) != '`') {
+                    return i;
+                }
+                i++;
+            }
+        }
+        return query.length();
+    }
+
+    private static int commentEnd(String query, int start) {
+        if (query.startsWith("//", start)) {
+            int end = query.indexOf('\n', start);
+            return end == -1 ? query.length() : end;
+        }
+        if (query.startsWith("/*", start)) {
+            int end = query.indexOf("*/", start + 2);
+            return end == -1 ? query.length() : end + 2;
+        }
+        return start + 1;
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
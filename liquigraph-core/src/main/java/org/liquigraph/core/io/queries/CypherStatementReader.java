@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.queries;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streams the statements of a Cypher script, one at a time.
+ * Statements are separated by semicolons, semicolons within string literals, quoted identifiers
+ * and comments are ignored. Comments are stripped, blank statements are skipped.
+ */
+final class CypherStatementReader implements Closeable {
+
+    private final BufferedReader reader;
+
+    CypherStatementReader(Reader reader) {
+        this.reader = new BufferedReader(reader);
+    }
+
+    /**
+     * @return the next statement, trimmed, or <code>null</code> if there are no more statements
+     * @throws IOException if the underlying source cannot be read
+     */
+    String next() throws IOException {
+        StringBuilder statement = new StringBuilder();
+        boolean blank = true;
+        int c;
+        while ((c = reader.read()) != -1) {
+            switch (c) {
+                case ';':
+                    if (!blank) {
+                        return statement.toString().trim();
+                    }
+                    statement.setLength(0);
+                    break;
+                case '\'':
+                case '"':
+                case '`':
+                    blank = false;
+                    readQuoted((char) c, statement);
+                    break;
+                case '/':
+                    int next = peek();
+                    if (next == '/') {
+                        skipLineComment();
+                        statement.append('\n');
+                    } else if (next == '*') {
+                        skipBlockComment();
+                        statement.append(' ');
+                    } else {
+                        blank = false;
+                        statement.append('/');
+                    }
+                    break;
+                default:
+                    blank = blank && Character.isWhitespace(c);
+                    statement.append((char) c);
+            }
+        }
+        return blank ? null : statement.toString().trim();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /*
+     * String literals escape characters with backslashes, quoted identifiers escape backticks by doubling them
+     */
+    private void readQuoted(char quote, StringBuilder statement) throws IOException {
+        statement.append(quote);
+        int c;
+        while ((c = reader.read()) != -1) {
+            statement.append((char) c);
+            if (c == '\\' && quote != '`') {
+                int escaped = reader.read();
+                if (escaped == -1) {
+                    return;
+                }
+                statement.append((char) escaped);
+            } else if (c == quote) {
+                if (quote != '`' || peek() != '`') {
+                    return;
+                }
+                statement.append((char) reader.read());
+            }
+        }
+    }
+
+    private void skipLineComment() throws IOException {
+        int c;
+        while ((c = reader.read()) != -1 && c != '\n') {
+            // skipped
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        reader.read(); // opening star
+        int previous = -1;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (previous == '*' && c == '/') {
+                return;
+            }
+            previous = c;
+        }
+    }
+
+    private int peek() throws IOException {
+        reader.mark(1);
+        int result = reader.read();
+        reader.reset();
+        return result;
+    }
+}
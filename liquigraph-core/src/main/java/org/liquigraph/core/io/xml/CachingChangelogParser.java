@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ChangelogParser;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+import org.liquigraph.core.model.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.singletonList;
+import static org.liquigraph.core.exception.Throwables.propagate;
+import static org.liquigraph.core.model.Checksums.checksum;
+
+/**
+ * Changelog parser keeping a snapshot of the parsed changesets on disk, in order to skip XML parsing and schema
+ * validation when changelog files have not changed.
+ * <p>
+ * The snapshot records, for every changelog file, the checksum of its contents and of the parameter and query files
+ * of its changesets, alongside its parsed changesets and imports. Only the files whose checksums differ from the snapshot
+ * are parsed again, with {@link StreamingChangelogXmlParser}. The snapshot is then updated.
+ * <p>
+ * Snapshots are local caches: unreadable or outdated snapshots are ignored, and only Liquigraph and JDK classes
+ * are deserialized. Snapshots written by another Liquigraph version, or against other embedded schemas, are outdated
+ * (see {@link #LIQUIGRAPH_FINGERPRINT}). Explicit schema locations are part of the changelog contents, the remote
+ * schemas they point to are pinned by {@link SchemaCache} anyway.
+ */
+public final class CachingChangelogParser implements ChangelogParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingChangelogParser.class);
+    private static final int SNAPSHOT_FORMAT_VERSION = 4;
+
+    /**
+     * Checksum of the Liquigraph version, when packaged, and of the embedded schemas changelogs are validated
+     * against. It is part of the snapshot header, so that upgrading Liquigraph invalidates snapshots without relying
+     * on {@link #SNAPSHOT_FORMAT_VERSION}, which only describes the layout of snapshot files.
+     */
+    private static final String LIQUIGRAPH_FINGERPRINT = liquigraphFingerprint();
+    private static final ObjectInputFilter SNAPSHOT_FILTER =
+        ObjectInputFilter.Config.createFilter("org.liquigraph.core.**;java.lang.*;java.util.*;!*");
+
+    private final Path snapshotDirectory;
+    private final StreamingChangelogXmlParser parser;
+
+    public CachingChangelogParser(Path snapshotDirectory) {
+        this(snapshotDirectory, new StreamingChangelogXmlParser());
+    }
+
+    public CachingChangelogParser(Path snapshotDirectory, RemoteSchemaResolver remoteSchemaResolver) {
+        this(snapshotDirectory, new StreamingChangelogXmlParser(remoteSchemaResolver));
+    }
+
+    CachingChangelogParser(Path snapshotDirectory, StreamingChangelogXmlParser parser) {
+        this.snapshotDirectory = snapshotDirectory;
+        this.parser = parser;
+    }
+
+    @Override
+    public Collection<Changeset> parse(ChangelogLoader changelogLoader, String mainChangelogPath) {
+        Path snapshotFile = snapshotDirectory.resolve(checksum(singletonList(mainChangelogPath)) + ".snapshot");
+        Map<String, FileSnapshot> previousSnapshot = readSnapshot(snapshotFile);
+        Map<String, FileSnapshot> snapshot = new LinkedHashMap<>();
+        Collection<Changeset> changesets = parser.parse(
+            mainChangelogPath,
+            changelog -> snapshot.computeIfAbsent(changelog, path -> fileSnapshot(changelogLoader, path, previousSnapshot.get(path))).getChangelogFile()
+        );
+        if (!snapshot.equals(previousSnapshot)) {
+            writeSnapshot(snapshotFile, snapshot);
+        }
+        return changesets;
+    }
+
+    private FileSnapshot fileSnapshot(ChangelogLoader changelogLoader, String changelog, FileSnapshot previousFileSnapshot) {
+        String fileChecksum = fileChecksum(changelogLoader, changelog);
+        if (previousFileSnapshot != null
+            && previousFileSnapshot.getChecksum().equals(fileChecksum)
+            && previousFileSnapshot.getReferencedFileChecksums().equals(referencedFileChecksums(changelogLoader, previousFileSnapshot.getChangelogFile()))) {
+
+            LOGGER.debug("Changelog {} unchanged since last snapshot", changelog);
+            return previousFileSnapshot;
+        }
+        LOGGER.debug("Parsing changelog {}", changelog);
+        ChangelogFile changelogFile = parser.readFile(changelogLoader, changelog);
+        return new FileSnapshot(fileChecksum, referencedFileChecksums(changelogLoader, changelogFile), changelogFile);
+    }
+
+    private static Map<String, String> referencedFileChecksums(ChangelogLoader changelogLoader, ChangelogFile changelogFile) {
+        Map<String, String> result = new HashMap<>();
+        for (ChangelogFile.Entry entry : changelogFile.getEntries()) {
+            Changeset changeset = entry.getChangeset();
+            if (changeset == null) {
+                continue;
+            }
+            Parameters parameters = changeset.getParameters();
+            if (parameters != null && parameters.getFile() != null) {
+                result.computeIfAbsent(parameters.getFile(), file -> fileChecksum(changelogLoader, file));
+            }
+            for (ChangesetQuery query : changeset.getDeclaredQueries()) {
+                if (query.getFile() != null) {
+                    result.computeIfAbsent(query.getFile(), file -> fileChecksum(changelogLoader, file));
+                }
+            }
+        }
+        return result;
+    }
+
+    /*
+     * Missing files get no checksum: parsing them again reports the proper error
+     */
+    private static String fileChecksum(ChangelogLoader changelogLoader, String path) {
+        try (InputStream stream = changelogLoader.load(path)) {
+            if (stream == null) {
+                return "";
+            }
+            return checksum(stream);
+        } catch (IOException e) {
+            throw propagate(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, FileSnapshot> readSnapshot(Path snapshotFile) {
+        if (!Files.isRegularFile(snapshotFile)) {
+            return new HashMap<>();
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            input.setObjectInputFilter(SNAPSHOT_FILTER);
+            if (input.readInt() != SNAPSHOT_FORMAT_VERSION || !LIQUIGRAPH_FINGERPRINT.equals(input.readUTF())) {
+                LOGGER.debug("Ignoring changelog snapshot {} written by another Liquigraph version", snapshotFile);
+                return new HashMap<>();
+            }
+            return (Map<String, FileSnapshot>) input.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.warn("Ignoring unreadable changelog snapshot {}", snapshotFile, e);
+            return new HashMap<>();
+        }
+    }
+
+    private static void writeSnapshot(Path snapshotFile, Map<String, FileSnapshot> snapshot) {
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path temporaryFile = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temporaryFile));
+                     ObjectOutputStream output = new ObjectOutputStream(stream)) {
+                    output.writeInt(SNAPSHOT_FORMAT_VERSION);
+                    output.writeUTF(LIQUIGRAPH_FINGERPRINT);
+                    output.writeObject(snapshot);
+                }
+                try {
+                    Files.move(temporaryFile, snapshotFile, ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporaryFile, snapshotFile, REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not write changelog snapshot {}", snapshotFile, e);
+        }
+    }
+
+    private static String liquigraphFingerprint() {
+        List<String> parts = new ArrayList<>();
+        parts.add(String.valueOf(CachingChangelogParser.class.getPackage().getImplementationVersion()));
+        ClassLoader classLoader = CachingChangelogParser.class.getClassLoader();
+        for (String schema : LiquigraphLocalEntityResolver.knownResources()) {
+            try (InputStream stream = classLoader.getResourceAsStream(schema)) {
+                parts.add(schema);
+                parts.add(stream == null ? "" : checksum(stream));
+            } catch (IOException e) {
+                throw propagate(e);
+            }
+        }
+        return checksum(parts);
+    }
+
+    private static final class FileSnapshot implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String checksum;
+        private final Map<String, String> referencedFileChecksums;
+        private final ChangelogFile changelogFile;
+
+        FileSnapshot(String checksum, Map<String, String> referencedFileChecksums, ChangelogFile changelogFile) {
+            this.checksum = checksum;
+            this.referencedFileChecksums = referencedFileChecksums;
+            this.changelogFile = changelogFile;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        public Map<String, String> getReferencedFileChecksums() {
+            return referencedFileChecksums;
+        }
+
+        public ChangelogFile getChangelogFile() {
+            return changelogFile;
+        }
+
+        /*
+         * Parsed contents are derived from the checksummed files, comparing the checksums is enough
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(checksum, referencedFileChecksums);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final FileSnapshot other = (FileSnapshot) obj;
+            return Objects.equals(this.checksum, other.checksum) &&
+                Objects.equals(this.referencedFileChecksums, other.referencedFileChecksums);
+        }
+    }
+}
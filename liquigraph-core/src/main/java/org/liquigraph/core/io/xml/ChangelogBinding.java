@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.liquigraph.core.model.Changelog;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * JVM-wide JAXB binding of the changelog model.
+ * <p>
+ * The {@link JAXBContext} is thread-safe and bootstrapped only once, whereas {@link Unmarshaller} instances are not
+ * thread-safe: a new one must be created for every parsing.
+ */
+final class ChangelogBinding {
+
+    private ChangelogBinding() {
+        throw new RuntimeException("static");
+    }
+
+    public static Unmarshaller newUnmarshaller() {
+        try {
+            return ContextHolder.CONTEXT.createUnmarshaller();
+        } catch (JAXBException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static final class ContextHolder {
+
+        private static final JAXBContext CONTEXT = newContext();
+
+        private static JAXBContext newContext() {
+            try {
+                return JAXBContext.newInstance(Changelog.class);
+            } catch (JAXBException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.liquigraph.core.model.Changeset;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed contents of a single changelog file: its changesets and imports, in declaration order
+ */
+final class ChangelogFile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public void addChangeset(Changeset changeset) {
+        entries.add(new Entry(changeset, null));
+    }
+
+    public void addImport(String importedChangelog) {
+        entries.add(new Entry(null, importedChangelog));
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Changeset changeset;
+        private final String importedChangelog;
+
+        private Entry(Changeset changeset, String importedChangelog) {
+            this.changeset = changeset;
+            this.importedChangelog = importedChangelog;
+        }
+
+        /**
+         * @return the changeset, null if this entry is an import
+         */
+        public Changeset getChangeset() {
+            return changeset;
+        }
+
+        /**
+         * @return the path of the imported changelog, null if this entry is a changeset
+         */
+        public String getImportedChangelog() {
+            return importedChangelog;
+        }
+    }
+}
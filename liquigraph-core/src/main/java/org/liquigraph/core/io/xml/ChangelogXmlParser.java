@@ -17,32 +17,36 @@ package org.liquigraph.core.io.xml;
 
 import org.liquigraph.core.io.ChangelogLoader;
 import org.liquigraph.core.io.ChangelogParser;
+import org.liquigraph.core.io.parameters.ParameterRows;
+import org.liquigraph.core.io.queries.ChangesetStatements;
 import org.liquigraph.core.model.Changelog;
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+import org.liquigraph.core.model.Parameters;
 import org.w3c.dom.Node;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+import java.io.IOException;
 import java.util.Collection;
 
 import static java.lang.String.format;
+import static org.liquigraph.core.exception.Preconditions.checkArgument;
+import static org.liquigraph.core.exception.Throwables.propagate;
 
+/**
+ * Parses changelogs, imports included, as a single DOM document.
+ * <p>
+ * This parser is thread-safe: all the parsing state is confined to each {@link #parse(ChangelogLoader, String)} call.
+ */
 public final class ChangelogXmlParser implements ChangelogParser {
 
     private static final String SEPARATOR = System.lineSeparator() + "\t";
     private final ChangelogPreprocessor preprocessor;
-    private final Unmarshaller unmarshaller;
     private final XmlSchemaValidator validator;
 
     public ChangelogXmlParser(XmlSchemaValidator validator, ChangelogPreprocessor preprocessor) {
         this.validator = validator;
         this.preprocessor = preprocessor;
-        try {
-            unmarshaller = JAXBContext.newInstance(Changelog.class).createUnmarshaller();
-        } catch (JAXBException e) {
-            throw new IllegalStateException(e.getMessage(), e);
-        }
     }
 
     /**
@@ -66,8 +70,8 @@ public final class ChangelogXmlParser implements ChangelogParser {
             if (!errors.isEmpty()) {
                 throw new IllegalArgumentException(formatErrorMessage(errors));
             }
-            Changelog changelog = (Changelog) unmarshaller.unmarshal(document);
-            fixUpChangesets(changelog);
+            Changelog changelog = (Changelog) ChangelogBinding.newUnmarshaller().unmarshal(document);
+            fixUpChangesets(changelog, changelogLoader);
             return changelog;
         } catch (JAXBException e) {
             throw new IllegalArgumentException(format("Unable to parse changelog <%s>.", masterChangelog), e);
@@ -79,9 +83,45 @@ public final class ChangelogXmlParser implements ChangelogParser {
      * The checksum invariant of changesets cannot be properly
      * managed.
      */
-    private void fixUpChangesets(Changelog changelog) {
+    private void fixUpChangesets(Changelog changelog, ChangelogLoader changelogLoader) {
         for (Changeset changeset : changelog.getChangesets()) {
-            changeset.setQueries(changeset.getQueries());
+            fixUpChangeset(changeset, changelogLoader);
+        }
+    }
+
+    static void fixUpChangeset(Changeset changeset, ChangelogLoader changelogLoader) {
+        Parameters parameters = changeset.getParameters();
+        if (parameters != null) {
+            checkArgument(changeset.getBatch() == null, format(
+                "Changeset id=<%s>, author=<%s>: parameters and batch cannot be combined",
+                changeset.getId(), changeset.getAuthor()));
+            parameters.setDigest(parametersDigest(parameters, changelogLoader));
+        }
+        for (ChangesetQuery query : changeset.getDeclaredQueries()) {
+            if (query.getFile() != null) {
+                checkArgument(query.getQuery() == null || query.getQuery().trim().isEmpty(), format(
+                    "Changeset id=<%s>, author=<%s>: query file <%s> cannot be combined with an inline query",
+                    changeset.getId(), changeset.getAuthor(), query.getFile()));
+                query.setQuery(null);
+                query.setDigest(queryFileDigest(query.getFile(), changelogLoader));
+            }
+        }
+        changeset.setDeclaredQueries(changeset.getDeclaredQueries());
+    }
+
+    private static String parametersDigest(Parameters parameters, ChangelogLoader changelogLoader) {
+        try {
+            return ParameterRows.digest(parameters, changelogLoader);
+        } catch (IOException e) {
+            throw propagate(e);
+        }
+    }
+
+    private static String queryFileDigest(String file, ChangelogLoader changelogLoader) {
+        try {
+            return ChangesetStatements.digest(file, changelogLoader);
+        } catch (IOException e) {
+            throw propagate(e);
         }
     }
 
@@ -24,17 +24,25 @@ public class DomSourceValidatorFactory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DomSourceValidatorFactory.class);
     private final SchemaDetector schemaDetector;
+    private final DomSourceValidator explicitSchemaValidator;
+    private final DomSourceValidator implicitSchemaValidator;
 
     public DomSourceValidatorFactory() {
+        this(RemoteSchemaResolver.defaults());
+    }
+
+    public DomSourceValidatorFactory(RemoteSchemaResolver remoteSchemaResolver) {
         schemaDetector = new SchemaDetector();
+        explicitSchemaValidator = new ExplicitSchemaValidator(remoteSchemaResolver);
+        implicitSchemaValidator = new ImplicitSchemaValidator();
     }
 
     public DomSourceValidator createValidator(DOMSource source) {
         if (schemaDetector.hasExplicitSchema(source)) {
             LOGGER.debug("Explicit schema detected: validation against schema to start");
-            return new ExplicitSchemaValidator();
+            return explicitSchemaValidator;
         }
         LOGGER.debug("No schema detected: validation against embedded schema to start");
-        return new ImplicitSchemaValidator();
+        return implicitSchemaValidator;
     }
 }
@@ -19,80 +19,273 @@ import org.liquigraph.core.io.ChangelogLoader;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.liquigraph.core.exception.Preconditions.checkArgument;
 import static org.liquigraph.core.exception.Throwables.propagate;
 
+/**
+ * Resolves the imports of a changelog into a single DOM document.
+ * <p>
+ * Changelog files are loaded and parsed concurrently: as soon as a file is parsed, the files it imports are
+ * scheduled for parsing as well. Each file is parsed only once, no matter how many times it is imported.
+ * Imported changesets are then inlined sequentially, in declaration order, so that the resulting document
+ * does not depend on the order in which files are parsed. Circular imports are rejected.
+ */
 public class ImportResolver {
 
-    private final XPath xpath;
+    private final int parallelism;
+    private final ThreadLocal<DocumentBuilder> documentBuilders = ThreadLocal.withInitial(ImportResolver::documentBuilder);
 
     public ImportResolver() {
-        xpath = XPathFactory.newInstance().newXPath();
+        this(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param parallelism maximum number of changelog files loaded and parsed concurrently, at least 1
+     */
+    public ImportResolver(int parallelism) {
+        checkArgument(parallelism > 0, "Parallelism must be strictly positive, got: " + parallelism);
+        this.parallelism = parallelism;
     }
 
     public Node resolveImports(String changelog, ChangelogLoader changelogLoader) {
-        try (InputStream stream = changelogLoader.load(changelog)) {
-            if (stream == null) {
-                throw new RuntimeException("Import location cannot be resolved: " + changelog);
-            }
-            return resolve(changelog, document(stream), changelogLoader);
-        } catch (IOException e) {
-            throw propagate(e);
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, workerThreadFactory());
+        try {
+            ParsedChangelogs changelogs = new ParsedChangelogs(changelogLoader, workers);
+            String path = normalize(changelog);
+            resolve(path, changelogs, new ArrayDeque<>(), new HashMap<>());
+            return changelogs.get(path).getDocumentElement();
+        } finally {
+            workers.shutdownNow();
         }
     }
 
-    private Node resolve(String changelog, Document document, ChangelogLoader changelogLoader) {
+    /*
+     * Imported changesets are moved to the importing document, and thus only copied when their changelog
+     * is imported more than once.
+     * Every changelog root element is only traversed a constant number of times, which keeps the resolution linear
+     * in the total number of changesets and imports.
+     */
+    private ResolvedChangelog resolve(String changelog,
+                                      ParsedChangelogs changelogs,
+                                      Deque<String> importChain,
+                                      Map<String, ResolvedChangelog> resolvedChangelogs) {
+
+        ResolvedChangelog resolvedChangelog = resolvedChangelogs.get(changelog);
+        if (resolvedChangelog != null) {
+            return resolvedChangelog;
+        }
+        if (importChain.contains(changelog)) {
+            throw new IllegalArgumentException("Circular import detected: " + circularImport(importChain, changelog));
+        }
+        importChain.addLast(changelog);
+        Document document = changelogs.get(changelog);
         Element root = document.getDocumentElement();
 
-        IterableNodeList imports = IterableNodeList.of(evaluateNodes("/changelog/import", root));
-        for (Node toImport : imports) {
-            String fullPath = parentFolder(changelog) + attributeTextContent(toImport, "resource");
-            Node resolvedRoot = resolveImports(fullPath, changelogLoader);
-            IterableNodeList changesets = IterableNodeList.of(evaluateNodes("/changelog/changeset", resolvedRoot));
-            for (Node changeset : changesets) {
-                Node importedChangeset = document.importNode(changeset, true);
-                root.insertBefore(importedChangeset, toImport);
+        List<Element> imports = new ArrayList<>();
+        for (Element child : childElements(root)) {
+            if ("import".equals(child.getNodeName())) {
+                imports.add(child);
+            } else if ("changeset".equals(child.getNodeName())) {
+                resolveReferencedFiles(changelog, child);
             }
+        }
+        for (Element toImport : imports) {
+            String fullPath = normalize(parentFolder(changelog) + toImport.getAttribute("resource"));
+            ResolvedChangelog importedChangelog = resolve(fullPath, changelogs, importChain, resolvedChangelogs);
+            importedChangelog.inlineBefore(toImport);
             root.removeChild(toImport);
         }
-        return root;
+        importChain.removeLast();
+
+        List<Element> changesets = new ArrayList<>();
+        for (Element child : childElements(root)) {
+            if ("changeset".equals(child.getNodeName())) {
+                changesets.add(child);
+            }
+        }
+        resolvedChangelog = new ResolvedChangelog(changesets);
+        resolvedChangelogs.put(changelog, resolvedChangelog);
+        return resolvedChangelog;
     }
 
-    private String parentFolder(String changelog) {
+    /*
+     * Parameter and query files are declared relatively to their changelog, which is not known anymore
+     * once changesets are imported in the master changelog.
+     */
+    private static void resolveReferencedFiles(String changelog, Element changeset) {
+        for (Element child : childElements(changeset)) {
+            if (("parameters".equals(child.getNodeName()) || "query".equals(child.getNodeName())) && child.hasAttribute("file")) {
+                child.setAttribute("file", parentFolder(changelog) + child.getAttribute("file"));
+            }
+        }
+    }
+
+    private static List<Element> childElements(Element parent) {
+        List<Element> result = new ArrayList<>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                result.add((Element) child);
+            }
+        }
+        return result;
+    }
+
+    static String circularImport(Deque<String> importChain, String changelog) {
+        List<String> cycle = new ArrayList<>();
+        boolean inCycle = false;
+        for (String path : importChain) {
+            inCycle = inCycle || path.equals(changelog);
+            if (inCycle) {
+                cycle.add(path);
+            }
+        }
+        cycle.add(changelog);
+        return String.join(" -> ", cycle);
+    }
+
+    private static String parentFolder(String changelog) {
         return changelog.substring(0, changelog.lastIndexOf('/') + 1);
     }
 
-    private Document document(InputStream changelog) {
+    /*
+     * Collapses "." and ".." segments, so that a changelog imported through different relative paths is parsed once
+     */
+    static String normalize(String path) {
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : path.split("/", -1)) {
+            if (segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..") && !segments.isEmpty() && !segments.peekLast().equals("..") && !segments.peekLast().isEmpty()) {
+                segments.removeLast();
+                continue;
+            }
+            segments.addLast(segment);
+        }
+        return String.join("/", segments);
+    }
+
+    private static DocumentBuilder documentBuilder() {
         try {
-            return DocumentBuilderFactory.newInstance()
-                .newDocumentBuilder()
-                .parse(changelog);
-        } catch (SAXException | IOException | ParserConfigurationException e) {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
             throw propagate(e);
         }
     }
 
-    private static String attributeTextContent(Node legalImport, String attributeName) {
-        return legalImport.getAttributes().getNamedItem(attributeName).getTextContent();
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "liquigraph-import-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
-    private NodeList evaluateNodes(String expression, Node document) {
-        try {
-            return (NodeList) xpath.evaluate(expression, document.getOwnerDocument(), XPathConstants.NODESET);
-        } catch (XPathExpressionException e) {
-            throw propagate(e);
+    /**
+     * Changelog documents, parsed at most once and asynchronously
+     */
+    private class ParsedChangelogs {
+
+        private final ConcurrentMap<String, CompletableFuture<Document>> documents = new ConcurrentHashMap<>();
+        private final ChangelogLoader changelogLoader;
+        private final ExecutorService workers;
+
+        ParsedChangelogs(ChangelogLoader changelogLoader, ExecutorService workers) {
+            this.changelogLoader = changelogLoader;
+            this.workers = workers;
+        }
+
+        public Document get(String changelog) {
+            try {
+                return schedule(changelog).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw propagate(cause);
+            }
+        }
+
+        private CompletableFuture<Document> schedule(String changelog) {
+            return documents.computeIfAbsent(changelog, path -> CompletableFuture.supplyAsync(() -> parse(path), workers));
+        }
+
+        private Document parse(String changelog) {
+            Document document = load(changelog);
+            // prefetches imported changelogs, without waiting for them
+            for (Element child : childElements(document.getDocumentElement())) {
+                if ("import".equals(child.getNodeName())) {
+                    schedule(normalize(parentFolder(changelog) + child.getAttribute("resource")));
+                }
+            }
+            return document;
+        }
+
+        private Document load(String changelog) {
+            try (InputStream stream = changelogLoader.load(changelog)) {
+                if (stream == null) {
+                    throw new RuntimeException("Import location cannot be resolved: " + changelog);
+                }
+                return documentBuilders.get().parse(stream);
+            } catch (SAXException | IOException e) {
+                throw propagate(e);
+            }
         }
     }
 
+    /**
+     * Changesets of a changelog, imports included
+     */
+    private static class ResolvedChangelog {
+
+        private final List<Element> changesets;
+        private boolean inlined;
+
+        ResolvedChangelog(List<Element> changesets) {
+            this.changesets = changesets;
+        }
+
+        public void inlineBefore(Element toImport) {
+            Document document = toImport.getOwnerDocument();
+            Node parent = toImport.getParentNode();
+            for (int i = 0; i < changesets.size(); i++) {
+                Element changeset = changesets.get(i);
+                if (inlined) {
+                    parent.insertBefore(document.importNode(changeset, true), toImport);
+                    continue;
+                }
+                Node adopted = document.adoptNode(changeset);
+                if (adopted == null) {
+                    adopted = document.importNode(changeset, true);
+                }
+                parent.insertBefore(adopted, toImport);
+                changesets.set(i, (Element) adopted);
+            }
+            inlined = true;
+        }
+    }
 }
@@ -16,8 +16,10 @@
 package org.liquigraph.core.io.xml;
 
 import java.lang.invoke.MethodHandles;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +54,21 @@ public class LiquigraphLocalEntityResolver implements EntityResolver {
         KNOWN_ENTITIES.put("https://www.liquigraph.org/schema/changelog.xsd", "schema/changelog.xsd");
     }
 
+    /**
+     * @param systemId schema location
+     * @return the classpath location of the embedded copy of the schema, null if the schema is not known
+     */
+    static String knownResource(String systemId) {
+        return KNOWN_ENTITIES.get(systemId);
+    }
+
+    /**
+     * @return the classpath locations of all the embedded schemas, sorted
+     */
+    static Collection<String> knownResources() {
+        return new TreeSet<>(KNOWN_ENTITIES.values());
+    }
+
     @Override
     public InputSource resolveEntity(String publicId, final String systemId) {
         LOGGER.trace("Resolving entity, public {}, system {}", publicId, systemId);
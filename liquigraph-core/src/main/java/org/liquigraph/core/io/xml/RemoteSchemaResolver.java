@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import static java.lang.String.format;
+import static java.util.Collections.emptyList;
+
+/**
+ * Resolves schemas which are not embedded in Liquigraph.
+ * <p>
+ * Schemas are looked up, in order, in the schema catalogs, in the on-disk schema cache, if any, and finally downloaded.
+ * Downloaded schemas are cached, so that subsequent resolutions do not need any network access.
+ * Cached schemas are never revalidated: they are pinned until the cache directory is cleared.
+ * <p>
+ * Resolvers are configured with {@link org.liquigraph.core.configuration.ConfigurationBuilder}. By default, only the
+ * catalogs registered with {@link java.util.ServiceLoader} are consulted, nothing is written to disk and schemas are
+ * downloaded when needed.
+ */
+public final class RemoteSchemaResolver implements EntityResolver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteSchemaResolver.class);
+
+    private final List<SchemaCatalog> catalogs;
+    private final SchemaCache cache;
+    private final boolean offline;
+    private final EntityResolver downloader;
+
+    /**
+     * @param cache on-disk schema cache, or <code>null</code> to keep downloaded schemas in memory only
+     */
+    RemoteSchemaResolver(List<SchemaCatalog> catalogs, SchemaCache cache, boolean offline, EntityResolver downloader) {
+        this.catalogs = catalogs;
+        this.cache = cache;
+        this.offline = offline;
+        this.downloader = downloader;
+    }
+
+    public static RemoteSchemaResolver defaults() {
+        return of(emptyList(), null, false);
+    }
+
+    /**
+     * @param catalogFiles OASIS XML catalog files, consulted after the catalogs registered with {@link java.util.ServiceLoader}
+     * @param cacheDirectory schema cache directory, or <code>null</code> not to cache downloaded schemas on disk
+     * @param offline whether schemas which are neither declared in a catalog nor cached must not be downloaded
+     */
+    public static RemoteSchemaResolver of(Collection<Path> catalogFiles, Path cacheDirectory, boolean offline) {
+        List<SchemaCatalog> catalogs = new ArrayList<>();
+        ServiceLoader.load(SchemaCatalog.class).forEach(catalogs::add);
+        if (!catalogFiles.isEmpty()) {
+            catalogs.add(new XmlSchemaCatalog(catalogFiles.stream().map(Path::toUri).toArray(URI[]::new)));
+        }
+        return new RemoteSchemaResolver(
+            catalogs,
+            cacheDirectory == null ? null : new SchemaCache(cacheDirectory),
+            offline,
+            new RedirectAwareEntityResolver()
+        );
+    }
+
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+        for (SchemaCatalog catalog : catalogs) {
+            InputSource source = catalog.resolve(systemId);
+            if (source != null) {
+                LOGGER.debug("Schema {} resolved by catalog", systemId);
+                return source;
+            }
+        }
+        byte[] cachedSchema = cache == null ? null : cache.read(systemId);
+        if (cachedSchema != null) {
+            LOGGER.debug("Schema {} resolved from cache", systemId);
+            return inputSource(systemId, cachedSchema);
+        }
+        if (offline) {
+            throw new IOException(format("Schema <%s> is neither declared in a catalog nor cached, and cannot be downloaded in offline mode.", systemId));
+        }
+        LOGGER.debug("Downloading schema {}", systemId);
+        byte[] schema = download(publicId, systemId);
+        if (cache != null) {
+            cache.write(systemId, schema);
+        }
+        return inputSource(systemId, schema);
+    }
+
+    private byte[] download(String publicId, String systemId) throws SAXException, IOException {
+        InputSource source = downloader.resolveEntity(publicId, systemId);
+        if (source == null || source.getByteStream() == null) {
+            throw new IOException(format("Schema <%s> could not be downloaded.", systemId));
+        }
+        try (InputStream stream = source.getByteStream()) {
+            return stream.readAllBytes();
+        }
+    }
+
+    private static InputSource inputSource(String systemId, byte[] content) {
+        InputSource result = new InputSource(new ByteArrayInputStream(content));
+        result.setSystemId(systemId);
+        return result;
+    }
+}
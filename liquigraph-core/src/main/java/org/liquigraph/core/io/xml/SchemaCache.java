@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.singletonList;
+import static org.liquigraph.core.model.Checksums.checksum;
+
+/**
+ * Content-addressed on-disk cache of remote schemas.
+ * <p>
+ * Schema contents are stored under <code>content/</code>, named after their checksum.
+ * Each schema location points to its contents with a file under <code>locations/</code>, named after the
+ * checksum of the location. Files are written atomically, so that several processes can share the same cache.
+ */
+class SchemaCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaCache.class);
+
+    private final Path contentDirectory;
+    private final Path locationDirectory;
+
+    public SchemaCache(Path directory) {
+        contentDirectory = directory.resolve("content");
+        locationDirectory = directory.resolve("locations");
+    }
+
+    /**
+     * @param location schema location
+     * @return the cached schema contents, null if the schema is not cached
+     */
+    public byte[] read(String location) {
+        try {
+            Path locationFile = locationFile(location);
+            if (!Files.isRegularFile(locationFile)) {
+                return null;
+            }
+            String contentChecksum = new String(Files.readAllBytes(locationFile), UTF_8).trim();
+            Path contentFile = contentDirectory.resolve(contentChecksum + ".xsd");
+            if (!Files.isRegularFile(contentFile)) {
+                return null;
+            }
+            byte[] content = Files.readAllBytes(contentFile);
+            if (!contentChecksum.equals(checksum(new ByteArrayInputStream(content)))) {
+                LOGGER.warn("Ignoring corrupted cached schema {} for {}", contentFile, location);
+                return null;
+            }
+            return content;
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached schema for {}", location, e);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the schema contents, failures are only logged
+     *
+     * @param location schema location
+     * @param content schema contents
+     */
+    public void write(String location, byte[] content) {
+        try {
+            String contentChecksum = checksum(new ByteArrayInputStream(content));
+            Path contentFile = contentDirectory.resolve(contentChecksum + ".xsd");
+            if (!Files.isRegularFile(contentFile)) {
+                writeAtomically(contentFile, content);
+            }
+            writeAtomically(locationFile(location), contentChecksum.getBytes(UTF_8));
+        } catch (IOException e) {
+            LOGGER.warn("Could not cache schema for {}", location, e);
+        }
+    }
+
+    private Path locationFile(String location) {
+        return locationDirectory.resolve(checksum(singletonList(location)));
+    }
+
+    private static void writeAtomically(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporaryFile, content);
+            try {
+                Files.move(temporaryFile, file, ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+}
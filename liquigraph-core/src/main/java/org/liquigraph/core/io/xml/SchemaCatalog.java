@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.xml.sax.InputSource;
+
+import java.io.IOException;
+
+/**
+ * Resolves remote changelog schemas to local copies, without any network access.
+ * <p>
+ * Catalogs are discovered with {@link java.util.ServiceLoader}, and consulted before the on-disk schema cache
+ * and the network. OASIS XML catalog files can also be declared with
+ * {@link org.liquigraph.core.configuration.ConfigurationBuilder#withSchemaCatalogs(java.util.Collection)}.
+ */
+@FunctionalInterface
+public interface SchemaCatalog {
+
+    /**
+     * @param location schema location, as declared by a changelog
+     * @return the schema contents, null if this catalog does not know the schema
+     * @throws IOException if the schema cannot be read
+     */
+    InputSource resolve(String location) throws IOException;
+}
@@ -24,11 +24,19 @@ import java.util.Iterator;
 class SchemaDetector {
 
     public boolean hasExplicitSchema(DOMSource changelog) {
+        return schemaLocation(changelog) != null;
+    }
+
+    /**
+     * @param changelog changelog document or root element
+     * @return the value of the <code>xsi:noNamespaceSchemaLocation</code> attribute, null if not set
+     */
+    public String schemaLocation(DOMSource changelog) {
         Node node = changelog.getNode();
         if (node.getNodeType() == Node.DOCUMENT_NODE) {
-            return hasExplicitSchema(rootElement(node));
+            return schemaLocation(rootElement(node));
         }
-        return hasExplicitSchema(node);
+        return schemaLocation(node);
     }
 
     private Node rootElement(Node document) {
@@ -43,29 +51,29 @@ class SchemaDetector {
         return null;
     }
 
-    private boolean hasExplicitSchema(Node node) {
+    private String schemaLocation(Node node) {
         if (node == null) {
-            return false;
+            return null;
         }
         if (node.getNodeType() != Node.ELEMENT_NODE) {
-            return false;
+            return null;
         }
         
         NamedNodeMap attributes = node.getAttributes();
         if (attributes == null) {
-            return false;
+            return null;
         }
         return findAttributeByName(attributes, "xsi:noNamespaceSchemaLocation");
     }
 
-    private boolean findAttributeByName(NamedNodeMap attributes, String name) {
+    private String findAttributeByName(NamedNodeMap attributes, String name) {
         int i = 0;
         while (i < attributes.getLength()) {
             if (name.equals(attributes.item(i).getNodeName())) {
-                return true;
+                return attributes.item(i).getNodeValue();
             }
             i++;
         }
-        return false;
+        return null;
     }
 }
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.w3c.dom.ls.LSInput;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.liquigraph.core.exception.Throwables.propagate;
+
+/**
+ * Process-wide registry of compiled changelog schemas.
+ * <p>
+ * Each schema is compiled once per JVM, no matter how many of its locations are used: all the known Liquigraph
+ * schema locations resolve to the schemas embedded in this library, other locations are resolved once by the
+ * {@link RemoteSchemaResolver} of the first run which needs them.
+ * Compiled schemas are thread-safe and pool their validators.
+ */
+final class SchemaRegistry {
+
+    private static final String EMBEDDED_SCHEMA = "schema/changelog.xsd";
+    private static final SchemaRegistry INSTANCE = new SchemaRegistry();
+
+    private final ConcurrentMap<String, CompiledSchema> schemas = new ConcurrentHashMap<>();
+
+    private SchemaRegistry() {
+    }
+
+    public static SchemaRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the schema used to validate changelogs which do not declare any
+     */
+    public CompiledSchema embeddedSchema() {
+        return schemas.computeIfAbsent(EMBEDDED_SCHEMA, this::compileEmbedded);
+    }
+
+    /**
+     * @param location schema location, as declared by the <code>xsi:noNamespaceSchemaLocation</code> attribute
+     * @param remoteSchemaResolver resolver of the schemas which are not embedded, only used if not compiled yet
+     * @return the compiled schema
+     */
+    public CompiledSchema schema(String location, EntityResolver remoteSchemaResolver) {
+        String embeddedResource = LiquigraphLocalEntityResolver.knownResource(location);
+        if (embeddedResource != null) {
+            return schemas.computeIfAbsent(embeddedResource, this::compileEmbedded);
+        }
+        return schemas.computeIfAbsent(location, key -> compileExternal(key, remoteSchemaResolver));
+    }
+
+    private CompiledSchema compileEmbedded(String resource) {
+        try (InputStream stream = SchemaRegistry.class.getClassLoader().getResourceAsStream(resource)) {
+            return new CompiledSchema(schemaFactory(null).newSchema(new StreamSource(stream)));
+        } catch (SAXException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private CompiledSchema compileExternal(String location, EntityResolver remoteSchemaResolver) {
+        try (InputStream stream = remoteSchemaResolver.resolveEntity(null, location).getByteStream()) {
+            return new CompiledSchema(schemaFactory(remoteSchemaResolver).newSchema(new StreamSource(stream, location)));
+        } catch (SAXException | IOException e) {
+            throw propagate(e);
+        }
+    }
+
+    /*
+     * Embedded schemas are self-contained, they do not need any remote schema resolver
+     */
+    private SchemaFactory schemaFactory(EntityResolver remoteSchemaResolver) {
+        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        ChainedEntityResolver resolverChain = new ChainedEntityResolver();
+        resolverChain.addEntityResolver(new LiquigraphLocalEntityResolver());
+        if (remoteSchemaResolver != null) {
+            resolverChain.addEntityResolver(remoteSchemaResolver);
+        }
+        factory.setResourceResolver((type, namespaceURI, publicId, systemId, baseURI) -> {
+            try {
+                InputSource input = resolverChain.resolveEntity(publicId, systemId);
+                return input == null ? null : new InputSourceToLSInput(input);
+            } catch (SAXException | IOException e) {
+                throw new RuntimeException("Could not resolve with entity resolver", e);
+            }
+        });
+        return factory;
+    }
+
+    /**
+     * Compiled schema, along with its pool of validators.
+     * {@link Validator} instances are not thread-safe: each one is used by a single thread at a time
+     * and reset before going back to the pool.
+     */
+    static final class CompiledSchema {
+
+        private static final ThreadLocal<TransformerFactory> TRANSFORMER_FACTORIES = ThreadLocal.withInitial(TransformerFactory::newInstance);
+
+        private final Schema schema;
+        private final Queue<Validator> validators = new ConcurrentLinkedQueue<>();
+        private final Queue<ValidatorHandler> validatorHandlers = new ConcurrentLinkedQueue<>();
+
+        private CompiledSchema(Schema schema) {
+            this.schema = schema;
+        }
+
+        public Schema getSchema() {
+            return schema;
+        }
+
+        /**
+         * @param source XML to validate
+         * @return validation error messages
+         * @throws SAXException if the validation cannot complete
+         * @throws IOException if the source cannot be read
+         */
+        public Collection<String> validate(Source source) throws SAXException, IOException {
+            Validator validator = borrowValidator();
+            try {
+                SchemaErrorHandler errorHandler = new SchemaErrorHandler();
+                validator.setErrorHandler(errorHandler);
+                validator.validate(source);
+                return errorHandler.getErrors();
+            } finally {
+                validator.reset();
+                validators.offer(validator);
+            }
+        }
+
+        /**
+         * Validates a DOM as it would be read back from its textual form: prefixed attributes such as
+         * <code>xsi:noNamespaceSchemaLocation</code> are resolved against the namespace declarations of the document,
+         * even if the DOM was built without namespace awareness.
+         * The DOM is streamed to the validator, it is neither serialized nor copied.
+         *
+         * @param source DOM to validate
+         * @return validation error messages
+         * @throws TransformerException if the validation cannot complete
+         */
+        public Collection<String> validateAsText(DOMSource source) throws TransformerException {
+            ValidatorHandler validatorHandler = borrowValidatorHandler();
+            try {
+                SchemaErrorHandler errorHandler = new SchemaErrorHandler();
+                validatorHandler.setErrorHandler(errorHandler);
+                TRANSFORMER_FACTORIES.get().newTransformer().transform(source, new SAXResult(validatorHandler));
+                return errorHandler.getErrors();
+            } finally {
+                validatorHandler.setErrorHandler(null);
+                validatorHandlers.offer(validatorHandler);
+            }
+        }
+
+        private ValidatorHandler borrowValidatorHandler() {
+            ValidatorHandler validatorHandler = validatorHandlers.poll();
+            if (validatorHandler == null) {
+                return schema.newValidatorHandler();
+            }
+            return validatorHandler;
+        }
+
+        private Validator borrowValidator() {
+            Validator validator = validators.poll();
+            if (validator == null) {
+                return schema.newValidator();
+            }
+            return validator;
+        }
+    }
+
+    private static class InputSourceToLSInput implements LSInput {
+
+        private InputSource source;
+
+        private InputSourceToLSInput(InputSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public Reader getCharacterStream() {
+            return source.getCharacterStream();
+        }
+
+        @Override
+        public void setCharacterStream(Reader characterStream) {
+            source.setCharacterStream(characterStream);
+        }
+
+        @Override
+        public InputStream getByteStream() {
+            return source.getByteStream();
+        }
+
+        @Override
+        public void setByteStream(InputStream byteStream) {
+            source.setByteStream(byteStream);
+        }
+
+        @Override
+        public String getStringData() {
+            return null;
+        }
+
+        @Override
+        public void setStringData(String stringData) {
+        }
+
+        @Override
+        public String getSystemId() {
+            return source.getSystemId();
+        }
+
+        @Override
+        public void setSystemId(String systemId) {
+            source.setSystemId(systemId);
+        }
+
+        @Override
+        public String getPublicId() {
+            return source.getPublicId();
+        }
+
+        @Override
+        public void setPublicId(String publicId) {
+            source.setPublicId(publicId);
+        }
+
+        @Override
+        public String getBaseURI() {
+            return null;
+        }
+
+        @Override
+        public void setBaseURI(String baseURI) {
+
+        }
+
+        @Override
+        public String getEncoding() {
+            return source.getEncoding();
+        }
+
+        @Override
+        public void setEncoding(String encoding) {
+            source.setEncoding(encoding);
+        }
+
+        @Override
+        public boolean getCertifiedText() {
+            return false;
+        }
+
+        @Override
+        public void setCertifiedText(boolean certifiedText) {
+        }
+
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ChangelogParser;
+import org.liquigraph.core.io.xml.SchemaRegistry.CompiledSchema;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+import org.liquigraph.core.model.Parameters;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stax.StAXSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static org.liquigraph.core.exception.Throwables.propagate;
+
+/**
+ * Changelog parser that never holds more than a single changeset in memory, besides the parsed changesets.
+ * <p>
+ * Unlike {@link ChangelogXmlParser}, imports are not resolved into a single DOM document: every changelog file is
+ * validated against its schema in a streaming fashion, import elements aside, and then read again with StAX,
+ * one changeset at a time.
+ * Imported changelogs are parsed once the importing file has been read, and their changesets are inserted in place
+ * of the <code>import</code> element. Circular imports are rejected.
+ * Since changelog files are validated one by one, the uniqueness of changeset identifiers across files is checked
+ * separately, with the same error message as the schema validation.
+ * <p>
+ * The resulting changesets are identical to the ones produced by {@link ChangelogXmlParser}.
+ * <p>
+ * This parser is thread-safe.
+ */
+public final class StreamingChangelogXmlParser implements ChangelogParser {
+
+    private static final String SEPARATOR = System.lineSeparator() + "\t";
+    private static final String DUPLICATE_ID_ERROR =
+        "cvc-identity-constraint.4.1: Duplicate unique value [%s] declared for identity constraint \"unique_id\" of element \"changelog\".";
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORIES = ThreadLocal.withInitial(XMLInputFactory::newInstance);
+
+    private final RemoteSchemaResolver remoteSchemaResolver;
+
+    public StreamingChangelogXmlParser() {
+        this(RemoteSchemaResolver.defaults());
+    }
+
+    public StreamingChangelogXmlParser(RemoteSchemaResolver remoteSchemaResolver) {
+        this.remoteSchemaResolver = remoteSchemaResolver;
+    }
+
+    @Override
+    public Collection<Changeset> parse(ChangelogLoader changelogLoader, String mainChangelogPath) {
+        return parse(mainChangelogPath, changelog -> readFile(changelogLoader, changelog));
+    }
+
+    /**
+     * Assembles the changesets of the main changelog and of its imports, in declaration order.
+     *
+     * @param mainChangelogPath path of the main changelog
+     * @param changelogFiles parsed changelog file, by path
+     * @return the changesets
+     * @throws IllegalArgumentException if a changeset identifier is declared more than once or if imports are circular
+     */
+    Collection<Changeset> parse(String mainChangelogPath, Function<String, ChangelogFile> changelogFiles) {
+        Collection<Changeset> changesets = new ArrayList<>();
+        assemble(ImportResolver.normalize(mainChangelogPath), changelogFiles, changesets, new HashSet<>(), new ArrayDeque<>());
+        return changesets;
+    }
+
+    private static void assemble(String changelog,
+                                 Function<String, ChangelogFile> changelogFiles,
+                                 Collection<Changeset> changesets,
+                                 Set<String> identifiers,
+                                 Deque<String> importChain) {
+
+        if (importChain.contains(changelog)) {
+            throw new IllegalArgumentException("Circular import detected: " + ImportResolver.circularImport(importChain, changelog));
+        }
+        importChain.addLast(changelog);
+        for (ChangelogFile.Entry entry : changelogFiles.apply(changelog).getEntries()) {
+            if (entry.getImportedChangelog() != null) {
+                assemble(entry.getImportedChangelog(), changelogFiles, changesets, identifiers, importChain);
+                continue;
+            }
+            Changeset changeset = entry.getChangeset();
+            checkUniqueIdentifier(changeset, identifiers);
+            changesets.add(changeset);
+        }
+        importChain.removeLast();
+    }
+
+    /**
+     * Validates and parses a single changelog file, without following its imports.
+     *
+     * @param changelogLoader changelog loader
+     * @param changelog path of the changelog file
+     * @return the changesets and imports of the file
+     * @throws IllegalArgumentException if the file is not a valid changelog
+     */
+    ChangelogFile readFile(ChangelogLoader changelogLoader, String changelog) {
+        try {
+            validate(changelogLoader, changelog);
+            return read(changelogLoader, changelog);
+        } catch (JAXBException | XMLStreamException e) {
+            throw new IllegalArgumentException(format("Unable to parse changelog <%s>.", changelog), e);
+        }
+    }
+
+    private ChangelogFile read(ChangelogLoader changelogLoader, String changelog) throws JAXBException, XMLStreamException {
+        ChangelogFile result = new ChangelogFile();
+        XMLInputFactory inputFactory = INPUT_FACTORIES.get();
+        Unmarshaller unmarshaller = ChangelogBinding.newUnmarshaller();
+        try (InputStream stream = load(changelogLoader, changelog)) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(stream);
+            try {
+                moveToRootElement(reader);
+                int event = reader.next();
+                while (event != END_DOCUMENT) {
+                    if (event == START_ELEMENT && "changeset".equals(reader.getLocalName())) {
+                        // the unmarshaller leaves the reader right after the changeset end element
+                        Changeset changeset = unmarshaller.unmarshal(reader, Changeset.class).getValue();
+                        resolveReferencedFiles(changelog, changeset);
+                        ChangelogXmlParser.fixUpChangeset(changeset, changelogLoader);
+                        result.addChangeset(changeset);
+                        event = reader.getEventType();
+                        continue;
+                    }
+                    if (event == START_ELEMENT && "import".equals(reader.getLocalName())) {
+                        result.addImport(ImportResolver.normalize(parentFolder(changelog) + reader.getAttributeValue(null, "resource")));
+                    }
+                    event = reader.next();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw propagate(e);
+        }
+        return result;
+    }
+
+    /*
+     * The schema location is read from the root element, then the rest of the same stream is validated.
+     * Imports are hidden from validation, as they are replaced by the imported changesets
+     * before validation in the DOM-based parser.
+     */
+    private void validate(ChangelogLoader changelogLoader, String changelog) throws XMLStreamException {
+        Collection<String> errors;
+        try (InputStream stream = load(changelogLoader, changelog)) {
+            XMLInputFactory inputFactory = INPUT_FACTORIES.get();
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(stream);
+            try {
+                moveToRootElement(reader);
+                CompiledSchema schema = schema(schemaLocation(reader));
+                errors = validate(schema, inputFactory.createFilteredReader(reader, StreamingChangelogXmlParser::isNotImport));
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw propagate(e);
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException(formatErrorMessage(errors));
+        }
+    }
+
+    private static Collection<String> validate(CompiledSchema schema, XMLStreamReader rootElementReader) {
+        try {
+            return schema.validate(new StAXSource(rootElementReader));
+        } catch (Exception e) {
+            throw new IllegalArgumentException(
+                format("Exception while reading changelog: %n\t%s.", e.getMessage()),
+                e
+            );
+        }
+    }
+
+    private CompiledSchema schema(String schemaLocation) {
+        return schemaLocation == null ?
+            SchemaRegistry.getInstance().embeddedSchema() :
+            SchemaRegistry.getInstance().schema(schemaLocation, remoteSchemaResolver);
+    }
+
+    private static String schemaLocation(XMLStreamReader rootElementReader) {
+        for (int i = 0; i < rootElementReader.getAttributeCount(); i++) {
+            if ("xsi".equals(rootElementReader.getAttributePrefix(i))
+                && "noNamespaceSchemaLocation".equals(rootElementReader.getAttributeLocalName(i))) {
+                return rootElementReader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNotImport(XMLStreamReader reader) {
+        return !(reader.isStartElement() || reader.isEndElement()) || !"import".equals(reader.getLocalName());
+    }
+
+    private static void moveToRootElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.next() != START_ELEMENT) {
+            // skips prolog
+        }
+    }
+
+    private static void checkUniqueIdentifier(Changeset changeset, Set<String> identifiers) {
+        if (!identifiers.add(changeset.getId())) {
+            throw new IllegalArgumentException(SEPARATOR + format(DUPLICATE_ID_ERROR, changeset.getId()));
+        }
+    }
+
+    /*
+     * Parameter and query files are declared relatively to their changelog
+     */
+    private static void resolveReferencedFiles(String changelog, Changeset changeset) {
+        Parameters parameters = changeset.getParameters();
+        if (parameters != null && parameters.getFile() != null) {
+            parameters.setFile(parentFolder(changelog) + parameters.getFile());
+        }
+        for (ChangesetQuery query : changeset.getDeclaredQueries()) {
+            if (query.getFile() != null) {
+                query.setFile(parentFolder(changelog) + query.getFile());
+            }
+        }
+    }
+
+    private static InputStream load(ChangelogLoader changelogLoader, String changelog) throws IOException {
+        InputStream stream = changelogLoader.load(changelog);
+        if (stream == null) {
+            throw new RuntimeException("Import location cannot be resolved: " + changelog);
+        }
+        return stream;
+    }
+
+    private static String parentFolder(String changelog) {
+        return changelog.substring(0, changelog.lastIndexOf('/') + 1);
+    }
+
+    private static String formatErrorMessage(Collection<String> errors) {
+        return SEPARATOR + String.join(SEPARATOR, errors);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.xml.sax.InputSource;
+
+import javax.xml.catalog.CatalogFeatures;
+import javax.xml.catalog.CatalogManager;
+import javax.xml.catalog.CatalogResolver;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+
+/**
+ * Schema catalog backed by OASIS XML catalog files
+ */
+class XmlSchemaCatalog implements SchemaCatalog {
+
+    private final CatalogResolver resolver;
+
+    public XmlSchemaCatalog(URI... catalogs) {
+        CatalogFeatures features = CatalogFeatures.builder()
+            .with(CatalogFeatures.Feature.RESOLVE, "continue")
+            .build();
+        resolver = CatalogManager.catalogResolver(features, catalogs);
+    }
+
+    @Override
+    public InputSource resolve(String location) throws IOException {
+        InputSource source = resolver.resolveEntity(null, location);
+        if (source == null || source.getSystemId() == null) {
+            return null;
+        }
+        InputSource result = new InputSource(new URL(source.getSystemId()).openStream());
+        result.setSystemId(source.getSystemId());
+        return result;
+    }
+}
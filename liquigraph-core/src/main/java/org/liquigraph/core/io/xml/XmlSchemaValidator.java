@@ -24,6 +24,16 @@ import static java.lang.String.format;
 
 public class XmlSchemaValidator {
 
+    private final DomSourceValidatorFactory validatorFactory;
+
+    public XmlSchemaValidator() {
+        this(RemoteSchemaResolver.defaults());
+    }
+
+    public XmlSchemaValidator(RemoteSchemaResolver remoteSchemaResolver) {
+        validatorFactory = new DomSourceValidatorFactory(remoteSchemaResolver);
+    }
+
     /**
      * Validate the fully resolved changelog containing all migrations
      *
@@ -47,7 +57,7 @@ public class XmlSchemaValidator {
     }
 
     private Collection<String> parse(DOMSource changelog) throws Exception {
-        return new DomSourceValidatorFactory()
+        return validatorFactory
                 .createValidator(changelog)
                 .validate(changelog);
     }
@@ -19,6 +19,7 @@ import javax.xml.bind.annotation.XmlElementRef;
 import javax.xml.bind.annotation.XmlElementRefs;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlSeeAlso;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -27,7 +28,9 @@ import static java.lang.String.format;
 
 @XmlSeeAlso(Query.class)
 @XmlRootElement(name = "and")
-public class AndQuery implements CompoundQuery {
+public class AndQuery implements CompoundQuery, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private List<Query> queries = new ArrayList<>();
 
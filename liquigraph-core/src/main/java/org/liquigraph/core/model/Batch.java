@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Batch settings of a changeset.
+ * <p>
+ * Each query of a batched changeset is executed repeatedly, one transaction per batch,
+ * until it does not affect anything anymore. Queries can refer to the current batch size
+ * with the <code>$batchSize</code> parameter, and must return the number of rows they processed
+ * as <code>affected</code>, e.g. <code>RETURN count(*) AS affected</code>.
+ * <p>
+ * The batch size starts at {@link #getSize()} and is halved whenever the server reports
+ * that the transaction memory limit is reached, down to {@link #getMinSize()}.
+ * If a target duration is set, the batch size also doubles (up to {@link #getMaxSize()})
+ * when batches complete in less than half that duration and halves when they take longer.
+ * <p>
+ * Alternatively, queries relying on <code>CALL { ... } IN TRANSACTIONS OF $batchSize ROWS</code>
+ * can be executed once in an auto-commit transaction, as Neo4j requires, by setting
+ * {@link #isInTransactions()}.
+ */
+public class Batch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int size;
+    private Integer minSize;
+    private Integer maxSize;
+    private Long targetDuration;
+    private boolean inTransactions;
+
+    @XmlAttribute(name = "size", required = true)
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the smallest batch size to fall back to, defaults to 1
+     */
+    @XmlAttribute(name = "min-size", required = false)
+    public Integer getMinSize() {
+        return minSize == null ? 1 : minSize;
+    }
+
+    public void setMinSize(Integer minSize) {
+        this.minSize = minSize;
+    }
+
+    /**
+     * @return the largest batch size to grow to, defaults to the initial size
+     */
+    @XmlAttribute(name = "max-size", required = false)
+    public Integer getMaxSize() {
+        return maxSize == null ? size : maxSize;
+    }
+
+    public void setMaxSize(Integer maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the targeted duration of a single batch in milliseconds, or <code>null</code> if the batch size
+     * should not adapt to the observed latency
+     */
+    @XmlAttribute(name = "target-duration", required = false)
+    public Long getTargetDuration() {
+        return targetDuration;
+    }
+
+    public void setTargetDuration(Long targetDuration) {
+        this.targetDuration = targetDuration;
+    }
+
+    @XmlAttribute(name = "in-transactions", required = false)
+    public boolean isInTransactions() {
+        return inTransactions;
+    }
+
+    public void setInTransactions(boolean inTransactions) {
+        this.inTransactions = inTransactions;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, minSize, maxSize, targetDuration, inTransactions);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final Batch other = (Batch) obj;
+        return this.size == other.size &&
+            Objects.equals(this.minSize, other.minSize) &&
+            Objects.equals(this.maxSize, other.maxSize) &&
+            Objects.equals(this.targetDuration, other.targetDuration) &&
+            this.inTransactions == other.inTransactions;
+    }
+
+    @Override
+    public String toString() {
+        return "Batch{" +
+            "size=" + size +
+            ", minSize=" + minSize +
+            ", maxSize=" + maxSize +
+            ", targetDuration=" + targetDuration +
+            ", inTransactions=" + inTransactions +
+            '}';
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import org.liquigraph.core.configuration.ExecutionContexts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+import static org.liquigraph.core.model.Checksums.checksum;
+
+/**
+ * Two-level Merkle tree of the declared changesets, in declaration order.
+ * <p>
+ * Declared changesets are split into consecutive chunks of {@value #CHUNK_SIZE} changesets.
+ * Each chunk is hashed from the identifier, author, checksum and execution flags of its changesets, as well as whether
+ * they match the current execution contexts. The root is the hash of all chunk hashes.
+ * <p>
+ * Once the history is known to be in sync with the declared changesets, the fingerprint is persisted so that
+ * subsequent runs can skip reading the history altogether when the roots match, or only reconcile the changesets of
+ * the chunks that differ otherwise.
+ */
+public final class ChangelogFingerprint {
+
+    public static final int CHUNK_SIZE = 256;
+
+    private final List<Changeset> changesets;
+    private final List<String> chunks;
+    private final String root;
+
+    private ChangelogFingerprint(List<Changeset> changesets, List<String> chunks) {
+        this.changesets = changesets;
+        this.chunks = unmodifiableList(chunks);
+        this.root = checksum(chunks);
+    }
+
+    public static ChangelogFingerprint of(Collection<Changeset> declaredChangesets, ExecutionContexts executionContexts) {
+        List<Changeset> changesets = new ArrayList<>(declaredChangesets);
+        List<String> chunks = new ArrayList<>((changesets.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        for (int start = 0; start < changesets.size(); start += CHUNK_SIZE) {
+            List<Changeset> chunk = changesets.subList(start, Math.min(start + CHUNK_SIZE, changesets.size()));
+            List<String> entries = new ArrayList<>(chunk.size());
+            for (Changeset changeset : chunk) {
+                entries.add(entry(changeset, executionContexts.matches(changeset)));
+            }
+            chunks.add(checksum(entries));
+        }
+        return new ChangelogFingerprint(changesets, chunks);
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    public List<String> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @param persistedChunks chunk hashes of the fingerprint persisted when the history was last known to be in sync
+     * @return the declared changesets belonging to the chunks that differ from the persisted ones
+     */
+    public Collection<Changeset> divergingChangesets(List<String> persistedChunks) {
+        Collection<Changeset> result = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i < persistedChunks.size() && chunks.get(i).equals(persistedChunks.get(i))) {
+                continue;
+            }
+            int start = i * CHUNK_SIZE;
+            result.addAll(changesets.subList(start, Math.min(start + CHUNK_SIZE, changesets.size())));
+        }
+        return result;
+    }
+
+    private static String entry(Changeset changeset, boolean inExecutionContexts) {
+        return changeset.getId() + '\0' +
+            changeset.getAuthor() + '\0' +
+            changeset.getChecksum() + '\0' +
+            changeset.isRunOnChange() + '\0' +
+            changeset.isRunAlways() + '\0' +
+            inExecutionContexts + '\n';
+    }
+}
@@ -18,24 +18,33 @@ package org.liquigraph.core.model;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlTransient;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
 import static org.liquigraph.core.exception.Preconditions.checkArgument;
 import static org.liquigraph.core.model.Checksums.checksum;
 
-public class Changeset {
+public class Changeset implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String id;
     private String author;
-    private Collection<String> queries = new ArrayList<>();
+    private List<ChangesetQuery> declaredQueries = new ArrayList<>();
     private String checksum;
+    private String checksumAlgorithm = ChecksumAlgorithms.DEFAULT.getName();
     private Collection<String> executionsContexts = new ArrayList<>();
     private boolean runOnChange;
     private boolean runAlways;
+    private Boolean atomic;
+    private Collection<String> dependencies;
+    private Batch batch;
+    private Parameters parameters;
     private Precondition precondition;
     private Postcondition postcondition;
 
@@ -57,21 +66,58 @@ public class Changeset {
         this.author = author;
     }
 
-    @XmlElement(name = "query", required = true)
+    /**
+     * @return the inline queries, the queries declared in files are only available with {@link #getDeclaredQueries()}
+     */
+    @XmlTransient
     public Collection<String> getQueries() {
-        return queries;
+        return declaredQueries.stream()
+            .filter(query -> query.getFile() == null)
+            .map(ChangesetQuery::getQuery)
+            .collect(Collectors.toList());
     }
 
     public void setQueries(Collection<String> queries) {
         checkArgument(queries != null, "Queries cannot be null");
-        checkArgument(queries.size() > 0, "At least one query must be defined");
-        this.queries = queries;
-        setChecksum(checksum(queries));
+        setDeclaredQueries(queries.stream().map(ChangesetQuery::new).collect(Collectors.toList()));
+    }
+
+    /**
+     * @return the queries, inline or declared in files, in declaration order
+     */
+    @XmlElement(name = "query", required = true)
+    public List<ChangesetQuery> getDeclaredQueries() {
+        return declaredQueries;
+    }
+
+    public void setDeclaredQueries(List<ChangesetQuery> declaredQueries) {
+        checkArgument(declaredQueries != null, "Queries cannot be null");
+        checkArgument(declaredQueries.size() > 0, "At least one query must be defined");
+        this.declaredQueries = declaredQueries;
+        this.checksum = null;
+    }
+
+    /**
+     * @return whether some queries are declared in files, and therefore need to be read before execution
+     */
+    public boolean hasQueryFiles() {
+        return declaredQueries.stream().anyMatch(query -> query.getFile() != null);
     }
 
+    /**
+     * The checksum is computed on first access, with {@link #getChecksumAlgorithm()}, unless it has been
+     * explicitly set, as it is for changesets read from the history graph.
+     *
+     * @return the checksum of the queries and parameter rows, or <code>null</code> if no query is set yet
+     */
     @XmlTransient
     public String getChecksum() {
-        return checksum;
+        String result = checksum;
+        if (result == null && !declaredQueries.isEmpty()) {
+            result = computeChecksum(ChecksumAlgorithms.forName(checksumAlgorithm));
+            checksum = result;
+        }
+        return result;
     }
 
     public void setChecksum(String checksum) {
@@ -79,6 +125,27 @@ public class Changeset {
         this.checksum = checksum;
     }
 
+    /**
+     * @return the name of the {@link ChecksumAlgorithm} the checksum is computed with
+     */
+    @XmlTransient
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Changing the algorithm discards the checksum computed or set so far.
+     *
+     * @param checksumAlgorithm the name of the {@link ChecksumAlgorithm} to compute the checksum with
+     */
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        checkArgument(checksumAlgorithm != null, "Checksum algorithm cannot be null");
+        if (!checksumAlgorithm.equals(this.checksumAlgorithm)) {
+            this.checksumAlgorithm = checksumAlgorithm;
+            this.checksum = null;
+        }
+    }
+
     @XmlTransient
     public Collection<String> getExecutionsContexts() {
         return executionsContexts;
@@ -114,6 +181,69 @@ public class Changeset {
         this.runAlways = runAlways;
     }
 
+    /**
+     * @return whether the changeset queries and its history entry should be committed in a single
+     * transaction, or <code>null</code> if the changeset does not specify it and the configured default applies
+     */
+    @XmlAttribute(name = "atomic", required = false)
+    public Boolean getAtomic() {
+        return atomic;
+    }
+
+    public void setAtomic(Boolean atomic) {
+        this.atomic = atomic;
+    }
+
+    /**
+     * @return the IDs of the changesets this changeset depends on, or <code>null</code> if the changeset does not
+     * declare any dependency and therefore depends on all the changesets declared before it
+     */
+    @XmlTransient
+    public Collection<String> getDependencies() {
+        return dependencies;
+    }
+
+    @XmlAttribute(name = "depends-on", required = false)
+    String getDependsOn() {
+        return dependencies == null ? null : String.join(",", dependencies);
+    }
+
+    public void setDependsOn(String dependencies) {
+        if (dependencies == null) {
+            this.dependencies = null;
+            return;
+        }
+        this.dependencies = Arrays.stream(dependencies.split(","))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .collect(Collectors.toList());
+    }
+
+    @XmlElement(name = "batch", required = false)
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public void setBatch(Batch batch) {
+        this.batch = batch;
+    }
+
+    @XmlElement(name = "parameters", required = false)
+    public Parameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * The checksum of parameterized changesets covers both the queries and the parameter rows digest.
+     * Since the digest is computed after unmarshalling, the checksum is discarded here as well as when queries are set.
+     *
+     * @param parameters the parameter rows
+     */
+    public void setParameters(Parameters parameters) {
+        this.parameters = parameters;
+        this.checksum = null;
+    }
+
     @XmlElement(name = "precondition", required = false)
     public Precondition getPrecondition() {
         return precondition;
@@ -132,9 +262,22 @@ public class Changeset {
         this.postcondition = postcondition;
     }
 
+    /**
+     * Computes the checksum of the queries and parameter rows with the given algorithm, regardless of
+     * {@link #getChecksumAlgorithm()}, for comparison with checksums persisted with another algorithm.
+     * Queries declared in files contribute the digest of their file.
+     */
+    public String computeChecksum(ChecksumAlgorithm algorithm) {
+        List<String> queries = new ArrayList<>(declaredQueries.size());
+        for (ChangesetQuery query : declaredQueries) {
+            queries.add(query.getFile() == null ? query.getQuery() : query.getDigest());
+        }
+        return checksum(algorithm, queries, parameters == null ? null : parameters.getDigest());
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(id, author, checksum);
+        return Objects.hash(id, author, getChecksum());
     }
 
     @Override
@@ -148,7 +291,7 @@ public class Changeset {
         final Changeset other = (Changeset) obj;
         return Objects.equals(this.id, other.id) &&
             Objects.equals(this.author, other.author) &&
-            Objects.equals(this.checksum, other.checksum);
+            Objects.equals(this.getChecksum(), other.getChecksum());
     }
 
     @Override
@@ -156,11 +299,16 @@ public class Changeset {
         return "Changeset{" +
             "id='" + id + '\'' +
             ", author='" + author + '\'' +
-            ", queries='" + queries + '\'' +
-            ", checksum='" + checksum + '\'' +
+            ", queries='" + declaredQueries + '\'' +
+            ", checksum='" + getChecksum() + '\'' +
+            ", checksumAlgorithm='" + checksumAlgorithm + '\'' +
             ", executionsContexts=" + executionsContexts +
             ", runOnChange=" + runOnChange +
             ", runAlways=" + runAlways +
+            ", atomic=" + atomic +
+            ", dependencies=" + dependencies +
+            ", batch=" + batch +
+            ", parameters=" + parameters +
             ", precondition=" + precondition +
             ", postcondition=" + postcondition +
             '}';
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Changesets indexed by identifier and author, for constant-time lookups.
+ * <p>
+ * When several changesets share the same identifier and author, the first one wins.
+ */
+public final class ChangesetIndex {
+
+    private final Map<Key, Changeset> changesets;
+
+    private ChangesetIndex(Map<Key, Changeset> changesets) {
+        this.changesets = changesets;
+    }
+
+    public static ChangesetIndex of(Collection<Changeset> changesets) {
+        Map<Key, Changeset> index = new HashMap<>(Math.max(16, (int) (changesets.size() / .75f) + 1));
+        for (Changeset changeset : changesets) {
+            index.putIfAbsent(new Key(changeset.getId(), changeset.getAuthor()), changeset);
+        }
+        return new ChangesetIndex(index);
+    }
+
+    /**
+     * @return the indexed changeset with the same identifier and author as the given one, if any
+     */
+    public Optional<Changeset> find(Changeset changeset) {
+        return find(changeset.getId(), changeset.getAuthor());
+    }
+
+    public Optional<Changeset> find(String id, String author) {
+        return Optional.ofNullable(changesets.get(new Key(id, author)));
+    }
+
+    /**
+     * @return whether the given changeset is indexed, with the same checksum
+     */
+    public boolean contains(Changeset changeset) {
+        return find(changeset).filter(changeset::equals).isPresent();
+    }
+
+    public int size() {
+        return changesets.size();
+    }
+
+    private static final class Key {
+
+        private final String id;
+        private final String author;
+
+        Key(String id, String author) {
+            this.id = id;
+            this.author = author;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(id) + Objects.hashCode(author);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return Objects.equals(id, other.id) && Objects.equals(author, other.author);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.XmlValue;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Query of a changeset.
+ * <p>
+ * Queries are either declared inline, as the element content, or in a Cypher script referenced by {@link #getFile()}
+ * and resolved relatively to the declaring changelog. Scripts may contain several statements separated by semicolons.
+ * They are only read when computing their digest and when their changeset is executed, so that their contents
+ * never have to be kept in memory.
+ */
+public class ChangesetQuery implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String query;
+    private String file;
+    private String digest;
+
+    public ChangesetQuery() {
+    }
+
+    public ChangesetQuery(String query) {
+        this.query = query;
+    }
+
+    /**
+     * @return the inline query, or <code>null</code> or a blank string if the query is declared in a file
+     */
+    @XmlValue
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    @XmlAttribute(name = "file", required = false)
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the digest of the referenced file bytes, computed with {@link Checksums#DIGEST_ALGORITHM} and included
+     * in the changeset checksum, or <code>null</code> if the query is inline or the digest is not computed yet
+     */
+    @XmlTransient
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query, file);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final ChangesetQuery other = (ChangesetQuery) obj;
+        return Objects.equals(this.query, other.query) &&
+            Objects.equals(this.file, other.file);
+    }
+
+    @Override
+    public String toString() {
+        return file == null ? query : "file:" + file;
+    }
+}
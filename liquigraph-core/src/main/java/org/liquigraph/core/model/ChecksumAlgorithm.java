@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hash function used to compute changeset checksums.
+ * <p>
+ * The name of the algorithm is persisted alongside every executed changeset, so that changesets hashed with a
+ * previously configured algorithm are still recognized as up to date.
+ * Additional algorithms can be registered with {@link java.util.ServiceLoader}, they are then available to
+ * {@link ChecksumAlgorithms#forName(String)}.
+ */
+public interface ChecksumAlgorithm {
+
+    /**
+     * @return the unique name of the algorithm, as persisted in the history graph
+     */
+    String getName();
+
+    /**
+     * @return a hasher ready to be fed, which is only meant to be used by the calling thread
+     */
+    Hasher newHasher();
+
+    interface Hasher {
+
+        /**
+         * Feeds the remaining bytes of the given buffer to the hash function.
+         * The buffer position is moved to its limit.
+         */
+        void update(ByteBuffer bytes);
+
+        /**
+         * @return the hexadecimal representation of the hash of all the bytes fed so far
+         */
+        String hash();
+    }
+}
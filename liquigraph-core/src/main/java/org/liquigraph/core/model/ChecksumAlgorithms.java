@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+import static java.lang.String.format;
+import static org.liquigraph.core.exception.Throwables.propagate;
+
+/**
+ * Built-in {@link ChecksumAlgorithm} implementations.
+ * <p>
+ * SHA-1 is the default algorithm, all the histories written before the algorithm was recorded rely on it.
+ * CRC32C is a much faster, non-cryptographic alternative, suitable when checksums only guard against accidental
+ * changeset edits.
+ */
+public final class ChecksumAlgorithms {
+
+    public static final ChecksumAlgorithm SHA_1 = new MessageDigestAlgorithm("sha1", "SHA-1");
+
+    public static final ChecksumAlgorithm SHA_256 = new MessageDigestAlgorithm("sha256", "SHA-256");
+
+    public static final ChecksumAlgorithm CRC32C = new Crc32cAlgorithm();
+
+    public static final ChecksumAlgorithm DEFAULT = SHA_1;
+
+    private static final Map<String, ChecksumAlgorithm> ALGORITHMS = new ConcurrentHashMap<>();
+
+    static {
+        ALGORITHMS.put(SHA_1.getName(), SHA_1);
+        ALGORITHMS.put(SHA_256.getName(), SHA_256);
+        ALGORITHMS.put(CRC32C.getName(), CRC32C);
+    }
+
+    private ChecksumAlgorithms() {
+        throw new RuntimeException("static");
+    }
+
+    /**
+     * Looks up the algorithm with the given name, among the built-in ones and the ones registered with
+     * {@link ServiceLoader}.
+     *
+     * @throws IllegalArgumentException if no such algorithm is available
+     */
+    public static ChecksumAlgorithm forName(String name) {
+        ChecksumAlgorithm algorithm = ALGORITHMS.computeIfAbsent(name, ChecksumAlgorithms::loadService);
+        if (algorithm == null) {
+            throw new IllegalArgumentException(format("Unknown checksum algorithm <%s>", name));
+        }
+        return algorithm;
+    }
+
+    private static ChecksumAlgorithm loadService(String name) {
+        for (ChecksumAlgorithm algorithm : ServiceLoader.load(ChecksumAlgorithm.class)) {
+            if (algorithm.getName().equals(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    private static final class MessageDigestAlgorithm implements ChecksumAlgorithm {
+
+        private final String name;
+        // digests are reset by MessageDigest#digest, they can safely be reused by the same thread
+        private final ThreadLocal<MessageDigest> digests;
+
+        MessageDigestAlgorithm(String name, String digestAlgorithm) {
+            this.name = name;
+            this.digests = ThreadLocal.withInitial(() -> messageDigest(digestAlgorithm));
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Hasher newHasher() {
+            MessageDigest digest = digests.get();
+            digest.reset();
+            return new Hasher() {
+                @Override
+                public void update(ByteBuffer bytes) {
+                    digest.update(bytes);
+                }
+
+                @Override
+                public String hash() {
+                    return Checksums.hexadecimal(digest.digest());
+                }
+            };
+        }
+
+        private static MessageDigest messageDigest(String algorithm) {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw propagate(e);
+            }
+        }
+    }
+
+    private static final class Crc32cAlgorithm implements ChecksumAlgorithm {
+
+        @Override
+        public String getName() {
+            return "crc32c";
+        }
+
+        @Override
+        public Hasher newHasher() {
+            CRC32C crc = new CRC32C();
+            return new Hasher() {
+                @Override
+                public void update(ByteBuffer bytes) {
+                    crc.update(bytes);
+                }
+
+                @Override
+                public String hash() {
+                    return format("%08x", crc.getValue());
+                }
+            };
+        }
+    }
+}
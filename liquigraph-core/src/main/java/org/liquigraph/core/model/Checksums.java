@@ -15,27 +15,87 @@
  */
 package org.liquigraph.core.model;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.Collection;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static org.liquigraph.core.exception.Throwables.propagate;
 
+/**
+ * Computes changeset checksums.
+ * <p>
+ * Queries are encoded to UTF-8 straight into the hash function, through per-thread reusable buffers, instead of
+ * being copied to an intermediate byte array first. The encoded bytes are the same as {@link String#getBytes}'s,
+ * malformed input included, so that checksums do not depend on the way they are computed.
+ */
 public class Checksums {
 
     private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<CharsetEncoder> ENCODERS = ThreadLocal.withInitial(() ->
+        UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE));
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    /**
+     * Algorithm of content digests, i.e. of query files and parameter rows, whatever the changeset checksum algorithm.
+     * <p>
+     * Digests are computed when changelogs are parsed, before the configured checksum algorithm is known, and are
+     * stored as is in changelog snapshots and bundles. Above all, a changeset checksum must be recomputable with the
+     * algorithm of any persisted checksum, without reading files again, when the history is reconciled.
+     * Digests therefore never change with the checksum algorithm: picking a faster one such as crc32c only
+     * speeds up the hashing of inline queries and of the digests themselves.
+     */
+    public static final ChecksumAlgorithm DIGEST_ALGORITHM = ChecksumAlgorithms.SHA_1;
+
     public static String checksum(Collection<String> queries) {
-        MessageDigest messageDigest = sha1MessageDigest();
+        return checksum(ChecksumAlgorithms.DEFAULT, queries, null);
+    }
+
+    public static String checksum(Collection<String> queries, String parametersDigest) {
+        return checksum(ChecksumAlgorithms.DEFAULT, queries, parametersDigest);
+    }
+
+    /**
+     * Computes the checksum of the given queries, followed by the digest of the parameter rows, if any.
+     *
+     * @param parametersDigest the digest of the parameter rows, or <code>null</code> if there are none
+     */
+    public static String checksum(ChecksumAlgorithm algorithm, Collection<String> queries, String parametersDigest) {
+        ChecksumAlgorithm.Hasher hasher = algorithm.newHasher();
         for (String query : queries) {
-            messageDigest.update(query.getBytes(UTF_8));
+            update(hasher, query);
+        }
+        if (parametersDigest != null) {
+            update(hasher, parametersDigest);
         }
-        return buildHexadecimalRepresentation(messageDigest.digest());
+        return hasher.hash();
+    }
+
+    /**
+     * Computes the digest of the given content with {@link #DIGEST_ALGORITHM}.
+     */
+    public static String checksum(InputStream content) throws IOException {
+        ChecksumAlgorithm.Hasher hasher = DIGEST_ALGORITHM.newHasher();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            hasher.update(ByteBuffer.wrap(buffer, 0, read));
+        }
+        return hasher.hash();
     }
 
     // adapted from com.google.common.hash.HashCode#toString
-    private static String buildHexadecimalRepresentation(byte[] bytes) {
+    static String hexadecimal(byte[] bytes) {
         StringBuilder builder = new StringBuilder(2 * bytes.length);
         for (byte b : bytes) {
             builder.append(HEX_DIGITS[b >> 4 & 15]).append(HEX_DIGITS[b & 15]);
@@ -43,11 +103,27 @@ public class Checksums {
         return builder.toString();
     }
 
-    private static MessageDigest sha1MessageDigest() {
-        try {
-            return MessageDigest.getInstance("SHA-1");
-        } catch (NoSuchAlgorithmException e) {
-            throw propagate(e);
+    private static void update(ChecksumAlgorithm.Hasher hasher, String text) {
+        CharsetEncoder encoder = ENCODERS.get().reset();
+        ByteBuffer buffer = BUFFERS.get();
+        CharBuffer chars = CharBuffer.wrap(text);
+        CoderResult result;
+        do {
+            buffer.clear();
+            result = encoder.encode(chars, buffer, true);
+            drain(hasher, buffer);
+        } while (result.isOverflow());
+        do {
+            buffer.clear();
+            result = encoder.flush(buffer);
+            drain(hasher, buffer);
+        } while (result.isOverflow());
+    }
+
+    private static void drain(ChecksumAlgorithm.Hasher hasher, ByteBuffer buffer) {
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            hasher.update(buffer);
         }
     }
 }
@@ -19,6 +19,7 @@ import javax.xml.bind.annotation.XmlElementRef;
 import javax.xml.bind.annotation.XmlElementRefs;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlSeeAlso;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -28,7 +29,9 @@ import static org.liquigraph.core.model.CompoundQueries.checkQueryListState;
 
 @XmlSeeAlso(Query.class)
 @XmlRootElement(name = "or")
-public class OrQuery implements CompoundQuery {
+public class OrQuery implements CompoundQuery, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private List<Query> queries = new ArrayList<>();
 
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.XmlValue;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Parameter rows of a parameterized changeset.
+ * <p>
+ * Rows are either declared inline, as the element content, or in a file referenced by {@link #getFile()}
+ * and resolved relatively to the declaring changelog. They are formatted as a JSON array of objects or as
+ * a CSV file with a header line.
+ * <p>
+ * Rows are sent in batches of {@link #getBatchSize()} to every query of the changeset, as a list of maps
+ * bound to the <code>$rows</code> parameter, e.g. <code>UNWIND $rows AS row CREATE (:Person {name: row.name})</code>.
+ */
+public class Parameters implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String file;
+    private String format;
+    private int batchSize = 1000;
+    private String content;
+    private String digest;
+
+    @XmlAttribute(name = "file", required = false)
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the declared format (<code>json</code> or <code>csv</code>), or <code>null</code> if it should be
+     * inferred from the file extension, inline parameters default to JSON
+     */
+    @XmlAttribute(name = "format", required = false)
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    @XmlAttribute(name = "batch-size", required = false)
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @XmlValue
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    /**
+     * @return the digest of the raw parameter rows, included in the changeset checksum,
+     * or <code>null</code> if not computed yet
+     */
+    @XmlTransient
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(file, format, batchSize, content);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final Parameters other = (Parameters) obj;
+        return Objects.equals(this.file, other.file) &&
+            Objects.equals(this.format, other.format) &&
+            this.batchSize == other.batchSize &&
+            Objects.equals(this.content, other.content);
+    }
+
+    @Override
+    public String toString() {
+        return "Parameters{" +
+            "file='" + file + '\'' +
+            ", format='" + format + '\'' +
+            ", batchSize=" + batchSize +
+            ", digest='" + digest + '\'' +
+            '}';
+    }
+}
@@ -18,9 +18,12 @@ package org.liquigraph.core.model;
 
 import javax.xml.bind.annotation.XmlElementRef;
 import javax.xml.bind.annotation.XmlElementRefs;
+import java.io.Serializable;
 import java.util.Objects;
 
-public class Postcondition implements Condition {
+public class Postcondition implements Condition, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private Query query;
 
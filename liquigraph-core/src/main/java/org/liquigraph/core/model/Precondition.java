@@ -19,9 +19,12 @@ package org.liquigraph.core.model;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElementRef;
 import javax.xml.bind.annotation.XmlElementRefs;
+import java.io.Serializable;
 import java.util.Objects;
 
-public class Precondition implements Condition {
+public class Precondition implements Condition, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private PreconditionErrorPolicy policy;
     private Query query;
@@ -18,13 +18,16 @@ package org.liquigraph.core.model;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlSeeAlso;
 import javax.xml.bind.annotation.XmlValue;
+import java.io.Serializable;
 import java.util.Objects;
 
 import static java.lang.String.format;
 
 @XmlSeeAlso(Query.class)
 @XmlRootElement(name = "query")
-public class SimpleQuery implements Query {
+public class SimpleQuery implements Query, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String query;
 
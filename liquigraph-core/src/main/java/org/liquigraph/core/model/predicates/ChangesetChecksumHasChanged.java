@@ -16,29 +16,31 @@
 package org.liquigraph.core.model.predicates;
 
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetIndex;
 
 import java.util.Collection;
 import java.util.Optional;
 import java.util.function.Predicate;
 
-import static org.liquigraph.core.model.predicates.ChangesetById.BY_ID;
-
 public class ChangesetChecksumHasChanged implements Predicate<Changeset> {
 
-    private final Collection<Changeset> persistedChangesets;
+    private final ChangesetIndex persistedChangesets;
 
-    private ChangesetChecksumHasChanged(Collection<Changeset> persistedChangesets) {
+    private ChangesetChecksumHasChanged(ChangesetIndex persistedChangesets) {
         this.persistedChangesets = persistedChangesets;
     }
 
     public static Predicate<Changeset> CHECKSUM_HAS_CHANGED(Collection<Changeset> persistedChangesets) {
+        return CHECKSUM_HAS_CHANGED(ChangesetIndex.of(persistedChangesets));
+    }
+
+    public static Predicate<Changeset> CHECKSUM_HAS_CHANGED(ChangesetIndex persistedChangesets) {
         return new ChangesetChecksumHasChanged(persistedChangesets);
     }
 
     @Override
     public boolean test(Changeset input) {
-        Optional<Changeset> persistedChangeset =
-            persistedChangesets.stream().filter(BY_ID(input.getId(), input.getAuthor())).findFirst();
+        Optional<Changeset> persistedChangeset = persistedChangesets.find(input);
         return persistedChangeset.isPresent() && !input.getChecksum().equals(persistedChangeset.get().getChecksum());
     }
 }
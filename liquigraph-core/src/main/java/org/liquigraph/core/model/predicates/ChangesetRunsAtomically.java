@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model.predicates;
+
+import org.liquigraph.core.model.Changeset;
+
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Matches changesets whose queries can be committed in the same transaction as their history entry.
+ * <p>
+ * A changeset runs atomically if it declares so, or if it does not declare anything and atomic execution
+ * is the configured default.
+ * Schema changesets (index or constraint operations), batched changesets and changesets with a postcondition
+ * never run atomically, since Neo4j does not allow schema and data writes in the same transaction and batches
+ * as well as postcondition iterations need to be committed one by one.
+ * Changesets with query files do not run atomically either, since telling whether their statements alter the schema
+ * would require reading the files.
+ */
+public class ChangesetRunsAtomically implements Predicate<Changeset> {
+
+    private static final Pattern SCHEMA_QUERY = Pattern.compile(
+        "^\\s*(?:(?:CREATE|DROP)\\s+(?:\\w+\\s+)?(?:INDEX|CONSTRAINT)\\b" +
+            "|CALL\\s+db\\.(?:createIndex|createUniquePropertyConstraint|createNodeKey|index\\.fulltext\\.(?:create|drop)))",
+        Pattern.CASE_INSENSITIVE
+    );
+
+    private final boolean atomicByDefault;
+
+    private ChangesetRunsAtomically(boolean atomicByDefault) {
+        this.atomicByDefault = atomicByDefault;
+    }
+
+    public static Predicate<Changeset> RUNS_ATOMICALLY(boolean atomicByDefault) {
+        return new ChangesetRunsAtomically(atomicByDefault);
+    }
+
+    @Override
+    public boolean test(Changeset changeset) {
+        Boolean atomic = changeset.getAtomic();
+        if (!(atomic == null ? atomicByDefault : atomic)) {
+            return false;
+        }
+        return changeset.getPostcondition() == null &&
+            changeset.getBatch() == null &&
+            !changeset.hasQueryFiles() &&
+            changeset.getQueries().stream().noneMatch(query -> SCHEMA_QUERY.matcher(query).find());
+    }
+}
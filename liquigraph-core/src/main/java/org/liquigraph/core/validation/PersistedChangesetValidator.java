@@ -16,6 +16,7 @@
 package org.liquigraph.core.validation;
 
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetIndex;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -24,12 +25,15 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
-import static org.liquigraph.core.model.predicates.ChangesetById.BY_ID;
 import static org.liquigraph.core.model.predicates.ChangesetRunOnChange.RUN_ON_CHANGE;
 
 public class PersistedChangesetValidator {
 
     public Collection<String> validate(Collection<Changeset> declaredChangesets, Collection<Changeset> persistedChangesets) {
+        return validate(declaredChangesets, ChangesetIndex.of(persistedChangesets));
+    }
+
+    public Collection<String> validate(Collection<Changeset> declaredChangesets, ChangesetIndex persistedChangesets) {
         List<Changeset> changesets = declaredChangesets.stream()
             .filter(RUN_ON_CHANGE.negate())
             .collect(Collectors.toList());
@@ -37,12 +41,10 @@ public class PersistedChangesetValidator {
         return validateChecksums(changesets, persistedChangesets);
     }
 
-    private Collection<String> validateChecksums(Collection<Changeset> declaredChangesets, Collection<Changeset> persistedChangesets) {
+    private Collection<String> validateChecksums(Collection<Changeset> declaredChangesets, ChangesetIndex persistedChangesets) {
         Collection<String> errors = new ArrayList<>();
         for (Changeset declaredChangeset : declaredChangesets) {
-            Optional<Changeset> maybePersistedChangeset = persistedChangesets.stream()
-                .filter(BY_ID(declaredChangeset.getId(), declaredChangeset.getAuthor()))
-                .findFirst();
+            Optional<Changeset> maybePersistedChangeset = persistedChangesets.find(declaredChangeset);
 
             if (!maybePersistedChangeset.isPresent()) {
                 continue;
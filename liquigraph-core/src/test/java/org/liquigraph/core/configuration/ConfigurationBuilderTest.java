@@ -19,6 +19,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.liquigraph.core.io.ChangelogParser;
+import org.liquigraph.core.io.xml.ChangelogXmlParser;
+import org.liquigraph.core.io.xml.StreamingChangelogXmlParser;
 
 import javax.sql.DataSource;
 import java.nio.file.Path;
@@ -58,6 +61,15 @@ public class ConfigurationBuilderTest {
             .build();
     }
 
+    @Test
+    public void fails_on_non_positive_parallelism() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Parallelism must be strictly positive, got: 0");
+
+        new ConfigurationBuilder()
+            .withParallelism(0);
+    }
+
     @Test
     public void fails_on_null_uri() {
         thrown.expect(RuntimeException.class);
@@ -141,6 +153,38 @@ public class ConfigurationBuilderTest {
             .isSameAs(expectedConnection);
     }
 
+    @Test
+    public void resolves_streaming_changelog_parser_when_configured() {
+        ChangelogParser defaultParser = mock(ChangelogParser.class);
+        ConfigurationBuilder builder = new ConfigurationBuilder()
+            .withMasterChangelogLocation("changelog/changelog.xml")
+            .withUri("jdbc:neo4j:http://localhost:7474");
+
+        assertThat(builder.build().resolveParser(defaultParser)).isSameAs(defaultParser);
+        assertThat(builder.withStreamingChangelogParser(true).build().resolveParser(defaultParser))
+            .isInstanceOf(StreamingChangelogXmlParser.class);
+    }
+
+    @Test
+    public void resolves_xml_changelog_parser_when_schema_resolution_is_configured() throws Exception {
+        ChangelogParser defaultParser = mock(ChangelogParser.class);
+        Path schemaCache = changesetFolder.newFolder("schemas").toPath();
+
+        Configuration configuration = new ConfigurationBuilder()
+            .withMasterChangelogLocation("changelog/changelog.xml")
+            .withUri("jdbc:neo4j:http://localhost:7474")
+            .withSchemaCacheDirectory(schemaCache)
+            .withOfflineSchemaResolution(true)
+            .build();
+
+        assertThat(configuration.schemaCatalogs()).isEmpty();
+        assertThat(configuration.schemaCacheDirectory()).isEqualTo(schemaCache);
+        assertThat(configuration.offlineSchemaResolution()).isTrue();
+        assertThat(configuration.resolveParser(defaultParser))
+            .isInstanceOf(ChangelogXmlParser.class)
+            .isNotSameAs(defaultParser);
+    }
+
     @Test
     public void fails_on_password_but_no_username_provided() {
         thrown.expect(RuntimeException.class);
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.junit.Test;
+import org.liquigraph.core.model.Batch;
+import org.mockito.InOrder;
+import org.mockito.stubbing.Answer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchedQueryExecutorTest {
+
+    private static final String MEMORY_LIMIT_MESSAGE = "The allocation of an extra 2.0 MiB would use more than the limit 10.0 MiB. " +
+        "Currently using 9.0 MiB. dbms.memory.transaction.max_size threshold reached";
+
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+
+    @Test
+    public void repeats_query_until_nothing_is_affected() throws SQLException {
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT $1 DELETE n")).thenReturn(statement);
+        when(statement.executeQuery()).thenAnswer(affectedRows(10, 10, 3, 0));
+
+        long affected = new BatchedQueryExecutor().executeUntilExhausted(connection, "MATCH (n:Foo) WITH n LIMIT $batchSize DELETE n", batch(10));
+
+        assertThat(affected).isEqualTo(23);
+        verify(statement, times(4)).setLong(1, 10);
+        verify(connection, times(4)).commit();
+    }
+
+    @Test
+    public void repeats_property_only_query_until_no_row_is_processed() throws SQLException {
+        String query = "MATCH (n:Foo) WHERE n.bar IS NULL WITH n LIMIT $batchSize SET n.bar = true RETURN count(*) AS affected";
+        when(connection.prepareStatement("MATCH (n:Foo) WHERE n.bar IS NULL WITH n LIMIT $1 SET n.bar = true RETURN count(*) AS affected")).thenReturn(statement);
+        when(statement.executeQuery()).thenAnswer(affectedRows(10, 10, 0));
+
+        long affected = new BatchedQueryExecutor().executeUntilExhausted(connection, query, batch(10));
+
+        assertThat(affected).isEqualTo(20);
+        verify(statement, times(3)).executeQuery();
+        verify(statement, never()).executeUpdate();
+        verify(connection, times(3)).commit();
+    }
+
+    @Test
+    public void fails_when_query_does_not_return_affected_rows() throws SQLException {
+        ResultSet results = mock(ResultSet.class);
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT $1 SET n.bar = true")).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(results);
+
+        assertThatThrownBy(() -> new BatchedQueryExecutor().executeUntilExhausted(connection, "MATCH (n:Foo) WITH n LIMIT $batchSize SET n.bar = true", batch(10)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Batched query must return the number of processed rows as affected, e.g. RETURN count(*) AS affected: " +
+                "MATCH (n:Foo) WITH n LIMIT $batchSize SET n.bar = true");
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    public void does_not_bind_batch_size_when_query_does_not_use_it() throws SQLException {
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT 10 DELETE n")).thenReturn(statement);
+        when(statement.executeQuery()).thenAnswer(affectedRows(10, 0));
+
+        new BatchedQueryExecutor().executeUntilExhausted(connection, "MATCH (n:Foo) WITH n LIMIT 10 DELETE n", batch(10));
+
+        verify(statement, never()).setLong(1, 10);
+    }
+
+    @Test
+    public void halves_batch_size_when_memory_limit_is_reached() throws SQLException {
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT $1 DELETE n")).thenReturn(statement);
+        when(statement.executeQuery())
+            .thenThrow(new SQLException("Transaction failed", new RuntimeException(MEMORY_LIMIT_MESSAGE)))
+            .thenAnswer(affectedRows(5, 0));
+
+        long affected = new BatchedQueryExecutor().executeUntilExhausted(connection, "MATCH (n:Foo) WITH n LIMIT $batchSize DELETE n", batch(10));
+
+        assertThat(affected).isEqualTo(5);
+        InOrder inOrder = inOrder(statement, connection);
+        inOrder.verify(statement).setLong(1, 10);
+        inOrder.verify(connection).rollback();
+        inOrder.verify(statement).setLong(1, 5);
+        inOrder.verify(connection).commit();
+    }
+
+    @Test
+    public void recognizes_memory_errors_by_their_status_code() throws SQLException {
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT $1 DELETE n")).thenReturn(statement);
+        when(statement.executeQuery())
+            .thenThrow(new SQLException(new Neo4jError("Neo.TransientError.General.MemoryPoolOutOfMemoryError", "Reworded by a newer server")))
+            .thenAnswer(affectedRows(5, 0));
+
+        long affected = new BatchedQueryExecutor().executeUntilExhausted(connection, "MATCH (n:Foo) WITH n LIMIT $batchSize DELETE n", batch(10));
+
+        assertThat(affected).isEqualTo(5);
+        verify(statement).setLong(1, 10);
+        verify(statement, times(2)).setLong(1, 5);
+    }
+
+    @Test
+    public void trusts_status_codes_over_error_messages() throws SQLException {
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT $1 DELETE n")).thenReturn(statement);
+        SQLException error = new SQLException(new Neo4jError("Neo.ClientError.Statement.SyntaxError", MEMORY_LIMIT_MESSAGE));
+        when(statement.executeQuery()).thenThrow(error);
+
+        assertThatThrownBy(() -> new BatchedQueryExecutor().executeUntilExhausted(connection, "MATCH (n:Foo) WITH n LIMIT $batchSize DELETE n", batch(10)))
+            .isSameAs(error);
+        verify(statement, never()).setLong(1, 5);
+    }
+
+    @Test
+    public void does_not_rewrite_batch_size_mentions_in_literals() throws SQLException {
+        String query = "MATCH (n:Foo) WITH n LIMIT $batchSize SET n.note = '$batchSize' RETURN count(*) AS affected";
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT $1 SET n.note = '$batchSize' RETURN count(*) AS affected")).thenReturn(statement);
+        when(statement.executeQuery()).thenAnswer(affectedRows(0));
+
+        new BatchedQueryExecutor().executeUntilExhausted(connection, query, batch(10));
+
+        verify(statement).setLong(1, 10);
+    }
+
+    @Test
+    public void rethrows_memory_errors_at_minimum_batch_size() throws SQLException {
+        Batch batch = batch(10);
+        batch.setMinSize(10);
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT $1 DELETE n")).thenReturn(statement);
+        when(statement.executeQuery()).thenThrow(new SQLException(MEMORY_LIMIT_MESSAGE));
+
+        assertThatThrownBy(() -> new BatchedQueryExecutor().executeUntilExhausted(connection, "MATCH (n:Foo) WITH n LIMIT $batchSize DELETE n", batch))
+            .isInstanceOf(SQLException.class)
+            .hasMessage(MEMORY_LIMIT_MESSAGE);
+        verify(connection).rollback();
+    }
+
+    @Test
+    public void rethrows_other_errors() throws SQLException {
+        when(connection.prepareStatement("toto")).thenReturn(statement);
+        when(statement.executeQuery()).thenThrow(new SQLException("Invalid input 't'"));
+
+        assertThatThrownBy(() -> new BatchedQueryExecutor().executeUntilExhausted(connection, "toto", batch(10)))
+            .isInstanceOf(SQLException.class)
+            .hasMessage("Invalid input 't'");
+    }
+
+    @Test
+    public void adapts_batch_size_to_target_duration() throws SQLException {
+        Batch batch = batch(100);
+        batch.setMinSize(50);
+        batch.setMaxSize(400);
+        batch.setTargetDuration(1000L);
+        AtomicLong clock = new AtomicLong();
+        when(connection.prepareStatement("MATCH (n:Foo) WITH n LIMIT $1 DELETE n")).thenReturn(statement);
+        when(statement.executeQuery()).then(invocation -> {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            return affected(1);
+        }).then(invocation -> {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            return affected(1);
+        }).then(invocation -> {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            return affected(1);
+        }).then(invocation -> {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(5000));
+            return affected(1);
+        }).thenAnswer(affectedRows(0));
+
+        new BatchedQueryExecutor(clock::get).executeUntilExhausted(connection, "MATCH (n:Foo) WITH n LIMIT $batchSize DELETE n", batch);
+
+        InOrder inOrder = inOrder(statement);
+        inOrder.verify(statement).setLong(1, 100);
+        inOrder.verify(statement).setLong(1, 200);
+        inOrder.verify(statement, times(2)).setLong(1, 400);
+        inOrder.verify(statement).setLong(1, 200);
+    }
+
+    @Test
+    public void executes_in_transactions_query_once_in_auto_commit_mode() throws SQLException {
+        String query = "MATCH (n:Foo) CALL { WITH n DELETE n } IN TRANSACTIONS OF $1 ROWS";
+        when(connection.getAutoCommit()).thenReturn(false);
+        when(connection.prepareStatement(query)).thenReturn(statement);
+
+        new BatchedQueryExecutor().executeInTransactions(connection, "MATCH (n:Foo) CALL { WITH n DELETE n } IN TRANSACTIONS OF $batchSize ROWS", batch(1000));
+
+        InOrder inOrder = inOrder(connection, statement);
+        inOrder.verify(connection).setAutoCommit(true);
+        inOrder.verify(statement).setLong(1, 1000);
+        inOrder.verify(statement).execute();
+        inOrder.verify(connection).setAutoCommit(false);
+    }
+
+    private static Answer<ResultSet> affectedRows(long... counts) {
+        AtomicInteger calls = new AtomicInteger();
+        return invocation -> affected(counts[Math.min(calls.getAndIncrement(), counts.length - 1)]);
+    }
+
+    private static ResultSet affected(long count) throws SQLException {
+        ResultSet results = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnLabel(1)).thenReturn("affected");
+        when(results.next()).thenReturn(true);
+        when(results.getMetaData()).thenReturn(metaData);
+        when(results.getLong("affected")).thenReturn(count);
+        return results;
+    }
+
+    private static Batch batch(int size) {
+        Batch batch = new Batch();
+        batch.setSize(size);
+        return batch;
+    }
+
+    /**
+     * Mimics the exceptions of the Neo4j Java driver, which expose the server status code.
+     */
+    public static final class Neo4jError extends RuntimeException {
+
+        private final String code;
+
+        Neo4jError(String code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        public String code() {
+            return code;
+        }
+    }
+}
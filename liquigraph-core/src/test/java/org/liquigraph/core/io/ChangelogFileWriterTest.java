@@ -20,6 +20,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.liquigraph.core.model.Batch;
 import org.liquigraph.core.model.Changeset;
 import org.liquigraph.core.model.Precondition;
 
@@ -86,6 +87,24 @@ public class ChangelogFileWriterTest {
         );
     }
 
+    @Test
+    public void persists_batched_changeset_on_file() throws IOException {
+        Changeset changeset = changeset("identifier", "fbiville", "MATCH (n:SomeNode) WITH n LIMIT $batchSize DELETE n");
+        Batch batch = new Batch();
+        batch.setSize(1000);
+        changeset.setBatch(batch);
+
+        writer.write(singletonList(changeset));
+
+        String fileContents = String.join("\n", Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8));
+        assertThat(fileContents).isEqualTo(
+            "//Liquigraph changeset[author: fbiville, id: identifier]\n" +
+                "//Liquigraph changeset[executionContexts: none declared]\n" +
+                "//Liquigraph changeset[batch: size 1000, repeated until no more changes]\n" +
+                "MATCH (n:SomeNode) WITH n LIMIT $batchSize DELETE n"
+        );
+    }
+
     @Test
     public void persists_several_changesets_on_file() throws IOException {
         Collection<Changeset> changesets = Arrays.asList(
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.liquigraph.core.model.ChangelogFingerprint;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.testing.JdbcAwareGraphDatabase;
+import org.liquigraph.testing.ParameterizedDatabaseIT;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.liquigraph.core.configuration.ExecutionContexts.DEFAULT_CONTEXT;
+
+public class ChangelogFingerprintStoreIT extends ParameterizedDatabaseIT {
+
+    private final ChangelogFingerprintStore store = new ChangelogFingerprintStore();
+
+    public ChangelogFingerprintStoreIT(String description, JdbcAwareGraphDatabase graphDb, String uri) {
+        super(description, graphDb, uri);
+    }
+
+    @Test
+    public void every_changeset_diverges_without_history() {
+        List<Changeset> changesets = asList(changeset("first"), changeset("second"));
+
+        graphDb.rollbackNewConnection(uri, connection -> {
+            ChangelogFingerprint fingerprint = ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT);
+
+            assertThat(store.divergingChangesets(connection, fingerprint)).containsExactlyElementsOf(changesets);
+        });
+    }
+
+    @Test
+    public void no_changeset_diverges_once_fingerprint_is_stored() {
+        List<Changeset> changesets = asList(changeset("first"), changeset("second"));
+        ChangelogFingerprint fingerprint = ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT);
+
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement -> statement.execute("CREATE (:__LiquigraphChangelog)"))
+            .commitNewConnection(uri, connection -> store.store(connection, fingerprint))
+            .rollbackNewConnection(uri, connection -> {
+                assertThat(store.divergingChangesets(connection, fingerprint)).isEmpty();
+            });
+    }
+
+    @Test
+    public void only_changesets_of_changed_chunks_diverge_from_stored_fingerprint() {
+        List<Changeset> changesets = asList(changeset("first"), changeset("second"));
+
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement -> statement.execute("CREATE (:__LiquigraphChangelog)"))
+            .commitNewConnection(uri, connection -> store.store(connection, ChangelogFingerprint.of(changesets.subList(0, 1), DEFAULT_CONTEXT)))
+            .rollbackNewConnection(uri, connection -> {
+                ChangelogFingerprint fingerprint = ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT);
+
+                assertThat(store.divergingChangesets(connection, fingerprint)).containsExactlyElementsOf(changesets);
+            });
+    }
+
+    private static Changeset changeset(String id) {
+        Changeset changeset = new Changeset();
+        changeset.setId(id);
+        changeset.setAuthor("fbiville");
+        changeset.setQueries(singletonList("CREATE (n:" + id + ")"));
+        return changeset;
+    }
+}
@@ -15,12 +15,13 @@
  */
 package org.liquigraph.core.io;
 
+import java.sql.ResultSet;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
 import org.junit.Test;
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChecksumAlgorithms;
 import org.liquigraph.testing.JdbcAwareGraphDatabase;
 import org.liquigraph.testing.ParameterizedDatabaseIT;
 
@@ -28,6 +29,7 @@ import static java.lang.String.format;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.liquigraph.core.model.Checksums.checksum;
 
 public class ChangelogGraphReaderIT extends ParameterizedDatabaseIT {
@@ -98,60 +100,107 @@ public class ChangelogGraphReaderIT extends ParameterizedDatabaseIT {
     }
 
     @Test
-    public void migrates_pre_1_0_rc3_changelog_before_reading() {
-        String[] queries = { "MATCH m RETURN m", "MATCH n RETURN n", "Match o Return o" };
+    public void reconciles_declared_changesets_with_history() {
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement ->
+                statement.execute(format(
+                    "CREATE     (changelog:__LiquigraphChangelog)<-[:EXECUTED_WITHIN_CHANGELOG {time:1}]-" +
+                        "           (upToDate:__LiquigraphChangeset {author:'fbiville', id:'up-to-date', checksum:'%s'}), " +
+                        "           (changelog)<-[:EXECUTED_WITHIN_CHANGELOG {time:2}]-" +
+                        "           (changed:__LiquigraphChangeset {author:'fbiville', id:'changed', checksum:'%s'}), " +
+                        "           (changelog)<-[:EXECUTED_WITHIN_CHANGELOG {time:3}]-" +
+                        "           (always:__LiquigraphChangeset {author:'fbiville', id:'always', checksum:'%s'}), " +
+                        "           (upToDate)<-[:EXECUTED_WITHIN_CHANGESET {order: 0}]-(:__LiquigraphQuery {query: 'MATCH m RETURN m'}), " +
+                        "           (changed)<-[:EXECUTED_WITHIN_CHANGESET {order: 0}]-(:__LiquigraphQuery {query: 'MATCH n RETURN n'}), " +
+                        "           (always)<-[:EXECUTED_WITHIN_CHANGESET {order: 0}]-(:__LiquigraphQuery {query: 'MATCH o RETURN o'})",
+                    checksum(singletonList("MATCH m RETURN m")),
+                    checksum(singletonList("MATCH n RETURN n")),
+                    checksum(singletonList("MATCH o RETURN o"))))
+            )
+            .rollbackNewConnection(uri, connection -> {
+                Changeset upToDate = changeset("up-to-date", "MATCH m RETURN m");
+                Changeset changed = changeset("changed", "MATCH n RETURN n2");
+                Changeset always = changeset("always", "MATCH o RETURN o");
+                always.setRunAlways(true);
+                Changeset newChangeset = changeset("new", "MATCH p RETURN p");
+
+                ChangelogDelta delta = reader.reconcile(connection, asList(upToDate, changed, always, newChangeset));
 
+                assertThat(delta.getPendingChangesets()).containsExactly(changed, always, newChangeset);
+                assertThat(delta.getPersistedChangesets())
+                    .extracting(Changeset::getId, Changeset::getChecksum)
+                    .containsExactly(
+                        tuple("changed", checksum(singletonList("MATCH n RETURN n"))),
+                        tuple("always", checksum(singletonList("MATCH o RETURN o"))));
+            });
+    }
+
+    @Test
+    public void reconciles_declared_changesets_with_history_hashed_with_another_algorithm() {
         graphDb
             .commitNewSingleStatementConnection(uri, statement ->
                 statement.execute(format(
-                "CREATE     (changelog:__LiquigraphChangelog)<-[:EXECUTED_WITHIN_CHANGELOG {order: 1}]-" +
-                "           (:__LiquigraphChangeset {" +
-                "               author:'fbiville'," +
-                "               id:'test1'," +
-                "               checksum:'%s'," +
-                "               query:'%s'" +
-                "           }), " +
-                "           (changelog)<-[:EXECUTED_WITHIN_CHANGELOG {order: 0}]-" +
-                "           (:__LiquigraphChangeset {" +
-                "               author:'fbiville'," +
-                "               id:'test0'," +
-                "               checksum:'%s'," +
-                "               query:'%s'" +
-                "           }), " +
-                "           (changelog)<-[:EXECUTED_WITHIN_CHANGELOG {order: 2}]-" +
-                "           (:__LiquigraphChangeset {" +
-                "               author:'fbiville'," +
-                "               id:'test2'," +
-                "               checksum:'%s'," +
-                "               query:'%s'" +
-                "           })",
-                checksum(singletonList(queries[1])),
-                queries[1],
-                checksum(singletonList(queries[0])),
-                queries[0],
-                checksum(singletonList(queries[2])),
-                queries[2]))
+                    "CREATE     (changelog:__LiquigraphChangelog)<-[:EXECUTED_WITHIN_CHANGELOG {time:1}]-" +
+                        "           (upToDate:__LiquigraphChangeset {author:'fbiville', id:'up-to-date', checksum:'%s', checksumAlgorithm:'sha1'}), " +
+                        "           (changelog)<-[:EXECUTED_WITHIN_CHANGELOG {time:2}]-" +
+                        "           (changed:__LiquigraphChangeset {author:'fbiville', id:'changed', checksum:'%s', checksumAlgorithm:'sha1'}), " +
+                        "           (changelog)<-[:EXECUTED_WITHIN_CHANGELOG {time:3}]-" +
+                        "           (always:__LiquigraphChangeset {author:'fbiville', id:'always', checksum:'%s', checksumAlgorithm:'sha1'}), " +
+                        "           (upToDate)<-[:EXECUTED_WITHIN_CHANGESET {order: 0}]-(:__LiquigraphQuery {query: 'MATCH m RETURN m'}), " +
+                        "           (changed)<-[:EXECUTED_WITHIN_CHANGESET {order: 0}]-(:__LiquigraphQuery {query: 'MATCH n RETURN n'}), " +
+                        "           (always)<-[:EXECUTED_WITHIN_CHANGESET {order: 0}]-(:__LiquigraphQuery {query: 'MATCH o RETURN o'})",
+                    checksum(singletonList("MATCH m RETURN m")),
+                    checksum(singletonList("MATCH n RETURN n")),
+                    checksum(singletonList("MATCH o RETURN o"))))
             )
             .rollbackNewConnection(uri, connection -> {
-                Iterator<Changeset> changesets = reader.read(connection).iterator();
+                Changeset upToDate = changeset("up-to-date", "MATCH m RETURN m");
+                Changeset changed = changeset("changed", "MATCH n RETURN n2");
+                Changeset always = changeset("always", "MATCH o RETURN o");
+                always.setRunAlways(true);
+                for (Changeset changeset : asList(upToDate, changed, always)) {
+                    changeset.setChecksumAlgorithm(ChecksumAlgorithms.SHA_256.getName());
+                }
 
-                Changeset changeset = changesets.next();
-                assertThat(changeset.getId()).isEqualTo("test0");
-                assertThat(changeset.getAuthor()).isEqualTo("fbiville");
-                assertThat(changeset.getChecksum()).isEqualTo(checksum(singletonList(queries[0])));
-                assertThat(changeset.getQueries()).containsExactly(queries[0]);
-                changeset = changesets.next();
-                assertThat(changeset.getId()).isEqualTo("test1");
-                assertThat(changeset.getAuthor()).isEqualTo("fbiville");
-                assertThat(changeset.getChecksum()).isEqualTo(checksum(singletonList(queries[1])));
-                assertThat(changeset.getQueries()).containsExactly(queries[1]);
-                changeset = changesets.next();
-                assertThat(changeset.getId()).isEqualTo("test2");
-                assertThat(changeset.getAuthor()).isEqualTo("fbiville");
-                assertThat(changeset.getChecksum()).isEqualTo(checksum(singletonList(queries[2])));
-                assertThat(changeset.getQueries()).containsExactly(queries[2]);
-                assertThat(changesets.hasNext()).as("Result iterator is exhausted").isFalse();
+                ChangelogDelta delta = reader.reconcile(connection, asList(upToDate, changed, always));
+
+                assertThat(delta.getPendingChangesets()).containsExactly(changed, always);
+                assertThat(delta.getPersistedChangesets())
+                    .extracting(Changeset::getId, Changeset::getChecksum)
+                    .containsExactly(
+                        tuple("changed", checksum(singletonList("MATCH n RETURN n"))),
+                        tuple("always", always.getChecksum()));
+            });
+    }
+
+    @Test
+    public void does_not_migrate_pre_1_0_rc3_changelog() {
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement ->
+                statement.execute(
+                    "CREATE (:__LiquigraphChangelog)<-[:EXECUTED_WITHIN_CHANGELOG {order: 0}]-" +
+                        "(:__LiquigraphChangeset {author:'fbiville', id:'test', checksum:'checksum', query:'MATCH n RETURN n'})")
+            )
+            .rollbackNewConnection(uri, connection -> {
+                assertThat(reader.read(connection)).isEmpty();
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                    "MATCH (:__LiquigraphChangelog)<-[exec:EXECUTED_WITHIN_CHANGELOG]-(changeset:__LiquigraphChangeset) " +
+                        "RETURN exec.`order` AS order, changeset.query AS query")) {
+
+                    assertThat(resultSet.next()).as("Result set should contain 1 row").isTrue();
+                    assertThat(resultSet.getLong("order")).isEqualTo(0L);
+                    assertThat(resultSet.getString("query")).isEqualTo("MATCH n RETURN n");
+                }
             });
     }
 
+    private static Changeset changeset(String id, String query) {
+        Changeset changeset = new Changeset();
+        changeset.setId(id);
+        changeset.setAuthor("fbiville");
+        changeset.setQueries(singletonList(query));
+        return changeset;
+    }
 }
@@ -17,11 +17,17 @@ package org.liquigraph.core.io;
 
 import java.sql.ResultSet;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
 import org.junit.Test;
 import org.liquigraph.core.exception.PreconditionNotMetException;
+import org.liquigraph.core.model.Batch;
 import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+import org.liquigraph.core.model.Parameters;
 import org.liquigraph.core.model.Postcondition;
 import org.liquigraph.core.model.Precondition;
 import org.liquigraph.core.model.PreconditionErrorPolicy;
@@ -29,8 +35,10 @@ import org.liquigraph.core.model.SimpleQuery;
 import org.liquigraph.testing.JdbcAwareGraphDatabase;
 import org.liquigraph.testing.ParameterizedDatabaseIT;
 
+import static java.lang.String.format;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.liquigraph.core.model.Checksums.checksum;
@@ -212,6 +220,271 @@ public class ChangelogGraphWriterIT extends ParameterizedDatabaseIT {
             });
     }
 
+    @Test
+    public void persists_all_queries_of_changeset_in_declaration_order() {
+        List<String> queries = IntStream.range(0, 500)
+            .mapToObj(i -> format("CREATE (:Seed {index: %d})", i))
+            .collect(toList());
+        graphDb
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                graphDb.asConnectionSupplier(uri),
+                new ConditionExecutor());
+
+                writer.write(singletonList(changeset("seed", "fbiville", queries)));
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (:__LiquigraphChangeset {id: 'seed'})<-[execution:EXECUTED_WITHIN_CHANGESET]-(query:__LiquigraphQuery) " +
+                     "WITH execution.`order` AS query_order, query.query AS query " +
+                     "ORDER BY query_order ASC " +
+                     "RETURN collect(query_order) AS orders, collect(query) AS queries")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat((Collection<Long>) resultSet.getObject("orders"))
+                        .containsExactlyElementsOf(LongStream.range(0, 500).boxed().collect(toList()));
+                    assertThat((Collection<String>) resultSet.getObject("queries")).containsExactlyElementsOf(queries);
+                    assertThat(resultSet.next()).as("No more result in result set").isFalse();
+                }
+            });
+    }
+
+    @Test
+    public void persists_atomic_changeset_queries_and_history_together() {
+        graphDb
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                graphDb.asConnectionSupplier(uri),
+                new ConditionExecutor(),
+                true);
+
+                writer.write(singletonList(changeset("id", "fbiville", asList("CREATE (n:Human) RETURN n", "MATCH (n:Human) SET n.age = 42 RETURN n"))));
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery("MATCH (n:Human) RETURN n.age AS age")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat(resultSet.getLong("age")).isEqualTo(42);
+                    assertThat(resultSet.next()).as("No more result in result set").isFalse();
+                }
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (:__LiquigraphChangelog)<-[:EXECUTED_WITHIN_CHANGELOG]-(changeset:__LiquigraphChangeset {id: 'id'}) " +
+                     "RETURN changeset.author AS author")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat(resultSet.getString("author")).isEqualTo("fbiville");
+                    assertThat(resultSet.next()).as("No more result in result set").isFalse();
+                }
+            });
+    }
+
+    @Test
+    public void neither_applies_nor_records_failing_atomic_changeset() {
+        graphDb
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                graphDb.asConnectionSupplier(uri),
+                new ConditionExecutor(),
+                true);
+
+                assertThatThrownBy(() -> writer.write(singletonList(changeset("id", "fbiville", asList("CREATE (n:Human) RETURN n", "toto")))))
+                    .isInstanceOf(RuntimeException.class);
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "OPTIONAL MATCH (human:Human) " +
+                     "OPTIONAL MATCH (changeset:__LiquigraphChangeset) " +
+                     "RETURN count(human) AS humans, count(changeset) AS changesets")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat(resultSet.getLong("humans")).isZero();
+                    assertThat(resultSet.getLong("changesets")).isZero();
+                }
+            });
+    }
+
+    @Test
+    public void executes_independent_changesets_concurrently() {
+        List<Changeset> changesets = IntStream.range(0, 8)
+            .mapToObj(i -> dependentChangeset("tenant-" + i, "", format("CREATE (:Tenant {index: %d})", i)))
+            .collect(toList());
+        changesets.add(dependentChangeset("report", null, "MATCH (t:Tenant) SET t.reported = true"));
+        graphDb
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                graphDb.asConnectionSupplier(uri),
+                new ConditionExecutor(),
+                false,
+                4);
+
+                writer.write(changesets);
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (t:Tenant) WHERE t.reported " +
+                     "RETURN count(t) AS tenants")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat(resultSet.getLong("tenants")).isEqualTo(8);
+                }
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (changelog:__LiquigraphChangelog)<-[:EXECUTED_WITHIN_CHANGELOG]-(changeset:__LiquigraphChangeset) " +
+                     "RETURN count(DISTINCT changelog) AS changelogs, count(changeset) AS changesets")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat(resultSet.getLong("changelogs")).isEqualTo(1);
+                    assertThat(resultSet.getLong("changesets")).isEqualTo(9);
+                }
+            });
+    }
+
+    @Test
+    public void records_executed_concurrent_changesets_before_rethrowing_failure() {
+        List<Changeset> changesets = asList(
+            dependentChangeset("broken", "", "toto"),
+            dependentChangeset("working", "", "CREATE (:Tenant)"),
+            dependentChangeset("dependent", "broken", "CREATE (:Dependent)")
+        );
+        graphDb
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                graphDb.asConnectionSupplier(uri),
+                new ConditionExecutor(),
+                false,
+                2);
+
+                assertThatThrownBy(() -> writer.write(changesets))
+                    .isInstanceOf(RuntimeException.class);
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "OPTIONAL MATCH (dependent:Dependent) " +
+                     "WITH count(dependent) AS dependents " +
+                     "MATCH (changeset:__LiquigraphChangeset) " +
+                     "RETURN dependents, collect(changeset.id) AS changesets")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat(resultSet.getLong("dependents")).isZero();
+                    assertThat((Collection<String>) resultSet.getObject("changesets")).containsExactly("working");
+                }
+            });
+    }
+
+    @Test
+    public void executes_batched_changeset_until_nothing_is_affected() {
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement -> {
+                statement.execute("UNWIND range(1, 95) AS i CREATE (:Person {index: i})");
+            })
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                graphDb.asConnectionSupplier(uri),
+                new ConditionExecutor());
+                Changeset changeset = changeset("backfill", "fbiville",
+                "MATCH (p:Person) WHERE p.migrated IS NULL WITH p LIMIT $batchSize SET p.migrated = true RETURN count(*) AS affected");
+                Batch batch = new Batch();
+                batch.setSize(10);
+                changeset.setBatch(batch);
+
+                writer.write(singletonList(changeset));
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (p:Person) " +
+                     "RETURN count(p) AS persons, count(p.migrated) AS migrated")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat(resultSet.getLong("persons")).isEqualTo(95);
+                    assertThat(resultSet.getLong("migrated")).isEqualTo(95);
+                }
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (changeset:__LiquigraphChangeset {id: 'backfill'}) RETURN count(changeset) AS changesets")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat(resultSet.getLong("changesets")).isEqualTo(1);
+                }
+            });
+    }
+
+    @Test
+    public void executes_parameterized_changeset_in_batches() {
+        graphDb
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                graphDb.asConnectionSupplier(uri),
+                new ConditionExecutor());
+                Changeset changeset = changeset("seed", "fbiville", "UNWIND $rows AS row CREATE (:Person {name: row.name, age: row.age})");
+                Parameters parameters = new Parameters();
+                parameters.setBatchSize(2);
+                parameters.setContent("[{\"name\": \"a\", \"age\": 1}, {\"name\": \"b\", \"age\": 2}, {\"name\": \"c\", \"age\": 3}]");
+                changeset.setParameters(parameters);
+
+                writer.write(singletonList(changeset));
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (p:Person) WITH p ORDER BY p.name " +
+                     "RETURN collect(p.name) AS names, sum(p.age) AS ages")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat((Collection<String>) resultSet.getObject("names")).containsExactly("a", "b", "c");
+                    assertThat(resultSet.getLong("ages")).isEqualTo(6);
+                }
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (:__LiquigraphChangeset {id: 'seed'})<-[:EXECUTED_WITHIN_CHANGESET]-(query:__LiquigraphQuery) " +
+                     "RETURN collect(query.query) AS queries")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat((Collection<String>) resultSet.getObject("queries"))
+                        .containsExactly("UNWIND $rows AS row CREATE (:Person {name: row.name, age: row.age})");
+                }
+            });
+    }
+
+    @Test
+    public void executes_query_file_statements_and_stores_file_reference() {
+        graphDb
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                graphDb.asConnectionSupplier(uri),
+                new ConditionExecutor());
+                Changeset changeset = changeset("seed", "fbiville", "CREATE (:City {name: 'Paris'})");
+                ChangesetQuery fileQuery = new ChangesetQuery();
+                fileQuery.setFile("changelog/queries/seed.cypher");
+                changeset.setDeclaredQueries(asList(changeset.getDeclaredQueries().get(0), fileQuery));
+
+                writer.write(singletonList(changeset));
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (n) WHERE n:City OR n:Person OR n:`Per;son` WITH n ORDER BY n.name " +
+                     "RETURN collect(n.name) AS names")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat((Collection<String>) resultSet.getObject("names")).containsExactly("Paris", "fbiville", "mgazanayi");
+                }
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                     "MATCH (:__LiquigraphChangeset {id: 'seed'})<-[execution:EXECUTED_WITHIN_CHANGESET]-(query:__LiquigraphQuery) " +
+                     "WITH query ORDER BY execution.`order` " +
+                     "RETURN collect(query.query) AS queries, collect(query.file) AS files")) {
+
+                    assertThat(resultSet.next()).isTrue();
+                    assertThat((Collection<String>) resultSet.getObject("queries")).containsExactly("CREATE (:City {name: 'Paris'})");
+                    assertThat((Collection<String>) resultSet.getObject("files")).containsExactly("changelog/queries/seed.cypher");
+                }
+            });
+    }
+
     @Test
     public void persists_run_always_changesets_in_graph_only_once() {
         graphDb
@@ -365,6 +638,12 @@ public class ChangelogGraphWriterIT extends ParameterizedDatabaseIT {
         return changeset;
     }
 
+    private Changeset dependentChangeset(String identifier, String dependsOn, String query) {
+        Changeset changeset = changeset(identifier, "fbiville", query);
+        changeset.setDependsOn(dependsOn);
+        return changeset;
+    }
+
     private static Object property(Object changeset, String name) {
         return ((Map<String, Object>) changeset).get(name);
     }
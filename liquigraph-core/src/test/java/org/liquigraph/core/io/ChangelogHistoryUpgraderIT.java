@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.testing.JdbcAwareGraphDatabase;
+import org.liquigraph.testing.ParameterizedDatabaseIT;
+
+import static java.lang.String.format;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.liquigraph.core.model.Checksums.checksum;
+
+public class ChangelogHistoryUpgraderIT extends ParameterizedDatabaseIT {
+
+    private final ChangelogHistoryUpgrader upgrader = new ChangelogHistoryUpgrader();
+
+    private final ChangelogGraphReader reader = new ChangelogGraphReader();
+
+    public ChangelogHistoryUpgraderIT(String description, JdbcAwareGraphDatabase graphDb, String uri) {
+        super(description, graphDb, uri);
+    }
+
+    @Test
+    public void migrates_pre_1_0_rc3_changelog() {
+        String[] queries = { "MATCH m RETURN m", "MATCH n RETURN n", "Match o Return o" };
+
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement ->
+                statement.execute(format(
+                "CREATE     (changelog:__LiquigraphChangelog)<-[:EXECUTED_WITHIN_CHANGELOG {order: 1}]-" +
+                "           (:__LiquigraphChangeset {" +
+                "               author:'fbiville'," +
+                "               id:'test1'," +
+                "               checksum:'%s'," +
+                "               query:'%s'" +
+                "           }), " +
+                "           (changelog)<-[:EXECUTED_WITHIN_CHANGELOG {order: 0}]-" +
+                "           (:__LiquigraphChangeset {" +
+                "               author:'fbiville'," +
+                "               id:'test0'," +
+                "               checksum:'%s'," +
+                "               query:'%s'" +
+                "           }), " +
+                "           (changelog)<-[:EXECUTED_WITHIN_CHANGELOG {order: 2}]-" +
+                "           (:__LiquigraphChangeset {" +
+                "               author:'fbiville'," +
+                "               id:'test2'," +
+                "               checksum:'%s'," +
+                "               query:'%s'" +
+                "           })",
+                checksum(singletonList(queries[1])),
+                queries[1],
+                checksum(singletonList(queries[0])),
+                queries[0],
+                checksum(singletonList(queries[2])),
+                queries[2]))
+            )
+            .rollbackNewConnection(uri, connection -> {
+                upgrader.upgrade(connection);
+                Iterator<Changeset> changesets = reader.read(connection).iterator();
+
+                Changeset changeset = changesets.next();
+                assertThat(changeset.getId()).isEqualTo("test0");
+                assertThat(changeset.getAuthor()).isEqualTo("fbiville");
+                assertThat(changeset.getChecksum()).isEqualTo(checksum(singletonList(queries[0])));
+                assertThat(changeset.getQueries()).containsExactly(queries[0]);
+                changeset = changesets.next();
+                assertThat(changeset.getId()).isEqualTo("test1");
+                assertThat(changeset.getAuthor()).isEqualTo("fbiville");
+                assertThat(changeset.getChecksum()).isEqualTo(checksum(singletonList(queries[1])));
+                assertThat(changeset.getQueries()).containsExactly(queries[1]);
+                changeset = changesets.next();
+                assertThat(changeset.getId()).isEqualTo("test2");
+                assertThat(changeset.getAuthor()).isEqualTo("fbiville");
+                assertThat(changeset.getChecksum()).isEqualTo(checksum(singletonList(queries[2])));
+                assertThat(changeset.getQueries()).containsExactly(queries[2]);
+                assertThat(changesets.hasNext()).as("Result iterator is exhausted").isFalse();
+            });
+    }
+
+    @Test
+    public void records_sha1_as_checksum_algorithm_of_previously_executed_changesets() {
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement ->
+                statement.execute(format(
+                    "CREATE (:__LiquigraphChangelog {formatVersion: 1})<-[:EXECUTED_WITHIN_CHANGELOG {time: 0}]-" +
+                        "(changeset:__LiquigraphChangeset {author:'fbiville', id:'test', checksum:'%s'}), " +
+                        "(changeset)<-[:EXECUTED_WITHIN_CHANGESET {order: 0}]-(:__LiquigraphQuery {query: 'MATCH n RETURN n'})",
+                    checksum(singletonList("MATCH n RETURN n"))))
+            )
+            .rollbackNewConnection(uri, connection -> {
+                upgrader.upgrade(connection);
+                Changeset changeset = reader.read(connection).iterator().next();
+
+                assertThat(changeset.getChecksumAlgorithm()).isEqualTo("sha1");
+                assertThat(changeset.getChecksum()).isEqualTo(checksum(singletonList("MATCH n RETURN n")));
+            });
+    }
+
+    @Test
+    public void stamps_upgraded_history_with_current_format_version() {
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement ->
+                statement.execute("CREATE (:__LiquigraphChangelog)")
+            )
+            .rollbackNewConnection(uri, upgrader::upgrade)
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                assertThat(formatVersion(statement)).isEqualTo(ChangelogHistoryUpgrader.CURRENT_FORMAT_VERSION);
+            });
+    }
+
+    @Test
+    public void indexes_changesets_of_existing_history() {
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement ->
+                statement.execute("CREATE (:__LiquigraphChangelog {formatVersion: 2})")
+            )
+            .rollbackNewConnection(uri, upgrader::upgrade)
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                assertThat(changesetIndexExists(statement)).isTrue();
+                assertThat(formatVersion(statement)).isEqualTo(3);
+            });
+    }
+
+    @Test
+    public void indexes_changesets_before_any_history_is_written() {
+        graphDb
+            .rollbackNewConnection(uri, upgrader::upgrade)
+            .rollbackNewConnection(uri, upgrader::upgrade)
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                assertThat(changesetIndexExists(statement)).isTrue();
+            });
+    }
+
+    @Test
+    public void only_upgrades_history_up_to_the_given_format_version() {
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement ->
+                statement.execute("CREATE (:__LiquigraphChangelog)")
+            )
+            .rollbackNewConnection(uri, connection -> upgrader.upgrade(connection, ChangelogHistoryUpgrader.READABLE_FORMAT_VERSION))
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                assertThat(formatVersion(statement)).isEqualTo(ChangelogHistoryUpgrader.READABLE_FORMAT_VERSION);
+                assertThat(changesetIndexExists(statement)).isFalse();
+            });
+    }
+
+    @Test
+    public void skips_upgrades_already_applied() {
+        graphDb
+            .commitNewSingleStatementConnection(uri, statement ->
+                statement.execute(format(
+                    "CREATE (:__LiquigraphChangelog {formatVersion: %d})<-[:EXECUTED_WITHIN_CHANGELOG {order: 0}]-" +
+                        "(:__LiquigraphChangeset {author:'fbiville', id:'test', checksum:'checksum', query:'MATCH n RETURN n'})",
+                    ChangelogHistoryUpgrader.CURRENT_FORMAT_VERSION))
+            )
+            .rollbackNewConnection(uri, upgrader::upgrade)
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                try (ResultSet resultSet = statement.executeQuery(
+                    "MATCH (changeset:__LiquigraphChangeset) RETURN changeset.query AS query")) {
+
+                    assertThat(resultSet.next()).as("Result set should contain 1 row").isTrue();
+                    assertThat(resultSet.getString("query")).isEqualTo("MATCH n RETURN n");
+                }
+            });
+    }
+
+    @Test
+    public void new_history_is_written_with_current_format_version() {
+        graphDb
+            .commitNewConnection(uri, connection -> {
+                ChangelogGraphWriter writer = new ChangelogGraphWriter(
+                    graphDb.asConnectionSupplier(uri),
+                    new ConditionExecutor());
+
+                Changeset changeset = new Changeset();
+                changeset.setId("identifier");
+                changeset.setAuthor("fbiville");
+                changeset.setQueries(singletonList("CREATE (n: SomeNode)"));
+                writer.write(singletonList(changeset));
+            })
+            .rollbackNewSingleStatementConnection(uri, statement -> {
+                assertThat(formatVersion(statement)).isEqualTo(ChangelogHistoryUpgrader.CURRENT_FORMAT_VERSION);
+            });
+    }
+
+    private static boolean changesetIndexExists(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(
+            "CALL db.indexes() YIELD labelsOrTypes, properties " +
+            "WHERE labelsOrTypes = ['__LiquigraphChangeset'] AND properties = ['id', 'author'] " +
+            "RETURN count(*) AS indexes")) {
+
+            assertThat(resultSet.next()).as("Result set should contain 1 row").isTrue();
+            return resultSet.getLong("indexes") == 1;
+        }
+    }
+
+    private static long formatVersion(Statement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(
+            "MATCH (changelog:__LiquigraphChangelog) RETURN changelog.formatVersion AS version")) {
+
+            assertThat(resultSet.next()).as("Result set should contain 1 row").isTrue();
+            return resultSet.getLong("version");
+        }
+    }
+}
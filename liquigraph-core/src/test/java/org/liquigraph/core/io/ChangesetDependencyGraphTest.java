@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.junit.Test;
+import org.liquigraph.core.model.Changeset;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ChangesetDependencyGraphTest {
+
+    @Test
+    public void chains_changesets_without_declared_dependencies() {
+        ChangesetDependencyGraph graph = ChangesetDependencyGraph.of(asList(
+            changeset("first", null),
+            changeset("second", null),
+            changeset("third", null)
+        ));
+
+        assertThat(graph.size()).isEqualTo(3);
+        assertThat(graph.predecessorsOf(0)).isEmpty();
+        assertThat(graph.predecessorsOf(1)).containsExactly(0);
+        assertThat(graph.predecessorsOf(2)).containsExactly(1);
+    }
+
+    @Test
+    public void only_depends_on_declared_dependencies() {
+        ChangesetDependencyGraph graph = ChangesetDependencyGraph.of(asList(
+            changeset("schema", null),
+            changeset("tenant-1", "schema"),
+            changeset("tenant-2", "schema"),
+            changeset("tenant-3", "")
+        ));
+
+        assertThat(graph.predecessorsOf(1)).containsExactly(0);
+        assertThat(graph.predecessorsOf(2)).containsExactly(0);
+        assertThat(graph.predecessorsOf(3)).isEmpty();
+    }
+
+    @Test
+    public void waits_for_all_previous_changesets_when_not_declaring_dependencies() {
+        ChangesetDependencyGraph graph = ChangesetDependencyGraph.of(asList(
+            changeset("tenant-1", ""),
+            changeset("tenant-2", ""),
+            changeset("tenant-3", "tenant-1"),
+            changeset("cleanup", null)
+        ));
+
+        assertThat(graph.predecessorsOf(3)).containsExactly(1, 2);
+    }
+
+    @Test
+    public void ignores_dependencies_on_changesets_outside_of_the_graph() {
+        ChangesetDependencyGraph graph = ChangesetDependencyGraph.of(asList(
+            changeset("first", "already-executed"),
+            changeset("second", "first, already-executed")
+        ));
+
+        assertThat(graph.predecessorsOf(0)).isEmpty();
+        assertThat(graph.predecessorsOf(1)).containsExactly(0);
+    }
+
+    @Test
+    public void fails_on_dependencies_declared_later() {
+        List<Changeset> changesets = asList(
+            changeset("first", "second"),
+            changeset("second", "")
+        );
+
+        assertThatThrownBy(() -> ChangesetDependencyGraph.of(changesets))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Changeset id=<first>, author=<fbiville> depends on changeset id=<second>, which must be declared first");
+    }
+
+    @Test
+    public void fails_on_unknown_dependencies() {
+        List<Changeset> changesets = asList(
+            changeset("seed-tenants", ""),
+            changeset("index-tenants", "seed-tenant")
+        );
+
+        assertThatThrownBy(() -> ChangesetDependencyGraph.checkDependencies(changesets))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Changeset id=<index-tenants>, author=<fbiville> depends on unknown changeset id=<seed-tenant>");
+    }
+
+    @Test
+    public void checks_dependencies_declared_later_against_the_whole_changelog() {
+        List<Changeset> changesets = asList(
+            changeset("first", "second"),
+            changeset("second", "")
+        );
+
+        assertThatThrownBy(() -> ChangesetDependencyGraph.checkDependencies(changesets))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Changeset id=<first>, author=<fbiville> depends on changeset id=<second>, which must be declared first");
+    }
+
+    @Test
+    public void accepts_dependencies_on_declared_changesets() {
+        ChangesetDependencyGraph.checkDependencies(asList(
+            changeset("schema", null),
+            changeset("tenant-1", "schema"),
+            changeset("tenant-2", "schema, tenant-1")
+        ));
+    }
+
+    private static Changeset changeset(String id, String dependsOn) {
+        Changeset changeset = new Changeset();
+        changeset.setId(id);
+        changeset.setAuthor("fbiville");
+        changeset.setQueries(asList("RETURN 1"));
+        changeset.setDependsOn(dependsOn);
+        return changeset;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.liquigraph.core.io;
 
+import java.sql.Statement;
 import java.util.Arrays;
 import java.util.List;
 
@@ -70,6 +71,26 @@ public class ConditionExecutorIT extends ParameterizedDatabaseIT {
             assertThat(executor.executeCondition(connection, precondition(andQuery))).isTrue());
     }
 
+    @Test
+    public void executes_compound_precondition_with_data_dependent_queries() {
+        graphDb.rollbackNewConnection(uri, connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE (:Person {name: 'fbiville'})");
+            }
+            assertThat(executor.executeCondition(connection, andPrecondition(
+                "MATCH (p:Person) RETURN count(p) = 1 AS result",
+                "OPTIONAL MATCH (p:Person {name: 'mgazanayi'}) RETURN p IS NULL AS result"))).isTrue();
+        });
+    }
+
+    @Test
+    public void falls_back_to_query_by_query_evaluation_when_compiled_precondition_fails() {
+        graphDb.rollbackNewConnection(uri, connection ->
+            assertThat(executor.executeCondition(connection, orPrecondition(
+                "RETURN true AS result",
+                "CALL db.labels()"))).isTrue());
+    }
+
     @Test
     public void fails_with_invalid_cypher_query() {
         assertThatThrownBy(() ->
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.junit.Test;
+import org.liquigraph.core.model.AndQuery;
+import org.liquigraph.core.model.OrQuery;
+import org.liquigraph.core.model.Precondition;
+import org.liquigraph.core.model.PreconditionErrorPolicy;
+import org.liquigraph.core.model.Query;
+import org.liquigraph.core.model.SimpleQuery;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConditionExecutorTest {
+
+    private final Connection connection = mock(Connection.class);
+    private final Statement statement = mock(Statement.class);
+
+    @Test
+    public void compiles_compound_condition_into_single_statement() {
+        AndQuery query = and(or(simple("RETURN false AS result"), simple("RETURN true AS result;")), simple("MATCH (n) RETURN count(n) > 0 AS result"));
+
+        assertThat(ConditionExecutor.compile(query)).isEqualTo(
+            "CALL { RETURN false AS result } WITH result AS __liquigraph_condition_0 LIMIT 1 " +
+            "CALL { RETURN true AS result } WITH __liquigraph_condition_0, result AS __liquigraph_condition_1 LIMIT 1 " +
+            "CALL { MATCH (n) RETURN count(n) > 0 AS result } WITH __liquigraph_condition_0, __liquigraph_condition_1, result AS __liquigraph_condition_2 LIMIT 1 " +
+            "RETURN ((((__liquigraph_condition_0) OR (__liquigraph_condition_1))) AND (__liquigraph_condition_2)) AS result"
+        );
+    }
+
+    @Test
+    public void executes_compound_condition_in_a_single_round_trip() throws SQLException {
+        AndQuery query = and(simple("RETURN true AS result"), simple("RETURN false AS result"));
+        ResultSet resultSet = resultSet(false);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(ConditionExecutor.compile(query))).thenReturn(resultSet);
+
+        boolean result = new ConditionExecutor().executeCondition(connection, precondition(query));
+
+        assertThat(result).isFalse();
+        verify(statement).executeQuery(anyString());
+        verify(connection, never()).rollback();
+    }
+
+    @Test
+    public void falls_back_to_short_circuit_evaluation_when_compiled_condition_fails() throws SQLException {
+        OrQuery query = or(simple("CALL db.ping() YIELD success RETURN success AS result"), simple("RETURN false AS result"));
+        ResultSet firstResult = resultSet(true);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(ConditionExecutor.compile(query))).thenThrow(new SQLException("subqueries are not supported"));
+        when(statement.executeQuery("CALL db.ping() YIELD success RETURN success AS result")).thenReturn(firstResult);
+
+        boolean result = new ConditionExecutor().executeCondition(connection, precondition(query));
+
+        assertThat(result).isTrue();
+        verify(connection).rollback();
+        verify(statement, never()).executeQuery("RETURN false AS result");
+    }
+
+    @Test
+    public void executes_simple_condition_as_is() throws SQLException {
+        ResultSet resultSet = resultSet(true);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery("RETURN true AS result")).thenReturn(resultSet);
+
+        boolean result = new ConditionExecutor().executeCondition(connection, precondition(simple("RETURN true AS result")));
+
+        assertThat(result).isTrue();
+    }
+
+    private static ResultSet resultSet(boolean result) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getBoolean("result")).thenReturn(result);
+        return resultSet;
+    }
+
+    private static Precondition precondition(Query query) {
+        Precondition precondition = new Precondition();
+        precondition.setPolicy(PreconditionErrorPolicy.FAIL);
+        precondition.setQuery(query);
+        return precondition;
+    }
+
+    private static AndQuery and(Query first, Query second) {
+        AndQuery query = new AndQuery();
+        query.setQueries(asList(first, second));
+        return query;
+    }
+
+    private static OrQuery or(Query first, Query second) {
+        OrQuery query = new OrQuery();
+        query.setQueries(asList(first, second));
+        return query;
+    }
+
+    private static SimpleQuery simple(String cypher) {
+        SimpleQuery query = new SimpleQuery();
+        query.setQuery(cypher);
+        return query;
+    }
+}
@@ -34,16 +34,15 @@ public class GraphJdbcConnectorIT extends ParameterizedDatabaseIT {
 
     @Test
     public void locks_connection_to_database() throws SQLException {
-        GraphJdbcConnector connector = new GraphJdbcConnector(new ConfigurationBuilder()
-            .withRunMode()
-            .withMasterChangelogLocation("changelog/changelog.xml")
-            .withUri(uri)
-            .withUsername(graphDb.username().orElse(null))
-            .withPassword(graphDb.password().orElse(null))
-            .build()
-        );
-
-        try (Connection connection = connector.connect()) {
+        try (GraphJdbcConnector connector = new GraphJdbcConnector(new ConfigurationBuilder()
+                .withRunMode()
+                .withMasterChangelogLocation("changelog/changelog.xml")
+                .withUri(uri)
+                .withUsername(graphDb.username().orElse(null))
+                .withPassword(graphDb.password().orElse(null))
+                .build());
+             Connection connection = connector.connect()) {
+
             assertThat(connection).isInstanceOf(LockableConnection.class);
         }
     }
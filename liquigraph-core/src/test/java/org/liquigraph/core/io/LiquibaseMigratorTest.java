@@ -18,6 +18,7 @@ package org.liquigraph.core.io;
 import liquibase.change.core.RawSQLChange;
 import liquibase.changelog.ChangeSet;
 import liquibase.ext.neo4j.changelog.Neo4jChangelogHistoryService;
+import liquibase.ext.neo4j.database.Neo4jDatabase;
 import liquibase.precondition.core.AndPrecondition;
 import liquibase.precondition.core.OrPrecondition;
 import liquibase.precondition.core.PreconditionContainer;
@@ -38,6 +39,10 @@ import org.liquigraph.core.model.Query;
 import org.liquigraph.core.model.SimpleQuery;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Collections;
 import java.util.List;
 
@@ -48,8 +53,10 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.liquigraph.core.io.LiquibaseChangeSetsMatcher.matchesChangeSets;
 import static org.liquigraph.core.model.PreconditionErrorPolicy.MARK_AS_EXECUTED;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -59,13 +66,15 @@ public class LiquibaseMigratorTest {
 
     private final ChangeLogSerializer fileWriter = mock(ChangeLogSerializer.class);
 
+    private final ChangelogHistoryUpgrader historyUpgrader = mock(ChangelogHistoryUpgrader.class);
+
     private final ChangelogGraphReader graphReader = mock(ChangelogGraphReader.class);
 
     private final Neo4jChangelogHistoryService graphWriter = mock(Neo4jChangelogHistoryService.class);
 
     private final ChangelogLoader loader = mock(ChangelogLoader.class);
 
-    private final LiquibaseMigrator migrator = new LiquibaseMigrator(parser, graphReader, fileWriter, graphWriter);
+    private final LiquibaseMigrator migrator = new LiquibaseMigrator(parser, historyUpgrader, graphReader, fileWriter, graphWriter);
 
     @Rule
     public TemporaryFolder folder = TemporaryFolder.builder().build();
@@ -198,6 +207,20 @@ public class LiquibaseMigratorTest {
                 "Aborting migration now.");
     }
 
+    @Test
+    public void only_upgrades_history_to_readable_format_when_migrating_it() throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(mock(ResultSet.class)); // empty history
+        when(graphWriter.getDatabase()).thenReturn(mock(Neo4jDatabase.class));
+
+        migrator.migratePersistedChangeSets(() -> connection, "changelog.xml", true);
+
+        verify(historyUpgrader).upgrade(connection, ChangelogHistoryUpgrader.READABLE_FORMAT_VERSION);
+        verify(historyUpgrader, never()).upgrade(connection);
+    }
+
     private ChangeSet changeSet(String path, String id, String author, boolean alwaysRun, boolean runOnChange, String contexts, String... queries) {
         ChangeSet changeSet = new ChangeSet(id, author, alwaysRun, runOnChange, path, contexts, null, null);
         stream(queries).map(RawSQLChange::new).forEach(changeSet::addChange);
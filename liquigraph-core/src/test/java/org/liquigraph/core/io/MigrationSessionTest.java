@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+public class MigrationSessionTest {
+
+    private final Supplier<Connection> connectionSupplier = mock(Supplier.class);
+    private final Connection connection = mock(Connection.class);
+
+    @Test
+    public void opens_a_single_connection_for_the_whole_session() throws SQLException {
+        when(connectionSupplier.get()).thenReturn(connection);
+
+        try (MigrationSession session = new MigrationSession(connectionSupplier)) {
+            for (int i = 0; i < 3; i++) {
+                try (Connection sessionConnection = session.get()) {
+                    sessionConnection.commit();
+                }
+            }
+        }
+
+        verify(connectionSupplier).get();
+        verify(connection, times(3)).commit();
+        verify(connection).close();
+    }
+
+    @Test
+    public void rolls_back_instead_of_closing_handed_out_connections() throws SQLException {
+        when(connectionSupplier.get()).thenReturn(connection);
+        MigrationSession session = new MigrationSession(connectionSupplier);
+
+        session.get().close();
+
+        verify(connection).rollback();
+        verify(connection, never()).close();
+    }
+
+    @Test
+    public void does_not_open_any_connection_when_unused() {
+        new MigrationSession(connectionSupplier).close();
+
+        verifyNoInteractions(connectionSupplier);
+    }
+
+    @Test
+    public void opens_a_new_connection_after_being_closed() throws SQLException {
+        Connection secondConnection = mock(Connection.class);
+        when(connectionSupplier.get()).thenReturn(connection, secondConnection);
+        MigrationSession session = new MigrationSession(connectionSupplier);
+        session.get();
+        session.close();
+
+        session.get().commit();
+
+        verify(connection).close();
+        verify(secondConnection).commit();
+    }
+
+    @Test
+    public void opens_one_connection_per_thread() throws Exception {
+        Connection workerConnection = mock(Connection.class);
+        when(connectionSupplier.get()).thenReturn(connection, workerConnection);
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try (MigrationSession session = new MigrationSession(connectionSupplier)) {
+            session.get().commit();
+            CompletableFuture.runAsync(() -> commit(session.get()), worker).get();
+            CompletableFuture.runAsync(() -> commit(session.get()), worker).get();
+        } finally {
+            worker.shutdown();
+        }
+
+        verify(connectionSupplier, times(2)).get();
+        verify(connection).commit();
+        verify(workerConnection, times(2)).commit();
+        verify(connection).close();
+        verify(workerConnection).close();
+    }
+
+    private static void commit(Connection connection) {
+        try {
+            connection.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
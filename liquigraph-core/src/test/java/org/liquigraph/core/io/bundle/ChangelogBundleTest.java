@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.bundle;
+
+import org.junit.Test;
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ClassLoaderChangelogLoader;
+import org.liquigraph.core.io.xml.StreamingChangelogXmlParser;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChecksumAlgorithms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ChangelogBundleTest {
+
+    private final ChangelogLoader changelogLoader = ClassLoaderChangelogLoader.currentThreadContextClassLoader();
+
+    private final StreamingChangelogXmlParser xmlParser = new StreamingChangelogXmlParser();
+
+    private final ChangelogBundleParser bundleParser = new ChangelogBundleParser();
+
+    @Test
+    public void loads_bundled_changesets_as_parsed() throws IOException {
+        String[] changelogs = {
+            "changelog/changelog-of-changelogs.xml",
+            "changelog/changelog-with-execution-contexts.xml",
+            "changelog/changelog-with-run-modes.xml",
+            "changelog/changelog-with-atomic-changesets.xml",
+            "changelog/changelog-with-dependencies.xml",
+            "changelog/changelog-with-batches.xml",
+            "changelog/changelog-with-parameters.xml",
+            "changelog/changelog-with-query-files.xml",
+            "changelog/changelog-with-preconditions.xml",
+            "changelog/changelog-with-nested-preconditions.xml"
+        };
+
+        for (String changelog : changelogs) {
+            Collection<Changeset> changesets = xmlParser.parse(changelogLoader, changelog);
+
+            Collection<Changeset> bundledChangesets = bundleParser.parse(bundleLoader(bundle(changesets)), "changelog.bundle");
+
+            assertThat(bundledChangesets)
+                .as(changelog)
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(changesets);
+        }
+    }
+
+    @Test
+    public void keeps_bundled_checksums() throws IOException {
+        Changeset changeset = new Changeset();
+        changeset.setId("identifier");
+        changeset.setAuthor("fbiville");
+        changeset.setQueries(singletonList("CREATE (n)"));
+        changeset.setChecksumAlgorithm(ChecksumAlgorithms.CRC32C.getName());
+        changeset.setChecksum("bundled");
+
+        Changeset bundledChangeset = bundleParser.parse(bundleLoader(bundle(singletonList(changeset))), "changelog.bundle")
+            .iterator().next();
+
+        assertThat(bundledChangeset.getChecksumAlgorithm()).isEqualTo("crc32c");
+        assertThat(bundledChangeset.getChecksum()).isEqualTo("bundled");
+    }
+
+    @Test
+    public void stores_repeated_strings_once() throws IOException {
+        Changeset changeset = new Changeset();
+        changeset.setId("identifier");
+        changeset.setAuthor("fbiville");
+        changeset.setQueries(singletonList("CREATE (n)"));
+        Changeset sameQueryChangeset = new Changeset();
+        sameQueryChangeset.setId("other-identifier");
+        sameQueryChangeset.setAuthor("fbiville");
+        sameQueryChangeset.setQueries(singletonList("CREATE (n)"));
+
+        int singleSize = bundle(singletonList(changeset)).length;
+        int doubleSize = bundle(asList(changeset, sameQueryChangeset)).length;
+
+        assertThat(doubleSize - singleSize).isLessThan("other-identifier".length() + 16);
+    }
+
+    @Test
+    public void fails_on_unresolvable_bundle() {
+        assertThatThrownBy(() -> bundleParser.parse(changelogLoader, "changelog/missing.bundle"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Changelog bundle cannot be resolved: changelog/missing.bundle");
+    }
+
+    @Test
+    public void fails_on_xml_changelog() {
+        assertThatThrownBy(() -> bundleParser.parse(changelogLoader, "changelog/changelog.xml"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Not a changelog bundle");
+    }
+
+    @Test
+    public void fails_on_unsupported_format_version() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(ChangelogBundle.MAGIC);
+            output.writeInt(ChangelogBundle.FORMAT_VERSION + 1);
+        }
+
+        assertThatThrownBy(() -> bundleParser.parse(bundleLoader(bytes.toByteArray()), "changelog.bundle"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Unsupported changelog bundle format version <2>, expected <1>: please bundle the changelog again");
+    }
+
+    private static byte[] bundle(Collection<Changeset> changesets) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChangelogBundle.write(changesets, output);
+        return output.toByteArray();
+    }
+
+    private static ChangelogLoader bundleLoader(byte[] bundle) {
+        return path -> new ByteArrayInputStream(bundle);
+    }
+}
@@ -120,7 +120,7 @@ public class LiquigraphLockTest {
     public void should_delete_the_lock() throws SQLException {
         lock.acquire(connection);
 
-        lock.release(connection);
+        lock.release();
 
         verify(deleteStatement).execute();
         verify(connection, times(4)).commit();
@@ -129,20 +129,50 @@ public class LiquigraphLockTest {
     @Test
     public void should_delete_the_lock_once() throws SQLException {
         lock.acquire(connection);
-        lock.release(connection);
+        lock.release();
 
-        lock.release(connection);
+        lock.release();
 
         verify(deleteStatement).execute();
         verify(connection, times(4)).commit();
     }
 
+    @Test
+    public void should_delete_the_lock_once_acquired_by_several_connections() throws SQLException {
+        Connection connection2 = mock(Connection.class, RETURNS_DEEP_STUBS);
+        lock.acquire(connection);
+        lock.acquire(connection2);
+
+        lock.release();
+
+        verify(createStatement).execute();
+        verify(deleteStatement).execute();
+        verifyNoInteractions(connection2);
+    }
+
+    @Test
+    public void should_not_delete_a_lock_never_acquired() {
+        lock.release();
+
+        verifyNoInteractions(connectionSupplier);
+    }
+
+    @Test
+    public void should_create_the_lock_again_once_released() throws SQLException {
+        lock.acquire(connection);
+        lock.release();
+
+        lock.acquire(connection);
+
+        verify(createStatement, times(2)).execute();
+    }
+
     @Test
     public void should_not_fail_when_the_lock_cannot_be_deleted() throws SQLException {
         when(deleteStatement.execute()).thenThrow(SQLException.class);
         lock.acquire(connection);
 
-        lock.release(connection);
+        lock.release();
         verify(connection, times(3)).commit();
     }
 
@@ -28,6 +28,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -55,6 +56,15 @@ public class LockableConnectionTest {
         inOrder.verify(delegate).close(); // cannot set auto-commit after close
     }
 
+    @Test
+    public void keeps_lock_upon_close() throws Exception {
+        LiquigraphLock lock = mock(LiquigraphLock.class);
+
+        LockableConnection.acquire(mock(Connection.class), lock).close();
+
+        verify(lock, never()).release();
+    }
+
     @Test
     public void closes_connection_upon_lock_acquire_error() throws SQLException {
         Connection connection = mock(Connection.class);
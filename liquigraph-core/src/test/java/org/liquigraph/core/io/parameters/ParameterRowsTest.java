@@ -0,0 +1,162 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.parameters;
+
+import org.junit.Test;
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ClassLoaderChangelogLoader;
+import org.liquigraph.core.model.Parameters;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParameterRowsTest {
+
+    private final ChangelogLoader changelogLoader = ClassLoaderChangelogLoader.currentThreadContextClassLoader();
+
+    @Test
+    public void streams_inline_json_rows_in_batches() throws IOException {
+        Parameters parameters = inline("[{\"name\": \"a\"}, {\"name\": \"b\"}, {\"name\": \"c\"}]");
+
+        try (ParameterRows rows = ParameterRows.open(parameters, changelogLoader)) {
+            assertThat(rows.nextBatch(2)).containsExactly(row("name", "a"), row("name", "b"));
+            assertThat(rows.nextBatch(2)).containsExactly(row("name", "c"));
+            assertThat(rows.nextBatch(2)).isEmpty();
+        }
+    }
+
+    @Test
+    public void reads_json_values() throws IOException {
+        Parameters parameters = inline("[{\"long\": -42, \"double\": 1.5e2, \"bool\": true, \"nothing\": null, " +
+            "\"text\": \"a \\\"quoted\\\" \\u00e9\\n\", \"list\": [1, \"two\", []], \"map\": {\"nested\": false}}]");
+
+        List<Map<String, Object>> batch = read(parameters);
+
+        assertThat(batch).hasSize(1);
+        Map<String, Object> row = batch.get(0);
+        assertThat(row).containsEntry("long", -42L)
+            .containsEntry("double", 150.0)
+            .containsEntry("bool", true)
+            .containsEntry("nothing", null)
+            .containsEntry("text", "a \"quoted\" é\n")
+            .containsEntry("list", asList(1L, "two", asList()))
+            .containsEntry("map", row("nested", false));
+    }
+
+    @Test
+    public void reads_empty_json_array() throws IOException {
+        assertThat(read(inline(" [ ] "))).isEmpty();
+    }
+
+    @Test
+    public void fails_on_non_object_json_rows() {
+        assertThatThrownBy(() -> read(inline("[1]")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid JSON parameters: expected object rows, got <1>");
+    }
+
+    @Test
+    public void fails_on_malformed_json() {
+        assertThatThrownBy(() -> read(inline("[{\"name\" \"a\"}]")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid JSON parameters: expected <:>, got <\">");
+    }
+
+    @Test
+    public void fails_on_empty_json() {
+        assertThatThrownBy(() -> read(inline(" \n ")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid JSON parameters: expected <[>, got end of input");
+    }
+
+    @Test
+    public void fails_on_content_after_json_array() {
+        assertThatThrownBy(() -> read(inline("[{\"name\": \"a\"}] [{\"name\": \"b\"}]")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Invalid JSON parameters: expected end of input after the rows array, got <[>");
+    }
+
+    @Test
+    public void reads_integers_beyond_long_range_as_doubles() throws IOException {
+        List<Map<String, Object>> batch = read(inline("[{\"big\": 12345678901234567890, \"small\": -12345678901234567890}]"));
+
+        assertThat(batch).containsExactly(row("big", 1.2345678901234567E19, "small", -1.2345678901234567E19));
+    }
+
+    @Test
+    public void reads_csv_rows() throws IOException {
+        Parameters parameters = inline("name,quote\r\nfbiville,\"Hello, \"\"world\"\"\"\n\nmgazanayi\n");
+        parameters.setFormat("csv");
+
+        assertThat(read(parameters)).containsExactly(
+            row("name", "fbiville", "quote", "Hello, \"world\""),
+            row("name", "mgazanayi", "quote", null)
+        );
+    }
+
+    @Test
+    public void infers_csv_format_from_file_extension() throws IOException {
+        Parameters parameters = new Parameters();
+        parameters.setFile("changelog/parameters/persons.csv");
+
+        assertThat(read(parameters)).containsExactly(
+            row("name", "fbiville", "city", "Paris"),
+            row("name", "mgazanayi", "city", "Harare")
+        );
+    }
+
+    @Test
+    public void fails_on_missing_file() {
+        Parameters parameters = new Parameters();
+        parameters.setFile("changelog/parameters/missing.json");
+
+        assertThatThrownBy(() -> read(parameters))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Parameters file cannot be resolved: changelog/parameters/missing.json");
+    }
+
+    @Test
+    public void computes_digest_of_raw_content() throws IOException {
+        assertThat(ParameterRows.digest(inline("[{\"name\": \"fbiville\"}]"), changelogLoader))
+            .isEqualTo("23ddcb2b1c2ce4efd66b55b80c1d3fb53f7ad602");
+    }
+
+    private List<Map<String, Object>> read(Parameters parameters) throws IOException {
+        try (ParameterRows rows = ParameterRows.open(parameters, changelogLoader)) {
+            return rows.nextBatch(Integer.MAX_VALUE);
+        }
+    }
+
+    private static Parameters inline(String content) {
+        Parameters parameters = new Parameters();
+        parameters.setContent(content);
+        return parameters;
+    }
+
+    private static Map<String, Object> row(Object... keysAndValues) {
+        Map<String, Object> result = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            result.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return result;
+    }
+}
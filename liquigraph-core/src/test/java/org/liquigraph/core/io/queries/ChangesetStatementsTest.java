@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.queries;
+
+import org.junit.Test;
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ClassLoaderChangelogLoader;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChangesetQuery;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ChangesetStatementsTest {
+
+    private final ChangelogLoader changelogLoader = ClassLoaderChangelogLoader.currentThreadContextClassLoader();
+
+    @Test
+    public void streams_inline_queries_and_query_file_statements_in_declaration_order() throws IOException {
+        Changeset changeset = new Changeset();
+        changeset.setDeclaredQueries(asList(
+            new ChangesetQuery("CREATE (:City {name: 'Paris'})"),
+            file("changelog/queries/seed.cypher"),
+            new ChangesetQuery("MATCH (n) RETURN n")
+        ));
+
+        assertThat(ChangesetStatements.readAll(changeset, changelogLoader)).containsExactly(
+            "CREATE (:City {name: 'Paris'})",
+            "CREATE (:Person {name: 'fbiville', motto: 'semicolons; everywhere'})",
+            "CREATE (:`Per;son` {name: \"mgazanayi\"})",
+            "MATCH (n) RETURN n"
+        );
+    }
+
+    @Test
+    public void splits_statements_outside_of_literals_identifiers_and_comments() throws IOException {
+        String script = "RETURN 'it\\'s; fine' AS a;\n" +
+            "RETURN \"a \\\"quoted\\\"; text\" AS b; // trailing; comment\n" +
+            "RETURN 1 AS `odd``; name`;" +
+            "RETURN 4 / 2 AS c /* inline; comment */;" +
+            " ; \n// only a comment;\n";
+
+        assertThat(statements(script)).containsExactly(
+            "RETURN 'it\\'s; fine' AS a",
+            "RETURN \"a \\\"quoted\\\"; text\" AS b",
+            "RETURN 1 AS `odd``; name`",
+            "RETURN 4 / 2 AS c"
+        );
+    }
+
+    @Test
+    public void reads_last_statement_without_trailing_semicolon() throws IOException {
+        assertThat(statements("RETURN 1;\nRETURN 2\n")).containsExactly("RETURN 1", "RETURN 2");
+    }
+
+    @Test
+    public void fails_on_unresolvable_query_file() {
+        Changeset changeset = new Changeset();
+        changeset.setDeclaredQueries(asList(file("changelog/queries/missing.cypher")));
+
+        assertThatThrownBy(() -> ChangesetStatements.readAll(changeset, changelogLoader))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Query file cannot be resolved: changelog/queries/missing.cypher");
+    }
+
+    @Test
+    public void reads_query_file_with_the_digest_computed_at_parse_time() throws IOException {
+        ChangesetQuery query = file("changelog/queries/seed.cypher");
+        query.setDigest(ChangesetStatements.digest("changelog/queries/seed.cypher", changelogLoader));
+        Changeset changeset = new Changeset();
+        changeset.setDeclaredQueries(asList(query));
+
+        assertThat(ChangesetStatements.readAll(changeset, changelogLoader)).hasSize(2);
+        ChangesetStatements.checkDigests(changeset, changelogLoader);
+    }
+
+    @Test
+    public void fails_once_query_file_is_read_when_its_digest_changed() throws IOException {
+        ChangesetQuery query = file("changelog/queries/seed.cypher");
+        query.setDigest("outdated");
+        Changeset changeset = new Changeset();
+        changeset.setDeclaredQueries(asList(query));
+
+        try (ChangesetStatements statements = ChangesetStatements.open(changeset, changelogLoader)) {
+            assertThat(statements.next()).isNotNull();
+            assertThat(statements.next()).isNotNull();
+            assertThatThrownBy(statements::next)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageStartingWith("Query file <changelog/queries/seed.cypher> changed since its changelog was parsed: expected digest <outdated>, got <");
+        }
+        assertThatThrownBy(() -> ChangesetStatements.checkDigests(changeset, changelogLoader))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageStartingWith("Query file <changelog/queries/seed.cypher> changed since its changelog was parsed");
+    }
+
+    private static List<String> statements(String script) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (CypherStatementReader reader = new CypherStatementReader(new StringReader(script))) {
+            String statement;
+            while ((statement = reader.next()) != null) {
+                result.add(statement);
+            }
+        }
+        return result;
+    }
+
+    private static ChangesetQuery file(String file) {
+        ChangesetQuery query = new ChangesetQuery();
+        query.setFile(file);
+        return query;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.queries;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CypherParameterTest {
+
+    private final CypherParameter batchSize = CypherParameter.named("batchSize");
+
+    @Test
+    public void rewrites_references_to_positional_parameter() {
+        assertThat(batchSize.toPositional("MATCH (n) WITH n LIMIT $batchSize DELETE n"))
+            .isEqualTo("MATCH (n) WITH n LIMIT $1 DELETE n");
+        assertThat(batchSize.toPositional("RETURN $batchSize"))
+            .isEqualTo("RETURN $1");
+    }
+
+    @Test
+    public void ignores_parameters_sharing_the_same_prefix() {
+        String query = "MATCH (n) WITH n LIMIT $batchSizeMax DELETE n";
+
+        assertThat(batchSize.toPositional(query)).isEqualTo(query);
+        assertThat(batchSize.isReferencedBy(query)).isFalse();
+    }
+
+    @Test
+    public void leaves_literals_identifiers_and_comments_untouched() {
+        String query = "MATCH (n) // deletes $batchSize nodes\n" +
+            "WITH n LIMIT $batchSize /* $batchSize */ " +
+            "SET n.note = 'it\\'s $batchSize', n.other = \"$batchSize\", n.`odd``$batchSize` = true " +
+            "RETURN count(*) AS affected";
+
+        assertThat(batchSize.toPositional(query)).isEqualTo("MATCH (n) // deletes $batchSize nodes\n" +
+            "WITH n LIMIT $1 /* $batchSize */ " +
+            "SET n.note = 'it\\'s $batchSize', n.other = \"$batchSize\", n.`odd``$batchSize` = true " +
+            "RETURN count(*) AS affected");
+    }
+
+    @Test
+    public void does_not_consider_mentions_in_literals_as_references() {
+        assertThat(batchSize.isReferencedBy("MATCH (n) SET n.note = '$batchSize' RETURN count(*) AS affected")).isFalse();
+        assertThat(batchSize.isReferencedBy("MATCH (n) WITH n LIMIT $batchSize RETURN count(*) AS affected")).isTrue();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.junit.Test;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.liquigraph.core.io.xml.DomSources.domStringSource;
+
+public class ExplicitSchemaValidatorTest {
+
+    private static final String SCHEMA_LOCATION = "http://www.liquigraph.org/schema/1.0/liquigraph.xsd";
+
+    private final ExplicitSchemaValidator validator = new ExplicitSchemaValidator();
+
+    @Test
+    public void reports_errors_against_declared_schema() throws Exception {
+        Collection<String> errors = validator.validate(domStringSource(changelog(1, false)));
+
+        assertThat(errors).contains("cvc-complex-type.4: Attribute 'author' must appear on element 'changeset'.");
+    }
+
+    @Test
+    public void validates_large_changelogs_faster_than_by_serializing_them() throws Exception {
+        // wall-clock comparison, only meaningful on an idle machine
+        assumeTrue("Run with -Dliquigraph.benchmarks=true", Boolean.getBoolean("liquigraph.benchmarks"));
+        DOMSource changelog = domStringSource(changelog(20_000, true));
+        validator.validate(changelog);
+        validateSerialized(changelog);
+
+        long directValidationTime = Long.MAX_VALUE;
+        long serializedValidationTime = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            Collection<String> errors = validator.validate(changelog);
+            directValidationTime = Math.min(directValidationTime, System.nanoTime() - start);
+            assertThat(errors).isEmpty();
+
+            start = System.nanoTime();
+            errors = validateSerialized(changelog);
+            serializedValidationTime = Math.min(serializedValidationTime, System.nanoTime() - start);
+            assertThat(errors).isEmpty();
+        }
+
+        assertThat(directValidationTime).isLessThan(serializedValidationTime);
+    }
+
+    // former validation path: the DOM is serialized, then parsed again
+    private static Collection<String> validateSerialized(DOMSource changelog) throws Exception {
+        try (StringWriter writer = new StringWriter()) {
+            TransformerFactory.newInstance().newTransformer().transform(changelog, new StreamResult(writer));
+            return SchemaRegistry.getInstance()
+                .schema(SCHEMA_LOCATION, RemoteSchemaResolver.defaults())
+                .validate(new StreamSource(new StringReader(writer.toString())));
+        }
+    }
+
+    private static String changelog(int changesetCount, boolean withAuthor) {
+        StringBuilder result = new StringBuilder(
+            "<changelog xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" " +
+            "xsi:noNamespaceSchemaLocation=\"" + SCHEMA_LOCATION + "\">");
+        for (int i = 0; i < changesetCount; i++) {
+            result.append("<changeset id=\"changeset-").append(i).append("\"");
+            if (withAuthor) {
+                result.append(" author=\"fbiville\"");
+            }
+            result.append("><query>CREATE (n {id: ").append(i).append("})</query></changeset>");
+        }
+        return result.append("</changelog>").toString();
+    }
+}
@@ -20,16 +20,24 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.liquigraph.core.io.ChangelogLoader;
 import org.liquigraph.core.io.ClassLoaderChangelogLoader;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -137,6 +145,81 @@ public class ImportResolverTest {
         );
     }
 
+    @Test
+    public void parses_changelogs_imported_several_times_once() throws Exception {
+        Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+        ChangelogLoader countingLoader = changelog -> {
+            loads.computeIfAbsent(changelog, key -> new AtomicInteger()).incrementAndGet();
+            return changelogLoader.load(changelog);
+        };
+
+        Node root = resolver.resolveImports("changelog/includes/diamond/changelog.xml", countingLoader);
+
+        assertThat(contents(root)).isXmlEqualTo(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<changelog>\n" +
+            "    <changeset author=\"fbiville\" id=\"shared\">\n" +
+            "        <query><![CDATA[MATCH (s) RETURN s]]></query>\n" +
+            "    </changeset>\n" +
+            "    <changeset author=\"fbiville\" id=\"left\">\n" +
+            "        <query><![CDATA[MATCH (l) RETURN l]]></query>\n" +
+            "    </changeset>\n" +
+            "    <changeset author=\"fbiville\" id=\"shared\">\n" +
+            "        <query><![CDATA[MATCH (s) RETURN s]]></query>\n" +
+            "    </changeset>\n" +
+            "    <changeset author=\"fbiville\" id=\"right\">\n" +
+            "        <query><![CDATA[MATCH (r) RETURN r]]></query>\n" +
+            "    </changeset>\n" +
+            "</changelog>");
+        assertThat(loads).containsOnlyKeys(
+            "changelog/includes/diamond/changelog.xml",
+            "changelog/includes/diamond/left/left.xml",
+            "changelog/includes/diamond/right/right.xml",
+            "changelog/includes/diamond/shared.xml"
+        );
+        assertThat(loads.values()).extracting(AtomicInteger::get).containsOnly(1);
+    }
+
+    @Test
+    public void fails_on_circular_imports() {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Circular import detected: " +
+            "changelog/includes/circular/first.xml -> " +
+            "changelog/includes/circular/second.xml -> " +
+            "changelog/includes/circular/first.xml");
+
+        resolver.resolveImports(
+            "changelog/includes/circular/first.xml",
+            changelogLoader
+        );
+    }
+
+    @Test
+    public void normalizes_relative_paths() {
+        assertThat(ImportResolver.normalize("changelog/includes/./inc/../included.xml")).isEqualTo("changelog/includes/included.xml");
+        assertThat(ImportResolver.normalize("../changelog.xml")).isEqualTo("../changelog.xml");
+        assertThat(ImportResolver.normalize("/changelog/../changelog.xml")).isEqualTo("/changelog.xml");
+    }
+
+    @Test
+    public void resolves_many_imports_loading_and_parsing_each_file_once() {
+        Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+        ChangelogLoader generatedChangelogs = generatedChangelogs(10_000);
+        ChangelogLoader countingLoader = path -> {
+            loads.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            return generatedChangelogs.load(path);
+        };
+
+        Node root = resolver.resolveImports("changelog.xml", countingLoader);
+
+        NodeList changesets = root.getChildNodes();
+        assertThat(changesets.getLength()).isEqualTo(10_000);
+        assertThat(((Element) changesets.item(0)).getAttribute("id")).isEqualTo("changeset-0");
+        assertThat(((Element) changesets.item(9_999)).getAttribute("id")).isEqualTo("changeset-9999");
+        assertThat(loads).hasSize(10_001);
+        assertThat(loads.values()).extracting(AtomicInteger::get).containsOnly(1);
+    }
+
     private String contents(Node root) throws Exception {
         try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
             print(root, out);
@@ -156,4 +239,19 @@ public class ImportResolverTest {
             transformer.transform(new DOMSource(root), new StreamResult(writer));
         }
     }
+
+    private static ChangelogLoader generatedChangelogs(int importCount) {
+        Map<String, byte[]> changelogs = new HashMap<>();
+        StringBuilder master = new StringBuilder("<changelog>");
+        for (int i = 0; i < importCount; i++) {
+            String name = "imported-" + i + ".xml";
+            master.append("<import resource=\"").append(name).append("\"/>");
+            changelogs.put(name, String.format(
+                "<changelog><changeset id=\"changeset-%d\" author=\"fbiville\"><query>CREATE (n {id: %d})</query></changeset></changelog>",
+                i, i
+            ).getBytes(StandardCharsets.UTF_8));
+        }
+        changelogs.put("changelog.xml", master.append("</changelog>").toString().getBytes(StandardCharsets.UTF_8));
+        return changelog -> new ByteArrayInputStream(changelogs.get(changelog));
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RemoteSchemaResolverTest {
+
+    private static final String LOCATION = "https://example.com/schema/changelog.xsd";
+    private static final String SCHEMA = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"/>";
+
+    @Rule public ExpectedException thrown = ExpectedException.none();
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final EntityResolver downloader = (publicId, systemId) -> {
+        downloads.incrementAndGet();
+        return new InputSource(new ByteArrayInputStream(SCHEMA.getBytes(UTF_8)));
+    };
+
+    @Test
+    public void downloads_schema_once_and_then_serves_it_from_cache() throws Exception {
+        SchemaCache cache = new SchemaCache(folder.getRoot().toPath());
+        RemoteSchemaResolver onlineResolver = new RemoteSchemaResolver(emptyList(), cache, false, downloader);
+        RemoteSchemaResolver offlineResolver = new RemoteSchemaResolver(emptyList(), cache, true, downloader);
+
+        assertThat(contents(onlineResolver.resolveEntity(null, LOCATION))).isEqualTo(SCHEMA);
+        assertThat(contents(onlineResolver.resolveEntity(null, LOCATION))).isEqualTo(SCHEMA);
+        assertThat(contents(offlineResolver.resolveEntity(null, LOCATION))).isEqualTo(SCHEMA);
+        assertThat(downloads).hasValue(1);
+    }
+
+    @Test
+    public void fails_to_resolve_uncached_schema_offline() throws Exception {
+        RemoteSchemaResolver resolver = new RemoteSchemaResolver(emptyList(), new SchemaCache(folder.getRoot().toPath()), true, downloader);
+
+        thrown.expect(IOException.class);
+        thrown.expectMessage("Schema <" + LOCATION + "> is neither declared in a catalog nor cached, and cannot be downloaded in offline mode.");
+
+        resolver.resolveEntity(null, LOCATION);
+    }
+
+    @Test
+    public void ignores_corrupted_cached_schema() throws Exception {
+        SchemaCache cache = new SchemaCache(folder.getRoot().toPath());
+        cache.write(LOCATION, SCHEMA.getBytes(UTF_8));
+        File[] contents = new File(folder.getRoot(), "content").listFiles();
+        assertThat(contents).hasSize(1);
+        Files.write(contents[0].toPath(), "corrupted".getBytes(UTF_8));
+
+        assertThat(cache.read(LOCATION)).isNull();
+    }
+
+    @Test
+    public void resolves_schema_from_catalog_first() throws Exception {
+        SchemaCatalog catalog = location -> new InputSource(new ByteArrayInputStream("<catalog-schema/>".getBytes(UTF_8)));
+        RemoteSchemaResolver resolver = new RemoteSchemaResolver(singletonList(catalog), new SchemaCache(folder.getRoot().toPath()), true, downloader);
+
+        assertThat(contents(resolver.resolveEntity(null, LOCATION))).isEqualTo("<catalog-schema/>");
+        assertThat(downloads).hasValue(0);
+    }
+
+    @Test
+    public void resolves_schema_from_xml_catalog_file() throws Exception {
+        File schema = folder.newFile("changelog.xsd");
+        Files.write(schema.toPath(), SCHEMA.getBytes(UTF_8));
+        File catalogFile = folder.newFile("catalog.xml");
+        Files.write(catalogFile.toPath(), (
+            "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">\n" +
+            "    <system systemId=\"" + LOCATION + "\" uri=\"" + schema.toURI() + "\"/>\n" +
+            "</catalog>").getBytes(UTF_8));
+        XmlSchemaCatalog catalog = new XmlSchemaCatalog(catalogFile.toURI());
+
+        assertThat(contents(catalog.resolve(LOCATION))).isEqualTo(SCHEMA);
+        assertThat(catalog.resolve("https://example.com/unknown.xsd")).isNull();
+    }
+
+    private static String contents(InputSource source) throws IOException {
+        try (InputStream stream = source.getByteStream()) {
+            return new String(stream.readAllBytes(), UTF_8);
+        }
+    }
+}
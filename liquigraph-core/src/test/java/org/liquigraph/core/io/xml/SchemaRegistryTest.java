@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.io.xml;
+
+import org.junit.Test;
+import org.liquigraph.core.io.xml.SchemaRegistry.CompiledSchema;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.liquigraph.core.io.xml.DomSources.domStringSource;
+
+public class SchemaRegistryTest {
+
+    private final SchemaRegistry registry = SchemaRegistry.getInstance();
+
+    @Test
+    public void compiles_embedded_schema_once() {
+        assertThat(registry.embeddedSchema()).isSameAs(registry.embeddedSchema());
+    }
+
+    @Test
+    public void compiles_known_schema_once_whatever_its_location() {
+        CompiledSchema schema = registry.schema("http://www.liquigraph.org/schema/1.0/liquigraph.xsd", RemoteSchemaResolver.defaults());
+
+        assertThat(registry.schema("https://www.liquigraph.org/schema/1.0/liquigraph.xsd", RemoteSchemaResolver.defaults())).isSameAs(schema);
+        assertThat(registry.schema("https://fbiville.github.io/liquigraph/schema/1.0/liquigraph.xsd", RemoteSchemaResolver.defaults())).isSameAs(schema);
+        assertThat(registry.schema("http://www.liquigraph.org/schema/1.0-RC3/liquigraph.xsd", RemoteSchemaResolver.defaults())).isNotSameAs(schema);
+    }
+
+    @Test
+    public void validates_concurrently_with_pooled_validators() throws Exception {
+        CompiledSchema schema = registry.embeddedSchema();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Collection<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                String document = i % 2 == 0 ?
+                    "<changelog><changeset id=\"valid\" author=\"fbiville\"><query>RETURN 42</query></changeset></changelog>" :
+                    "<changelog><changeset id=\"invalid\" author=\"fbiville\"></changeset></changelog>";
+                results.add(executor.submit((Callable<Collection<String>>) () -> schema.validate(domStringSource(document))));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                Collection<String> errors = results.get(i).get();
+                if (i % 2 == 0) {
+                    assertThat(errors).isEmpty();
+                } else {
+                    assertThat(errors).hasSize(1);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import org.junit.Test;
+import org.liquigraph.core.configuration.ExecutionContexts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.liquigraph.core.configuration.ExecutionContexts.DEFAULT_CONTEXT;
+
+public class ChangelogFingerprintTest {
+
+    @Test
+    public void splits_changesets_in_chunks() {
+        ChangelogFingerprint fingerprint = ChangelogFingerprint.of(changesets(ChangelogFingerprint.CHUNK_SIZE + 1), DEFAULT_CONTEXT);
+
+        assertThat(fingerprint.getChunks()).hasSize(2);
+        assertThat(fingerprint.getRoot()).isEqualTo(Checksums.checksum(fingerprint.getChunks()));
+    }
+
+    @Test
+    public void is_stable_for_same_changesets() {
+        ChangelogFingerprint fingerprint = ChangelogFingerprint.of(changesets(10), DEFAULT_CONTEXT);
+
+        assertThat(ChangelogFingerprint.of(changesets(10), DEFAULT_CONTEXT).getRoot()).isEqualTo(fingerprint.getRoot());
+    }
+
+    @Test
+    public void depends_on_execution_flags_and_contexts() {
+        List<Changeset> changesets = changesets(1);
+        String root = ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT).getRoot();
+
+        changesets.get(0).setContexts("foo");
+        assertThat(ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT).getRoot()).isEqualTo(root);
+        assertThat(ChangelogFingerprint.of(changesets, new ExecutionContexts(singletonList("bar"))).getRoot()).isNotEqualTo(root);
+
+        changesets.get(0).setRunAlways(true);
+        assertThat(ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT).getRoot()).isNotEqualTo(root);
+    }
+
+    @Test
+    public void only_changesets_of_diverging_chunks_diverge() {
+        List<Changeset> changesets = changesets(2 * ChangelogFingerprint.CHUNK_SIZE);
+        List<String> persistedChunks = ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT).getChunks();
+        Changeset newChangeset = changeset("new");
+        changesets.add(newChangeset);
+        changesets.get(ChangelogFingerprint.CHUNK_SIZE).setQueries(singletonList("CREATE (n:Changed)"));
+
+        ChangelogFingerprint fingerprint = ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT);
+
+        assertThat(fingerprint.divergingChangesets(persistedChunks))
+            .hasSize(ChangelogFingerprint.CHUNK_SIZE + 1)
+            .startsWith(changesets.get(ChangelogFingerprint.CHUNK_SIZE))
+            .endsWith(newChangeset);
+    }
+
+    @Test
+    public void every_changeset_diverges_without_persisted_fingerprint() {
+        List<Changeset> changesets = changesets(3);
+
+        assertThat(ChangelogFingerprint.of(changesets, DEFAULT_CONTEXT).divergingChangesets(emptyList()))
+            .containsExactlyElementsOf(changesets);
+    }
+
+    private static List<Changeset> changesets(int count) {
+        List<Changeset> changesets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            changesets.add(changeset("id-" + i));
+        }
+        return changesets;
+    }
+
+    private static Changeset changeset(String id) {
+        Changeset changeset = new Changeset();
+        changeset.setId(id);
+        changeset.setAuthor("fbiville");
+        changeset.setQueries(singletonList("CREATE (n:" + id.replace('-', '_') + ")"));
+        return changeset;
+    }
+}
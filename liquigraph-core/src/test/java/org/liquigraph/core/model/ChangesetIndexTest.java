@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangesetIndexTest {
+
+    @Test
+    public void finds_changeset_by_id_and_author() {
+        Changeset first = changeset("id", "fbiville", "CREATE (n)");
+        Changeset second = changeset("id", "mgazanayi", "CREATE (m)");
+        ChangesetIndex index = ChangesetIndex.of(asList(first, second));
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.find("id", "fbiville")).containsSame(first);
+        assertThat(index.find(changeset("id", "mgazanayi", "CREATE (o)"))).containsSame(second);
+        assertThat(index.find("id", "someone")).isEmpty();
+        assertThat(index.find("other-id", "fbiville")).isEmpty();
+    }
+
+    @Test
+    public void contains_only_changesets_with_same_checksum() {
+        ChangesetIndex index = ChangesetIndex.of(singletonList(changeset("id", "fbiville", "CREATE (n)")));
+
+        assertThat(index.contains(changeset("id", "fbiville", "CREATE (n)"))).isTrue();
+        assertThat(index.contains(changeset("id", "fbiville", "CREATE (m)"))).isFalse();
+        assertThat(index.contains(changeset("other-id", "fbiville", "CREATE (n)"))).isFalse();
+    }
+
+    @Test
+    public void keeps_first_changeset_of_duplicates() {
+        Changeset first = changeset("id", "fbiville", "CREATE (n)");
+        ChangesetIndex index = ChangesetIndex.of(asList(first, changeset("id", "fbiville", "CREATE (m)")));
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.find("id", "fbiville")).containsSame(first);
+    }
+
+    private static Changeset changeset(String id, String author, String query) {
+        Changeset changeset = new Changeset();
+        changeset.setId(id);
+        changeset.setAuthor(author);
+        changeset.setQueries(singletonList(query));
+        return changeset;
+    }
+}
@@ -17,8 +17,11 @@ package org.liquigraph.core.model;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.Collections;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -71,6 +74,58 @@ public class ChangesetTest {
             .isNotEqualTo(changeset("identifier2", "author", "CREATE (n)"));
     }
 
+    @Test
+    public void computes_checksum_with_configured_algorithm() {
+        Changeset changeset = changeset("identifier", "author", "CREATE (n)");
+        assertThat(changeset.getChecksum()).isEqualTo(Checksums.checksum(singletonList("CREATE (n)")));
+
+        changeset.setChecksumAlgorithm(ChecksumAlgorithms.SHA_256.getName());
+
+        assertThat(changeset.getChecksumAlgorithm()).isEqualTo("sha256");
+        assertThat(changeset.getChecksum())
+            .isEqualTo(Checksums.checksum(ChecksumAlgorithms.SHA_256, singletonList("CREATE (n)"), null))
+            .isEqualTo(changeset.computeChecksum(ChecksumAlgorithms.SHA_256));
+    }
+
+    @Test
+    public void recomputes_checksum_when_queries_change() {
+        Changeset changeset = changeset("identifier", "author", "CREATE (n)");
+        String checksum = changeset.getChecksum();
+
+        changeset.setQueries(singletonList("CREATE (m)"));
+
+        assertThat(changeset.getChecksum()).isNotEqualTo(checksum);
+    }
+
+    @Test
+    public void hashes_query_file_digests_with_configured_algorithm() throws IOException {
+        String digest = Checksums.checksum(new ByteArrayInputStream("CREATE (n)".getBytes(UTF_8)));
+        ChangesetQuery query = new ChangesetQuery();
+        query.setFile("create.cypher");
+        query.setDigest(digest);
+        Changeset changeset = new Changeset();
+        changeset.setId("identifier");
+        changeset.setAuthor("author");
+        changeset.setDeclaredQueries(singletonList(query));
+
+        changeset.setChecksumAlgorithm(ChecksumAlgorithms.CRC32C.getName());
+
+        assertThat(digest).isEqualTo(Checksums.checksum(ChecksumAlgorithms.SHA_1, singletonList("CREATE (n)"), null));
+        assertThat(changeset.getChecksum())
+            .isEqualTo(Checksums.checksum(ChecksumAlgorithms.CRC32C, singletonList(digest), null));
+        assertThat(changeset.computeChecksum(ChecksumAlgorithms.SHA_256))
+            .isEqualTo(Checksums.checksum(ChecksumAlgorithms.SHA_256, singletonList(digest), null));
+    }
+
+    @Test
+    public void keeps_explicitly_set_checksum() {
+        Changeset changeset = changeset("identifier", "author", "CREATE (n)");
+
+        changeset.setChecksum("persisted");
+
+        assertThat(changeset.getChecksum()).isEqualTo("persisted");
+    }
+
     private Changeset changeset(String id, String author, String query) {
         Changeset changeset = new Changeset();
         changeset.setId(id);
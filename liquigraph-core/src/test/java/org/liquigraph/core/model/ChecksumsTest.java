@@ -17,8 +17,14 @@ package org.liquigraph.core.model;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.liquigraph.core.model.Checksums.checksum;
 
 public class ChecksumsTest {
@@ -28,4 +34,47 @@ public class ChecksumsTest {
         assertThat(checksum(asList("MATCH (n) RETURN n", "MATCH (m) RETURN m")))
             .isEqualTo("9c68d381cf24b9cab5843a506229c5dee1083f8e");
     }
+
+    @Test
+    public void computes_checksum_of_content() throws IOException {
+        assertThat(checksum(new ByteArrayInputStream("[{\"name\": \"fbiville\"}]".getBytes(UTF_8))))
+            .isEqualTo("23ddcb2b1c2ce4efd66b55b80c1d3fb53f7ad602");
+    }
+
+    @Test
+    public void computes_checksum_of_queries_and_parameters_digest() {
+        assertThat(checksum(asList("MATCH (n) RETURN n", "MATCH (m) RETURN m"), "23ddcb2b1c2ce4efd66b55b80c1d3fb53f7ad602"))
+            .isEqualTo("f78d05cc846990661eef638ffd32aa39c9f36fcd");
+    }
+
+    @Test
+    public void streamed_encoding_matches_string_bytes() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            builder.append("MATCH (n {name: 'Zoë \uD83D\uDE00'}) RETURN n ");
+        }
+        builder.append('\uD800'); // unpaired surrogate
+        String query = builder.toString();
+
+        assertThat(checksum(singletonList(query)))
+            .isEqualTo(checksum(new ByteArrayInputStream(query.getBytes(UTF_8))));
+    }
+
+    @Test
+    public void computes_checksum_with_other_algorithms() {
+        assertThat(checksum(ChecksumAlgorithms.SHA_256, singletonList("abc"), null))
+            .isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+        assertThat(checksum(ChecksumAlgorithms.CRC32C, singletonList("123456789"), null))
+            .isEqualTo("e3069283");
+    }
+
+    @Test
+    public void looks_up_algorithms_by_name() {
+        assertThat(ChecksumAlgorithms.forName("sha1")).isSameAs(ChecksumAlgorithms.SHA_1);
+        assertThat(ChecksumAlgorithms.forName("sha256")).isSameAs(ChecksumAlgorithms.SHA_256);
+        assertThat(ChecksumAlgorithms.forName("crc32c")).isSameAs(ChecksumAlgorithms.CRC32C);
+        assertThatThrownBy(() -> ChecksumAlgorithms.forName("md4"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Unknown checksum algorithm <md4>");
+    }
 }
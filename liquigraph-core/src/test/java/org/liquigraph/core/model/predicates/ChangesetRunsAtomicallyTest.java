@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.model.predicates;
+
+import org.junit.Test;
+import org.liquigraph.core.model.Batch;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.Postcondition;
+import org.liquigraph.core.model.SimpleQuery;
+
+import java.util.Collection;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.liquigraph.core.model.predicates.ChangesetRunsAtomically.RUNS_ATOMICALLY;
+
+public class ChangesetRunsAtomicallyTest {
+
+    @Test
+    public void matches_changeset_declared_atomic() {
+        Changeset changeset = changeset(true, singletonList("CREATE (n:Person)"));
+
+        assertThat(RUNS_ATOMICALLY(false).test(changeset)).isTrue();
+    }
+
+    @Test
+    public void does_not_match_changeset_declared_non_atomic() {
+        Changeset changeset = changeset(false, singletonList("CREATE (n:Person)"));
+
+        assertThat(RUNS_ATOMICALLY(true).test(changeset)).isFalse();
+    }
+
+    @Test
+    public void falls_back_to_default_when_changeset_does_not_declare_anything() {
+        Changeset changeset = changeset(null, singletonList("CREATE (n:Person)"));
+
+        assertThat(RUNS_ATOMICALLY(true).test(changeset)).isTrue();
+        assertThat(RUNS_ATOMICALLY(false).test(changeset)).isFalse();
+    }
+
+    @Test
+    public void does_not_match_schema_changesets() {
+        assertThat(RUNS_ATOMICALLY(true).test(changeset(true, asList("CREATE (n:Person)", "CREATE INDEX FOR (p:Person) ON (p.name)")))).isFalse();
+        assertThat(RUNS_ATOMICALLY(true).test(changeset(true, singletonList("create constraint on (p:Person) assert p.name is unique")))).isFalse();
+        assertThat(RUNS_ATOMICALLY(true).test(changeset(true, singletonList("DROP INDEX person_name")))).isFalse();
+        assertThat(RUNS_ATOMICALLY(true).test(changeset(true, singletonList("CREATE FULLTEXT INDEX titles FOR (n:Book) ON EACH [n.title]")))).isFalse();
+        assertThat(RUNS_ATOMICALLY(true).test(changeset(true, singletonList("CALL db.index.fulltext.createNodeIndex('titles', ['Book'], ['title'])")))).isFalse();
+    }
+
+    @Test
+    public void matches_data_changesets_mentioning_schema_keywords() {
+        Changeset changeset = changeset(true, singletonList("CREATE (:Index {name: 'CREATE INDEX'})"));
+
+        assertThat(RUNS_ATOMICALLY(false).test(changeset)).isTrue();
+    }
+
+    @Test
+    public void does_not_match_changesets_with_postcondition() {
+        Changeset changeset = changeset(true, singletonList("CREATE (n:Person)"));
+        Postcondition postcondition = new Postcondition();
+        SimpleQuery query = new SimpleQuery();
+        query.setQuery("RETURN false AS result");
+        postcondition.setQuery(query);
+        changeset.setPostcondition(postcondition);
+
+        assertThat(RUNS_ATOMICALLY(true).test(changeset)).isFalse();
+    }
+
+    @Test
+    public void does_not_match_batched_changesets() {
+        Changeset changeset = changeset(true, singletonList("MATCH (n:Person) WITH n LIMIT $batchSize DELETE n"));
+        Batch batch = new Batch();
+        batch.setSize(1000);
+        changeset.setBatch(batch);
+
+        assertThat(RUNS_ATOMICALLY(true).test(changeset)).isFalse();
+    }
+
+    private static Changeset changeset(Boolean atomic, Collection<String> queries) {
+        Changeset changeset = new Changeset();
+        changeset.setId("identifier");
+        changeset.setAuthor("author");
+        changeset.setQueries(queries);
+        changeset.setAtomic(atomic);
+        return changeset;
+    }
+}
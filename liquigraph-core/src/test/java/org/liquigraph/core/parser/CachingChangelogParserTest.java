@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.parser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ClassLoaderChangelogLoader;
+import org.liquigraph.core.io.xml.CachingChangelogParser;
+import org.liquigraph.core.io.xml.StreamingChangelogXmlParser;
+import org.liquigraph.core.model.Changeset;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingChangelogParserTest {
+
+    @Rule public TemporaryFolder snapshotFolder = new TemporaryFolder();
+
+    private final ChangelogLoader changelogLoader = ClassLoaderChangelogLoader.currentThreadContextClassLoader();
+
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+    @Test
+    public void parses_changelogs_like_the_streaming_parser_with_and_without_snapshot() {
+        String[] changelogs = {
+            "changelog/changelog.xml",
+            "changelog/changelog-of-changelogs.xml",
+            "changelog/includes/deeply-nested-changelog.xml",
+            "changelog/changelog-with-execution-contexts.xml",
+            "changelog/changelog-with-dependencies.xml",
+            "changelog/changelog-with-batches.xml",
+            "changelog/changelog-with-parameters.xml",
+            "changelog/changelog-with-nested-preconditions.xml",
+            "changelog/changelog-with-schema-location.xml"
+        };
+        StreamingChangelogXmlParser streamingParser = new StreamingChangelogXmlParser();
+
+        for (String changelog : changelogs) {
+            Collection<Changeset> expected = streamingParser.parse(changelogLoader, changelog);
+
+            assertThat(new CachingChangelogParser(snapshotFolder.getRoot().toPath()).parse(changelogLoader, changelog))
+                .as(changelog + " without snapshot")
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected);
+            assertThat(new CachingChangelogParser(snapshotFolder.getRoot().toPath()).parse(changelogLoader, changelog))
+                .as(changelog + " with snapshot")
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    public void only_reads_files_once_when_snapshot_is_up_to_date() {
+        Map<String, String> files = importingChangelogs();
+        CachingChangelogParser parser = new CachingChangelogParser(snapshotFolder.getRoot().toPath());
+        parser.parse(countingLoader(files), "changelog.xml");
+        loads.clear();
+
+        Collection<Changeset> changesets = parser.parse(countingLoader(files), "changelog.xml");
+
+        assertThat(changesets).extracting(Changeset::getId).containsExactly("first", "second");
+        assertThat(loads).containsOnlyKeys("changelog.xml", "includes/first.xml", "includes/second.xml");
+        assertThat(loads.values()).allSatisfy(count -> assertThat(count).hasValue(1));
+    }
+
+    @Test
+    public void parses_again_only_the_changed_files() {
+        Map<String, String> files = importingChangelogs();
+        CachingChangelogParser parser = new CachingChangelogParser(snapshotFolder.getRoot().toPath());
+        parser.parse(countingLoader(files), "changelog.xml");
+        loads.clear();
+        files.put("includes/second.xml", changelog("<changeset id=\"second\" author=\"fbiville\"><query>RETURN 3</query></changeset>"));
+
+        Collection<Changeset> changesets = parser.parse(countingLoader(files), "changelog.xml");
+
+        assertThat(changesets).extracting(Changeset::getQueries).containsExactly(
+            singletonList("RETURN 1"),
+            singletonList("RETURN 3")
+        );
+        assertThat(loads.get("changelog.xml")).hasValue(1);
+        assertThat(loads.get("includes/first.xml")).hasValue(1);
+        assertThat(loads.get("includes/second.xml").get()).isGreaterThan(1);
+    }
+
+    @Test
+    public void parses_again_changelogs_whose_parameter_files_changed() {
+        Map<String, String> files = new HashMap<>();
+        files.put("changelog.xml", changelog("<changeset id=\"persons\" author=\"fbiville\">" +
+            "<query>UNWIND $rows AS row CREATE (:Person {name: row.name})</query>" +
+            "<parameters file=\"persons.csv\"/></changeset>"));
+        files.put("persons.csv", "name\nfbiville\n");
+        CachingChangelogParser parser = new CachingChangelogParser(snapshotFolder.getRoot().toPath());
+        String initialChecksum = parser.parse(countingLoader(files), "changelog.xml").iterator().next().getChecksum();
+        files.put("persons.csv", "name\nmgazanayi\n");
+
+        Changeset changeset = parser.parse(countingLoader(files), "changelog.xml").iterator().next();
+
+        assertThat(changeset.getChecksum()).isNotEqualTo(initialChecksum);
+    }
+
+    @Test
+    public void ignores_unreadable_snapshots() throws Exception {
+        Map<String, String> files = importingChangelogs();
+        CachingChangelogParser parser = new CachingChangelogParser(snapshotFolder.getRoot().toPath());
+        parser.parse(countingLoader(files), "changelog.xml");
+        File[] snapshots = snapshotFolder.getRoot().listFiles();
+        assertThat(snapshots).hasSize(1);
+        Files.write(snapshots[0].toPath(), "not a snapshot".getBytes(UTF_8));
+
+        Collection<Changeset> changesets = parser.parse(countingLoader(files), "changelog.xml");
+
+        assertThat(changesets).extracting(Changeset::getId).containsExactly("first", "second");
+    }
+
+    @Test
+    public void ignores_snapshots_written_by_another_liquigraph_version() throws Exception {
+        Map<String, String> files = importingChangelogs();
+        CachingChangelogParser parser = new CachingChangelogParser(snapshotFolder.getRoot().toPath());
+        parser.parse(countingLoader(files), "changelog.xml");
+        File[] snapshots = snapshotFolder.getRoot().listFiles();
+        assertThat(snapshots).hasSize(1);
+        rewriteLiquigraphFingerprint(snapshots[0].toPath(), "written by another version");
+        loads.clear();
+
+        Collection<Changeset> changesets = parser.parse(countingLoader(files), "changelog.xml");
+
+        assertThat(changesets).extracting(Changeset::getId).containsExactly("first", "second");
+        assertThat(loads.values()).allSatisfy(count -> assertThat(count.get()).isGreaterThan(1));
+    }
+
+    private static void rewriteLiquigraphFingerprint(Path snapshot, String fingerprint) throws Exception {
+        int formatVersion;
+        Object contents;
+        try (ObjectInputStream input = new ObjectInputStream(Files.newInputStream(snapshot))) {
+            formatVersion = input.readInt();
+            input.readUTF();
+            contents = input.readObject();
+        }
+        try (ObjectOutputStream output = new ObjectOutputStream(Files.newOutputStream(snapshot))) {
+            output.writeInt(formatVersion);
+            output.writeUTF(fingerprint);
+            output.writeObject(contents);
+        }
+    }
+
+    private ChangelogLoader countingLoader(Map<String, String> files) {
+        return path -> {
+            loads.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            String content = files.get(path);
+            return content == null ? null : new ByteArrayInputStream(content.getBytes(UTF_8));
+        };
+    }
+
+    private static Map<String, String> importingChangelogs() {
+        Map<String, String> files = new HashMap<>();
+        files.put("changelog.xml", changelog("<import resource=\"includes/first.xml\"/><import resource=\"includes/second.xml\"/>"));
+        files.put("includes/first.xml", changelog("<changeset id=\"first\" author=\"fbiville\"><query>RETURN 1</query></changeset>"));
+        files.put("includes/second.xml", changelog("<changeset id=\"second\" author=\"fbiville\"><query>RETURN 2</query></changeset>"));
+        return files;
+    }
+
+    private static String changelog(String contents) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><changelog>" + contents + "</changelog>";
+    }
+}
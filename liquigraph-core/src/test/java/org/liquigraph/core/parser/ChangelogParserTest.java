@@ -34,13 +34,22 @@ import org.liquigraph.core.model.PreconditionErrorPolicy;
 import org.liquigraph.core.model.SimpleQuery;
 import org.w3c.dom.Node;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.groups.Tuple.tuple;
@@ -114,6 +123,93 @@ public class ChangelogParserTest {
             );
     }
 
+    @Test
+    public void parses_changelog_with_atomic_attributes() {
+        Collection<Changeset> changesets = parser.parse(changelogLoader, "changelog/changelog-with-atomic-changesets.xml");
+
+        assertThat(changesets)
+            .extracting("id", "atomic")
+            .containsExactly(
+                tuple("first-changelog", true),
+                tuple("second-changelog", false),
+                tuple("third-changelog", null)
+            );
+    }
+
+    @Test
+    public void parses_changelog_with_dependencies() {
+        Collection<Changeset> changesets = parser.parse(changelogLoader, "changelog/changelog-with-dependencies.xml");
+
+        assertThat(changesets)
+            .extracting("id", "dependencies")
+            .containsExactly(
+                tuple("schema", null),
+                tuple("tenant-1", singletonList("schema")),
+                tuple("tenant-2", emptyList()),
+                tuple("report", asList("tenant-1", "tenant-2"))
+            );
+    }
+
+    @Test
+    public void parses_changelog_with_batches() {
+        Collection<Changeset> changesets = parser.parse(changelogLoader, "changelog/changelog-with-batches.xml");
+
+        assertThat(changesets)
+            .extracting(Changeset::getBatch)
+            .extracting("size", "minSize", "maxSize", "targetDuration", "inTransactions")
+            .containsExactly(
+                tuple(10000, 100, 50000, 2000L, false),
+                tuple(1000, 1, 1000, null, true)
+            );
+    }
+
+    @Test
+    public void parses_changelog_with_parameters() {
+        Collection<Changeset> changesets = parser.parse(changelogLoader, "changelog/changelog-with-parameters.xml");
+
+        assertThat(changesets)
+            .extracting(Changeset::getParameters)
+            .extracting("file", "batchSize")
+            .containsExactly(
+                tuple(null, 2),
+                tuple("changelog/parameters/persons.csv", 1000)
+            );
+        assertThat(changesets)
+            .extracting(Changeset::getChecksum)
+            .containsExactly(
+                "c8ee5012b3d7bb460b1f0af31f131af67e5fbf81",
+                "acac2975f65ce80292f1cee98c93178d567b2fe3"
+            );
+    }
+
+    @Test
+    public void parses_changelog_with_query_files() throws IOException {
+        Collection<Changeset> changesets = parser.parse(changelogLoader, "changelog/changelog-with-query-files.xml");
+
+        String fileDigest;
+        try (InputStream file = changelogLoader.load("changelog/queries/seed.cypher")) {
+            fileDigest = checksum(file);
+        }
+        assertThat(changesets)
+            .flatExtracting(Changeset::getDeclaredQueries)
+            .extracting("file", "digest")
+            .containsExactly(
+                tuple("changelog/queries/seed.cypher", fileDigest),
+                tuple(null, null),
+                tuple("changelog/queries/seed.cypher", fileDigest),
+                tuple(null, null)
+            );
+        assertThat(changesets)
+            .extracting(Changeset::getQueries, Changeset::getChecksum)
+            .containsExactly(
+                tuple(emptyList(), checksum(singletonList(fileDigest))),
+                tuple(
+                    asList("CREATE (:City {name: 'Paris'})", "MATCH (p:Person), (c:City) MERGE (p)-[:LIVES_IN]->(c)"),
+                    checksum(asList("CREATE (:City {name: 'Paris'})", fileDigest, "MATCH (p:Person), (c:City) MERGE (p)-[:LIVES_IN]->(c)"))
+                )
+            );
+    }
+
     @Test
     public void parses_changelog_with_preconditions() {
         Collection<Changeset> changesets = parser.parse(changelogLoader, "changelog/changelog-with-preconditions.xml");
@@ -172,6 +268,36 @@ public class ChangelogParserTest {
             .containsExactly("MATCH (n) RETURN n", "MATCH (m) RETURN m");
     }
 
+    @Test
+    public void parses_changelogs_concurrently() throws Exception {
+        List<String> changelogs = asList(
+            "changelog/changelog-of-changelogs.xml",
+            "changelog/changelog-with-parameters.xml",
+            "changelog/changelog-with-nested-preconditions.xml",
+            "changelog/changelog-with-schema-location.xml"
+        );
+        Map<String, Collection<Changeset>> expectedChangesets = new HashMap<>();
+        for (String changelog : changelogs) {
+            expectedChangesets.put(changelog, parser.parse(changelogLoader, changelog));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Collection<Changeset>>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String changelog = changelogs.get(i % changelogs.size());
+                results.add(executor.submit(() -> parser.parse(changelogLoader, changelog)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get())
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(expectedChangesets.get(changelogs.get(i % changelogs.size())));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     // fragile: uses reflection
     private void given_validation_errors(List<String> errors) throws Exception {
         XmlSchemaValidator validator = mock(XmlSchemaValidator.class);
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.core.parser;
+
+import org.junit.Test;
+import org.liquigraph.core.io.ChangelogLoader;
+import org.liquigraph.core.io.ChangelogParser;
+import org.liquigraph.core.io.ClassLoaderChangelogLoader;
+import org.liquigraph.core.io.xml.ChangelogPreprocessor;
+import org.liquigraph.core.io.xml.ChangelogXmlParser;
+import org.liquigraph.core.io.xml.ImportResolver;
+import org.liquigraph.core.io.xml.StreamingChangelogXmlParser;
+import org.liquigraph.core.io.xml.XmlSchemaValidator;
+import org.liquigraph.core.model.Changeset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StreamingChangelogXmlParserTest {
+
+    private final ChangelogLoader changelogLoader = ClassLoaderChangelogLoader.currentThreadContextClassLoader();
+
+    private final ChangelogParser domParser = new ChangelogXmlParser(
+        new XmlSchemaValidator(),
+        new ChangelogPreprocessor(new ImportResolver())
+    );
+
+    private final ChangelogParser parser = new StreamingChangelogXmlParser();
+
+    @Test
+    public void parses_changelogs_like_the_dom_parser() {
+        String[] changelogs = {
+            "changelog/changelog.xml",
+            "changelog/changelog-of-changelogs.xml",
+            "changelog/changelog-same-level-import.xml",
+            "changelog/includes/deeply-nested-changelog.xml",
+            "changelog/changelog-with-execution-contexts.xml",
+            "changelog/changelog-with-run-modes.xml",
+            "changelog/changelog-with-atomic-changesets.xml",
+            "changelog/changelog-with-dependencies.xml",
+            "changelog/changelog-with-batches.xml",
+            "changelog/changelog-with-parameters.xml",
+            "changelog/changelog-with-query-files.xml",
+            "changelog/changelog-with-preconditions.xml",
+            "changelog/changelog-with-nested-preconditions.xml",
+            "changelog/changelog-with-schema-location.xml",
+            "changelog/changelog-with-RC3-schema-location.xml",
+            "changelog/multiple_queries/changelog.xml"
+        };
+
+        for (String changelog : changelogs) {
+            Collection<Changeset> changesets = parser.parse(changelogLoader, changelog);
+
+            assertThat(changesets)
+                .as(changelog)
+                .isNotEmpty()
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(domParser.parse(changelogLoader, changelog));
+        }
+    }
+
+    @Test
+    public void reports_validation_errors() {
+        assertThatThrownBy(() -> parser.parse(changelogLoader, "changelog/invalid_changesets/changelog-without-author.xml"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Attribute 'author' must appear on element 'changeset'.");
+    }
+
+    @Test
+    public void reports_duplicate_identifiers_within_a_changelog() {
+        assertThatThrownBy(() -> parser.parse(changelogLoader, "changelog/invalid_changesets/changelog-with-duplicate-ids.xml"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Duplicate unique value [changelog] declared for identity constraint");
+    }
+
+    @Test
+    public void reports_duplicate_identifiers_across_changelogs() {
+        String changelog = "changelog/changelog-with-imported-duplicate-ids.xml";
+
+        assertThatThrownBy(() -> domParser.parse(changelogLoader, changelog))
+            .hasMessageContaining("Duplicate unique value [first-changelog] declared for identity constraint \"unique_id\"");
+        assertThatThrownBy(() -> parser.parse(changelogLoader, changelog))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Duplicate unique value [first-changelog] declared for identity constraint \"unique_id\"");
+    }
+
+    @Test
+    public void fails_on_unresolvable_import() {
+        assertThatThrownBy(() -> parser.parse(changelogLoader, "changelog/includes/invalid_include.xml"))
+            .hasMessage("Import location cannot be resolved: changelog/includes/that/is_gonna_fail.xml");
+    }
+
+    @Test
+    public void fails_on_circular_imports() {
+        assertThatThrownBy(() -> parser.parse(changelogLoader, "changelog/includes/circular/first.xml"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Circular import detected: " +
+                "changelog/includes/circular/first.xml -> " +
+                "changelog/includes/circular/second.xml -> " +
+                "changelog/includes/circular/first.xml");
+    }
+
+    @Test
+    public void opens_each_changelog_file_once_for_validation_and_once_for_reading() {
+        Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+        ChangelogLoader countingLoader = path -> {
+            loads.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            return changelogLoader.load(path);
+        };
+
+        parser.parse(countingLoader, "changelog/changelog-of-changelogs.xml");
+
+        assertThat(loads).isNotEmpty();
+        assertThat(loads.values()).extracting(AtomicInteger::get).containsOnly(2);
+    }
+
+    @Test
+    public void parses_changelogs_concurrently() throws Exception {
+        List<String> changelogs = asList(
+            "changelog/changelog-of-changelogs.xml",
+            "changelog/changelog-with-parameters.xml",
+            "changelog/changelog-with-nested-preconditions.xml",
+            "changelog/changelog-with-schema-location.xml"
+        );
+        Map<String, Collection<Changeset>> expectedChangesets = new HashMap<>();
+        for (String changelog : changelogs) {
+            expectedChangesets.put(changelog, parser.parse(changelogLoader, changelog));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Collection<Changeset>>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String changelog = changelogs.get(i % changelogs.size());
+                results.add(executor.submit(() -> parser.parse(changelogLoader, changelog)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get())
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(expectedChangesets.get(changelogs.get(i % changelogs.size())));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// persons of the seed data set
+CREATE (:Person {name: 'fbiville', motto: 'semicolons; everywhere'});
+/* a block comment;
+   spanning lines */
+CREATE (:`Per;son` {name: "mgazanayi"});
+
+;
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.liquigraph.maven;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.liquigraph.core.io.bundle.ChangelogBundle;
+import org.liquigraph.core.io.xml.RemoteSchemaResolver;
+import org.liquigraph.core.io.xml.StreamingChangelogXmlParser;
+import org.liquigraph.core.model.Changeset;
+import org.liquigraph.core.model.ChecksumAlgorithm;
+import org.liquigraph.core.model.ChecksumAlgorithms;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Parses the changelog and writes its changesets, checksums included, to a changelog bundle in
+ * ${project.build.outputDirectory}, so that they can be loaded at run time without any XML parsing.
+ */
+@Mojo(name = "bundle", defaultPhase = LifecyclePhase.PROCESS_CLASSES, threadSafe = true)
+public class BundleMojo extends ProjectAwareMojo {
+
+    /**
+     * Classpath location of the main change log file
+     */
+    @Parameter(property = "changelog", required = true)
+    String changelog;
+
+    /**
+     * Location of the resulting changelog bundle, relative to ${project.build.outputDirectory}
+     */
+    @Parameter(property = "bundle", defaultValue = "liquigraph/changelog.bundle")
+    String bundle = "liquigraph/changelog.bundle";
+
+    /**
+     * Name of the algorithm bundled checksums are computed with, it should match the algorithm configured at run time
+     */
+    @Parameter(property = "checksumAlgorithm", defaultValue = "sha1")
+    String checksumAlgorithm = ChecksumAlgorithms.DEFAULT.getName();
+
+    /**
+     * OASIS XML catalog files declaring local copies of the schemas referenced by the change logs
+     */
+    @Parameter(property = "schemaCatalogs")
+    List<File> schemaCatalogs = new ArrayList<>();
+
+    /**
+     * Directory where downloaded schemas are cached. Cached schemas are pinned until this directory is cleared.
+     * Downloaded schemas are not written to disk by default
+     */
+    @Parameter(property = "schemaCacheDirectory")
+    File schemaCacheDirectory;
+
+    /**
+     * Whether schemas which are neither embedded, declared in a catalog nor cached must not be downloaded
+     */
+    @Parameter(property = "offlineSchemaResolution", defaultValue = "false")
+    boolean offlineSchemaResolution;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        try {
+            ChecksumAlgorithm algorithm = ChecksumAlgorithms.forName(checksumAlgorithm);
+            RemoteSchemaResolver schemaResolver = RemoteSchemaResolver.of(
+                schemaCatalogs.stream().map(File::toPath).collect(toList()),
+                schemaCacheDirectory == null ? null : schemaCacheDirectory.toPath(),
+                offlineSchemaResolution
+            );
+            Collection<Changeset> changesets = new StreamingChangelogXmlParser(schemaResolver)
+                .parse(ChangeLogLoaders.changeLogLoader(project), changelog);
+            for (Changeset changeset : changesets) {
+                changeset.setChecksumAlgorithm(algorithm.getName());
+            }
+
+            Path bundlePath = Paths.get(project.getBuild().getOutputDirectory()).resolve(bundle);
+            Files.createDirectories(bundlePath.toAbsolutePath().getParent());
+            try (OutputStream output = Files.newOutputStream(bundlePath)) {
+                ChangelogBundle.write(changesets, output);
+            }
+            getLog().info(String.format("Bundled %d changeset(s) in: %s", changesets.size(), bundlePath));
+        } catch (Exception e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+}
@@ -21,6 +21,12 @@ import org.liquigraph.core.api.Liquigraph;
 import org.liquigraph.core.configuration.Configuration;
 import org.liquigraph.core.configuration.ConfigurationBuilder;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
 abstract class ChangelogExecutionMojoBase extends JdbcConnectionMojoBase {
 
     /**
@@ -37,6 +43,31 @@ abstract class ChangelogExecutionMojoBase extends JdbcConnectionMojoBase {
     @Parameter(property = "executionContexts", defaultValue = "")
     String executionContexts = "";
 
+    /**
+     * Whether the change log file is a changelog bundle, as produced by the bundle goal, rather than an XML change log
+     */
+    @Parameter(property = "changelogBundle", defaultValue = "false")
+    boolean changelogBundle;
+
+    /**
+     * OASIS XML catalog files declaring local copies of the schemas referenced by the change logs
+     */
+    @Parameter(property = "schemaCatalogs")
+    List<File> schemaCatalogs = new ArrayList<>();
+
+    /**
+     * Directory where downloaded schemas are cached. Cached schemas are pinned until this directory is cleared.
+     * Downloaded schemas are not written to disk by default
+     */
+    @Parameter(property = "schemaCacheDirectory")
+    File schemaCacheDirectory;
+
+    /**
+     * Whether schemas which are neither embedded, declared in a catalog nor cached must not be downloaded
+     */
+    @Parameter(property = "offlineSchemaResolution", defaultValue = "false")
+    boolean offlineSchemaResolution;
+
     private final Liquigraph liquigraph = new Liquigraph();
 
     @Override
@@ -46,6 +77,10 @@ abstract class ChangelogExecutionMojoBase extends JdbcConnectionMojoBase {
                 .withChangelogLoader(ChangeLogLoaders.changeLogLoader(project))
                 .withExecutionContexts(ExecutionContexts.executionContexts(executionContexts))
                 .withMasterChangelogLocation(changelog)
+                .withChangelogBundle(changelogBundle)
+                .withSchemaCatalogs(schemaCatalogs.stream().map(File::toPath).collect(toList()))
+                .withSchemaCacheDirectory(schemaCacheDirectory == null ? null : schemaCacheDirectory.toPath())
+                .withOfflineSchemaResolution(offlineSchemaResolution)
                 .withDatabase(database)
                 .withUsername(username)
                 .withPassword(password)
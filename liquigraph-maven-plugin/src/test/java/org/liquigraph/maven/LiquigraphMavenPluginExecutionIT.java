@@ -21,10 +21,15 @@ import org.apache.maven.plugin.testing.resources.TestResources;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.liquigraph.core.api.Liquigraph;
+import org.liquigraph.core.configuration.ConfigurationBuilder;
+import org.liquigraph.core.io.ClassLoaderChangelogLoader;
 import org.liquigraph.testing.JdbcAwareGraphDatabase;
 import org.liquigraph.testing.ParameterizedDatabaseIT;
 
 import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.file.Paths;
 import java.sql.ResultSet;
 import java.util.HashMap;
@@ -44,6 +49,8 @@ public class LiquigraphMavenPluginExecutionIT extends ParameterizedDatabaseIT {
 
     private Mojo dryRunMojo;
 
+    private Mojo bundleMojo;
+
     private File projectBaseDir;
 
     public LiquigraphMavenPluginExecutionIT(String description, JdbcAwareGraphDatabase graphDb, String uri) {
@@ -55,6 +62,7 @@ public class LiquigraphMavenPluginExecutionIT extends ParameterizedDatabaseIT {
         projectBaseDir = new ProjectProcessor(resources).process("test-project", "pom.xml.tpl", substitutions());
         runMojo = configureMojo(new RunMojo(), projectBaseDir);
         dryRunMojo = configureMojo(new DryRunMojo(), projectBaseDir);
+        bundleMojo = configureMojo(new BundleMojo(), projectBaseDir);
     }
 
     @Test
@@ -85,7 +93,33 @@ public class LiquigraphMavenPluginExecutionIT extends ParameterizedDatabaseIT {
                     + "MATCH (n:Sentence {text:'Hello monde!'}) SET n.text='Hello world!' RETURN n");
     }
 
+    @Test
+    public void runs_bundled_migrations() throws Exception {
+        bundleMojo.execute();
+
+        File classesDir = new File(projectBaseDir, "target/classes");
+        assertThat(new File(classesDir, "liquigraph/changelog.bundle")).isFile();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classesDir.toURI().toURL()}, null)) {
+            new Liquigraph().runMigrations(new ConfigurationBuilder()
+                .withChangelogLoader(new ClassLoaderChangelogLoader(classLoader))
+                .withMasterChangelogLocation("liquigraph/changelog.bundle")
+                .withChangelogBundle(true)
+                .withUri(uri)
+                .withUsername("neo4j")
+                .withPassword(graphDb.password().get())
+                .withRunMode()
+                .build());
+        }
 
+        graphDb.rollbackNewSingleStatementConnection(uri, statement -> {
+            statement.execute("MATCH (s:Sentence) RETURN s.text AS text");
+            try (ResultSet results = statement.getResultSet()) {
+                assertThat(results.next()).as("Result set has exactly 1 result left").isTrue();
+                assertThat(results.getString("text")).isEqualTo("Hello world!");
+                assertThat(results.next()).as("Result set has no more result left").isFalse();
+            }
+        });
+    }
 
     private <T extends ProjectAwareMojo> T configureMojo(T mojo, File projectBaseDir) throws Exception {
         mojo.setProject(new ProjectStub(projectBaseDir));
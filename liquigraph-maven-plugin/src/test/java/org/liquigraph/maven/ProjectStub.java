@@ -37,6 +37,7 @@ class ProjectStub extends MavenProjectStub {
 
         Build build = new Build();
         build.setDirectory(getBasedir() + "/target");
+        build.setOutputDirectory(getBasedir() + "/target/classes");
         setBuild(build);
         setCompileSourceRoots(Collections.singletonList(getBasedir() + "/src/main/resources"));
     }